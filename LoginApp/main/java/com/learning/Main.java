@@ -48,7 +48,12 @@ public class Main {    // クラス名はファイル名と同じにする
         User newUser = new User("java_learner", "learner@example.com", "学習", "太郎");
         newUser.setPasswordHash("hashed_password_123");
         
-        User createdUser = userDb.createUser(newUser);
+        User createdUser = null;
+        try {
+            createdUser = userDb.createUser(newUser);
+        } catch (UserDatabase.DuplicateUserException e) {
+            System.out.println("既に登録済みのユーザーです: " + newUser.getUsername());
+        }
         if (createdUser != null) {
             System.out.println("データベースに保存されたユーザー: " + createdUser);
         }
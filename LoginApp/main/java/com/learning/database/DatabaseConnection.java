@@ -1,26 +1,55 @@
 package com.learning.database;
 
+import com.learning.logging.AsyncLogger;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(DatabaseConnection.class);
+
     // データベース接続情報（設定ファイルから読み込むのが理想）
-    private static final String URL = "jdbc:mysql://localhost:3306/java_learning_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&useUnicode=true&characterEncoding=UTF-8";
-    private static final String USERNAME = "java_app";
-    private static final String PASSWORD = "SecurePassword123!";
+    // useServerPrepStmts=true でPreparedStatementをサーバー側でprepareする（キャッシュはPooledDataSource側で持つ）
+    // rewriteBatchedStatements=true でバッチ更新を1つのSQLにまとめて送る（セッションの書き戻しなど）
+    // db.url / db.user / db.password で上書きできる（ベンチマークで組み込みDBを使う場合など）
+    private static final String URL = System.getProperty("db.url",
+            "jdbc:mysql://localhost:3306/java_learning_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&useUnicode=true&characterEncoding=UTF-8&useServerPrepStmts=true&rewriteBatchedStatements=true");
+    private static final String USERNAME = System.getProperty("db.user", "java_app");
+    private static final String PASSWORD = System.getProperty("db.password", "SecurePassword123!");
+    
+    // コネクションプール設定（システムプロパティで上書き可能）
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.maxSize", 20);
+    private static final long POOL_MAX_WAIT_MILLIS = Long.getLong("db.pool.maxWaitMillis", 5_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.pool.statementCacheSize", 64);
+    
+    // アプリ全体で共有するコネクションプール
+    private static final PooledDataSource DATA_SOURCE = new PooledDataSource(
+            URL, USERNAME, PASSWORD, POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS, STATEMENT_CACHE_SIZE);
+    
+    // プールされたDataSourceを取得するメソッド
+    public static DataSource getDataSource() {
+        return DATA_SOURCE;
+    }
     
-    // データベースに接続するメソッド
+    // 接続先がMySQLかどうか（MySQL固有の指定を使うかどうかの判定用）
+    public static boolean isMySql() {
+        return URL.startsWith("jdbc:mysql:");
+    }
+    
+    // コネクションプールを取得するメソッド（統計情報の参照用）
+    public static PooledDataSource getPool() {
+        return DATA_SOURCE;
+    }
+    
+    // データベースに接続するメソッド（プールから借りる。closeで返却される）
     public static Connection getConnection() throws SQLException {
         
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            System.out.println("データベース接続成功！");
-            return connection;
+            return DATA_SOURCE.getConnection();
         } catch (SQLException e) {
-            System.err.println("データベース接続エラー: " + e.getMessage());
-            System.err.println("MySQLサーバーが起動しているか確認してください");
-            System.err.println("データベース 'java_learning_db' とユーザー 'java_app' が存在するか確認してください");
+            LOG.error("データベース接続エラー（MySQLサーバーの起動と、データベース 'java_learning_db'・ユーザー 'java_app' の存在を確認してください）",
+                    "error", e.getMessage());
             throw e;
         }
     }
@@ -46,11 +75,19 @@ public class DatabaseConnection {
         }
     }
     
+    // コネクションプールを閉じるメソッド（サーバー停止時に呼ぶ）
+    public static void shutdown() {
+        DATA_SOURCE.close();
+        LOG.info("🛑 コネクションプールを閉じました");
+    }
+    
     // データベース設定情報を表示するメソッド
     public static void showConnectionInfo() {
         System.out.println("=== データベース設定情報 ===");
         System.out.println("URL: " + URL);
         System.out.println("ユーザー名: " + USERNAME);
         System.out.println("パスワード: [セキュリティのため非表示]");
+        System.out.println("最大接続数: " + POOL_MAX_SIZE);
+        System.out.println("PreparedStatementキャッシュ: " + STATEMENT_CACHE_SIZE + "件/接続");
     }
 }
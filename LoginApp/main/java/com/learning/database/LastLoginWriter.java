@@ -0,0 +1,163 @@
+package com.learning.database;
+
+import com.learning.logging.AsyncLogger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// 最終ログイン日時をまとめて書き込むクラス（ログインの応答で UPDATE の完了を待たないため）
+//
+// last_login_at は表示用の情報なので、ログイン時はメモリ上のバッファに記録するだけにして、
+// バックグラウンドのスレッドが一定間隔で複数ユーザー分をまとめて UPDATE する。
+// 同じユーザーが間隔内に何度ログインしても、書き込むのは最後のログイン日時の1回だけ。
+// バッファには上限があり、DB が止まっていて溜まり続ける場合は新しいユーザーの記録を捨てる（捨てた件数は数える）。
+// 停止時（SimpleHttpServer.stop）には残りを書き込んでから止める。停止後に記録されたログインは捨てた件数に数える。
+public class LastLoginWriter {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(LastLoginWriter.class);
+
+    private final UserDatabase userDatabase;
+    private final int maxPending;
+    private final int batchSize;
+    // ユーザーID -> ログイン日時（ミリ秒）
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean stopped;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    private LastLoginWriter(UserDatabase userDatabase, long flushMillis, int maxPending, int batchSize) {
+        this.userDatabase = userDatabase;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "last-login-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // システムプロパティから作成する
+    //   users.lastLogin.flushMillis : 書き込みの間隔（既定値: 1000）
+    //   users.lastLogin.maxPending  : 書き込み待ちの上限（ユーザー数、既定値: 10000）
+    //   users.lastLogin.batchSize   : 1トランザクションで更新する件数（既定値: 500）
+    public static LastLoginWriter fromSystemProperties(UserDatabase userDatabase) {
+        long flushMillis = Math.max(10L, Long.getLong("users.lastLogin.flushMillis", 1_000L));
+        int maxPending = Math.max(1, Integer.getInteger("users.lastLogin.maxPending", 10_000));
+        int batchSize = Math.max(1, Integer.getInteger("users.lastLogin.batchSize", 500));
+        return new LastLoginWriter(userDatabase, flushMillis, maxPending, batchSize);
+    }
+
+    // ログインを記録する（DB には書き込まずにすぐ戻る）
+    public void record(long userId) {
+        recorded.increment();
+        if (stopped) {
+            // 停止後は書き込まれないので、黙って失わずに数える
+            dropped.increment();
+            return;
+        }
+        // 上限はおおよそ（同時に記録された分だけ超えることがある）
+        if (pending.size() >= maxPending && !pending.containsKey(userId)) {
+            dropped.increment();
+            return;
+        }
+        // 書き込み前に再ログインした場合は新しい日時で上書きする
+        if (pending.put(userId, System.currentTimeMillis()) != null) {
+            coalesced.increment();
+        }
+    }
+
+    // 書き込み待ちをまとめて DB に反映する
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            Map<Long, Long> batch = new LinkedHashMap<>();
+            for (Long userId : userIds.subList(from, Math.min(from + batchSize, userIds.size()))) {
+                Long loginAt = pending.remove(userId);
+                if (loginAt != null) {
+                    batch.put(userId, loginAt);
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                userDatabase.updateLastLoginBatch(batch);
+                written.add(batch.size());
+            } catch (SQLException e) {
+                flushFailures.increment();
+                LOG.error("❌ 最終ログイン日時の書き込みに失敗しました（次回再試行します）",
+                        "users", batch.size(), "error", e.getMessage());
+                requeue(batch);
+            }
+        }
+    }
+
+    // 失敗した分を戻す（その間に新しいログインがあれば新しい方を残す。上限を超える分は捨てる）
+    private void requeue(Map<Long, Long> batch) {
+        for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+            if (pending.containsKey(entry.getKey()) || pending.size() < maxPending) {
+                pending.merge(entry.getKey(), entry.getValue(), Math::max);
+            } else {
+                dropped.increment();
+            }
+        }
+    }
+
+    // 停止する（書き込み待ちがあれば反映してから止める）
+    public void shutdown() {
+        stopped = true;
+        scheduler.shutdown();
+        try {
+            // 実行中の書き込みが終わるのを待ってから、残りを書き込む
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            dropped.add(pending.size());
+            LOG.warn("⚠️ 書き込めなかった最終ログイン日時を破棄しました", "users", pending.size());
+            pending.clear();
+        }
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFlushFailures() {
+        return flushFailures.sum();
+    }
+}
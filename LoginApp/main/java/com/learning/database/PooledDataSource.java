@@ -0,0 +1,416 @@
+package com.learning.database;
+
+import com.learning.logging.AsyncLogger;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+// 接続を使い回すDataSource（コネクションプール）
+// 各接続はSQL文字列をキーにしたPreparedStatementキャッシュを持つので、
+// 同じSQLを何度実行してもprepare（サーバー側での解析）は1回だけで済む
+public class PooledDataSource implements DataSource {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(PooledDataSource.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // この時間以内に返却された接続は検証（isValid）を省略する
+    private static final long VALIDATION_SKIP_MILLIS = 500;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private volatile boolean closed;
+
+    public PooledDataSource(String url, String username, String password,
+                            int maxSize, long maxWaitMillis, int statementCacheSize) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    // プールから接続を借りる（closeするとプールへ返却される）
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("コネクションプールは既に閉じられています");
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("接続待機中に割り込まれました", e);
+        }
+        if (!acquired) {
+            throw new SQLException("接続の取得がタイムアウトしました (" + maxWaitMillis + "ms)");
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            return pooled.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ユーザー指定の接続はサポートしていません");
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        Connection physical = DriverManager.getConnection(url, username, password);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturnedAt < VALIDATION_SKIP_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // 接続をプールへ返却する（プロキシのcloseから呼ばれる）
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            // 閉じ忘れたPreparedStatementを回収する（次の利用者に貸し出せるようにする）
+            pooled.reclaimStatements();
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            // 物理接続を閉じるとキャッシュ中のPreparedStatementも一緒に閉じられる
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOG.error("❌ 接続クローズエラー", "error", e.getMessage());
+        }
+    }
+
+    // プールを閉じて全ての物理接続を切断する
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    // 物理接続とそのPreparedStatementキャッシュ
+    private class PooledConnection {
+        private final Connection physical;
+        // アクセス順のLinkedHashMapでLRUにする（1つの接続は同時に1スレッドしか使わない）
+        private final Map<String, CachedStatement> statementCache = new LinkedHashMap<>(16, 0.75f, true);
+        private volatile long lastReturnedAt;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastReturnedAt = System.currentTimeMillis();
+        }
+
+        Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new ConnectionLease(this));
+        }
+
+        PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+            CachedStatement cached = statementCache.get(key);
+
+            if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+                statementCacheHits.increment();
+            } else if (cached == null || cached.statement.isClosed()) {
+                statementCacheMisses.increment();
+                cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+                statementCache.put(key, cached);
+                evictIfNeeded();
+            } else {
+                // 同じ接続で同じSQLを入れ子で使う場合はキャッシュせずに作成する
+                statementCacheMisses.increment();
+                return physical.prepareStatement(sql, autoGeneratedKeys);
+            }
+
+            cached.inUse = true;
+            return cached.newProxy();
+        }
+
+        // 貸し出したまま閉じられなかったPreparedStatementを状態を戻してキャッシュへ戻す
+        void reclaimStatements() throws SQLException {
+            for (CachedStatement cached : statementCache.values()) {
+                if (cached.inUse) {
+                    cached.release();
+                }
+            }
+        }
+
+        private void evictIfNeeded() {
+            Iterator<CachedStatement> iterator = statementCache.values().iterator();
+            while (statementCache.size() > statementCacheSize && iterator.hasNext()) {
+                CachedStatement eldest = iterator.next();
+                if (eldest.inUse) {
+                    continue;
+                }
+                iterator.remove();
+                try {
+                    eldest.statement.close();
+                } catch (SQLException e) {
+                    LOG.error("❌ PreparedStatementクローズエラー", "error", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // キャッシュされたPreparedStatement（closeされても実体は閉じずに再利用する）
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        // 現在の貸し出し（回収時に古いプロキシを使えなくするため）
+        private StatementLease lease;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement newProxy() {
+            lease = new StatementLease(this);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, lease);
+        }
+
+        // 前の利用者が変更した状態を戻してキャッシュへ戻す
+        // 戻せなかった場合は実体を閉じる（次の prepare で作り直す）
+        void release() throws SQLException {
+            if (lease != null) {
+                lease.returned = true;
+                lease = null;
+            }
+            try {
+                statement.clearParameters();
+                // addBatch したまま実行されなかったバッチを次の利用者に持ち越さない
+                statement.clearBatch();
+                // ストリーミング用などに変更された設定を既定値に戻す
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            } finally {
+                inUse = false;
+            }
+        }
+    }
+
+    // 1回の貸し出しを表す接続プロキシ
+    private class ConnectionLease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        ConnectionLease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("接続は既にプールへ返却されています");
+            }
+
+            // prepareStatement(sql) と prepareStatement(sql, autoGeneratedKeys) はキャッシュを使う
+            if ("prepareStatement".equals(name) && args != null) {
+                if (args.length == 1) {
+                    return pooled.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (args.length == 2 && args[1] instanceof Integer autoGeneratedKeys) {
+                    return pooled.prepare((String) args[0], autoGeneratedKeys);
+                }
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // キャッシュされたPreparedStatementのプロキシ（closeでキャッシュへ戻す）
+    private static class StatementLease implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean returned;
+
+        StatementLease(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || cached.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("PreparedStatementは既に閉じられています");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // ---- DataSource インターフェースの残りのメソッド ----
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        // ログ出力先の変更はサポートしない
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("unwrapできません: " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,151 @@
+package com.learning.database;
+
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.MetricsRegistry;
+import com.learning.metrics.QueryMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+// user_sessions テーブルへのアクセス（SessionStore の書き戻し用）
+// session_token 列にはトークンそのものではなく「セレクター:検証値のハッシュ」を保存する
+public class SessionDatabase {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SessionDatabase.class);
+
+    // メソッドごとのクエリ統計（/metrics で出力する）
+    private static final QueryMetrics LOAD_QUERY = MetricsRegistry.getInstance().query("SessionDatabase", "loadActiveSessions");
+    private static final QueryMetrics WRITE_BATCH_QUERY = MetricsRegistry.getInstance().query("SessionDatabase", "writeBatch");
+    private static final QueryMetrics DELETE_EXPIRED_QUERY = MetricsRegistry.getInstance().query("SessionDatabase", "deleteExpiredSessions");
+
+    // 保存する1セッション分の値
+    public static class SessionRow {
+        private final long userId;
+        private final String username;
+        private final String storedToken;
+        private final long expiresAtMillis;
+
+        public SessionRow(long userId, String username, String storedToken, long expiresAtMillis) {
+            this.userId = userId;
+            this.username = username;
+            this.storedToken = storedToken;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getStoredToken() {
+            return storedToken;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
+    // 1行ずつ SessionRow を受け取るコールバック
+    @FunctionalInterface
+    public interface SessionRowConsumer {
+        void accept(SessionRow row);
+    }
+
+    // 有効期限内のセッションを読み込む（起動時の復元用）
+    public int loadActiveSessions(SessionRowConsumer consumer) throws SQLException {
+        String sql = "SELECT s.user_id, u.username, s.session_token, s.expires_at "
+                + "FROM user_sessions s JOIN users u ON u.id = s.user_id "
+                + "WHERE s.expires_at > CURRENT_TIMESTAMP AND u.is_active = TRUE";
+        int count = 0;
+        long start = System.nanoTime();
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+
+            while (resultSet.next()) {
+                consumer.accept(new SessionRow(
+                        resultSet.getLong("user_id"),
+                        resultSet.getString("username"),
+                        resultSet.getString("session_token"),
+                        resultSet.getTimestamp("expires_at").getTime()));
+                count++;
+            }
+        } catch (SQLException e) {
+            LOAD_QUERY.recordError();
+            throw e;
+        } finally {
+            LOAD_QUERY.record(System.nanoTime() - start);
+        }
+        return count;
+    }
+
+    // 作成・延長されたセッションと、削除されたセッションを1トランザクションでまとめて反映する
+    public void writeBatch(List<SessionRow> upserts, List<String> deletedTokens) throws SQLException {
+        String upsertSql = "INSERT INTO user_sessions (user_id, session_token, expires_at) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE expires_at = VALUES(expires_at)";
+        String deleteSql = "DELETE FROM user_sessions WHERE session_token = ?";
+        long start = System.nanoTime();
+
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (!upserts.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(upsertSql)) {
+                        for (SessionRow row : upserts) {
+                            statement.setLong(1, row.getUserId());
+                            statement.setString(2, row.getStoredToken());
+                            statement.setTimestamp(3, new Timestamp(row.getExpiresAtMillis()));
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                if (!deletedTokens.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+                        for (String token : deletedTokens) {
+                            statement.setString(1, token);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            WRITE_BATCH_QUERY.recordError();
+            throw e;
+        } finally {
+            WRITE_BATCH_QUERY.record(System.nanoTime() - start);
+        }
+        LOG.debug("✅ セッションを書き戻しました", "upserts", upserts.size(), "deletes", deletedTokens.size());
+    }
+
+    // 有効期限切れのセッションを削除する
+    public int deleteExpiredSessions() throws SQLException {
+        String sql = "DELETE FROM user_sessions WHERE expires_at <= CURRENT_TIMESTAMP";
+        long start = System.nanoTime();
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            DELETE_EXPIRED_QUERY.recordError();
+            throw e;
+        } finally {
+            DELETE_EXPIRED_QUERY.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -1,15 +1,107 @@
 package com.learning.database;
 
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.MetricsRegistry;
+import com.learning.metrics.QueryMetrics;
 import com.learning.model.User;
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class UserDatabase {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(UserDatabase.class);
+
+    // メソッドごとのクエリ統計（/metrics で出力する。記録のたびにマップを引かないよう先に取得しておく）
+    private static final QueryMetrics CREATE_QUERY = query("createUser");
+    private static final QueryMetrics FIND_BY_USERNAME_QUERY = query("findUserByUsername");
+    private static final QueryMetrics FIND_CREDENTIALS_QUERY = query("findCredentialsByUsername");
+    private static final QueryMetrics USERNAME_EXISTS_QUERY = query("usernameExists");
+    private static final QueryMetrics FIND_BY_ID_QUERY = query("findUserById");
+    private static final QueryMetrics GET_ALL_QUERY = query("getAllUsers");
+    private static final QueryMetrics FOR_EACH_QUERY = query("forEachUser");
+    private static final QueryMetrics UPDATE_QUERY = query("updateUser");
+    private static final QueryMetrics UPDATE_LAST_LOGIN_QUERY = query("updateLastLogin");
+    private static final QueryMetrics UPDATE_LAST_LOGIN_BATCH_QUERY = query("updateLastLoginBatch");
+    private static final QueryMetrics UPDATE_PASSWORD_HASH_QUERY = query("updatePasswordHash");
+    private static final QueryMetrics DELETE_QUERY = query("deleteUser");
+    private static final QueryMetrics COUNT_QUERY = query("countUsers");
+    private static final QueryMetrics FOR_EACH_USERNAME_QUERY = query("forEachUsername");
+    
+    // 用途ごとに取得する列（SELECT * をやめ、使わない列は転送しない）
+    // 認証: パスワードの検証に必要な列だけ
+    private static final String AUTH_COLUMNS = "id, username, password_hash, is_active";
+    // プロフィール・一覧: 画面に表示する列（password_hash と updated_at は含めない）
+    private static final String PROFILE_COLUMNS =
+            "id, username, email, first_name, last_name, is_active, created_at, last_login_at";
+    
+    // 1行を User に変換する処理
+    // 列は上の並びのとおりに番号で読む（行ごとに列名から位置を探さない）
+    @FunctionalInterface
+    private interface RowMapper {
+        User map(ResultSet resultSet) throws SQLException;
+    }
+    
+    private static final RowMapper AUTH_MAPPER = resultSet -> {
+        User user = new User();
+        user.setId(resultSet.getLong(1));
+        user.setUsername(resultSet.getString(2));
+        user.setPasswordHash(resultSet.getString(3));
+        user.setActive(resultSet.getBoolean(4));
+        return user;
+    };
+    
+    private static final RowMapper PROFILE_MAPPER = resultSet -> {
+        User user = new User();
+        user.setId(resultSet.getLong(1));
+        user.setUsername(resultSet.getString(2));
+        user.setEmail(resultSet.getString(3));
+        user.setFirstName(resultSet.getString(4));
+        user.setLastName(resultSet.getString(5));
+        user.setActive(resultSet.getBoolean(6));
+        user.setCreatedAt(toLocalDateTime(resultSet.getTimestamp(7)));
+        user.setLastLoginAt(toLocalDateTime(resultSet.getTimestamp(8)));
+        return user;
+    };
+    
+    // ユーザー名の存在確認に使うインデックス（null の場合は毎回 DB に問い合わせる）
+    private final UsernameIndex usernameIndex;
+    
+    // 1行ずつUserを受け取るコールバック
+    @FunctionalInterface
+    public interface UserConsumer {
+        void accept(User user) throws IOException;
+    }
+    
+    // ユーザー名またはメールアドレスが UNIQUE 制約に違反した（409 を返すべき）
+    public static class DuplicateUserException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public DuplicateUserException(String message) {
+            super(message);
+        }
+    }
+    
+    public UserDatabase() {
+        this(null);
+    }
+    
+    public UserDatabase(UsernameIndex usernameIndex) {
+        this.usernameIndex = usernameIndex;
+    }
+    
+    private static QueryMetrics query(String method) {
+        return MetricsRegistry.getInstance().query("UserDatabase", method);
+    }
     
     // ユーザーを作成（CREATE）
-    public User createUser(User user) {
+    // 同じユーザー名（またはメールアドレス）が登録済みの場合は DuplicateUserException（事前の確認をすり抜けた場合も UNIQUE 制約で検出する）
+    public User createUser(User user) throws DuplicateUserException {
         String sql = "INSERT INTO users (username, email, password_hash, first_name, last_name) VALUES (?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -29,20 +121,86 @@ public class UserDatabase {
                 try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         user.setId(generatedKeys.getLong(1));
-                        System.out.println("✅ ユーザー作成成功: " + user);
+                        if (usernameIndex != null) {
+                            usernameIndex.add(user.getUsername());
+                        }
+                        LOG.debug("✅ ユーザー作成成功", "id", user.getId(), "username", user.getUsername());
                         return user;
                     }
                 }
             }
         } catch (SQLException e) {
-            System.err.println("❌ ユーザー作成エラー: " + e.getMessage());
+            CREATE_QUERY.recordError();
+            // SQLSTATE のクラス 23 は整合性制約違反（UNIQUE 制約など）
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                if (usernameIndex != null) {
+                    // インデックスに無い名前だった可能性がある（他から登録された場合など）ので追加しておく
+                    usernameIndex.add(user.getUsername());
+                }
+                LOG.warn("⚠️ ユーザー作成の重複", "username", user.getUsername());
+                throw new DuplicateUserException(e.getMessage());
+            }
+            LOG.error("❌ ユーザー作成エラー", "error", e.getMessage());
+        } finally {
+            CREATE_QUERY.record(System.nanoTime() - start);
         }
         return null;
     }
     
     // ユーザーを検索（READ）
+    // プロフィールの列だけを取得する（パスワードハッシュは含まない）
     public User findUserByUsername(String username) {
-        String sql = "SELECT * FROM users WHERE username = ?";
+        return findByUsername(username, "SELECT " + PROFILE_COLUMNS + " FROM users WHERE username = ?",
+                PROFILE_MAPPER, FIND_BY_USERNAME_QUERY);
+    }
+    
+    // ログイン時のパスワード検証用に、ID・ユーザー名・パスワードハッシュ・有効フラグだけを取得する
+    public User findCredentialsByUsername(String username) {
+        return findByUsername(username, "SELECT " + AUTH_COLUMNS + " FROM users WHERE username = ?",
+                AUTH_MAPPER, FIND_CREDENTIALS_QUERY);
+    }
+    
+    // ユーザー名が登録済みか（登録時の重複チェック用。列は読まない）
+    public boolean usernameExists(String username) {
+        if (usernameIndex != null && !usernameIndex.mightExist(username)) {
+            return false;
+        }
+        long generation = usernameIndex != null ? usernameIndex.generation() : 0;
+        
+        String sql = "SELECT 1 FROM users WHERE username = ?";
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            
+            statement.setString(1, username);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return true;
+                }
+            }
+            if (usernameIndex != null) {
+                usernameIndex.recordMissing(username, generation);
+            }
+        } catch (SQLException e) {
+            // 判定できない場合は登録を進め、UNIQUE 制約に任せる
+            USERNAME_EXISTS_QUERY.recordError();
+            LOG.error("❌ ユーザー名の確認エラー", "error", e.getMessage());
+        } finally {
+            USERNAME_EXISTS_QUERY.record(System.nanoTime() - start);
+        }
+        return false;
+    }
+    
+    // ユーザー名で1件検索する（インデックスで存在しないと分かる名前は DB に問い合わせない）
+    private User findByUsername(String username, String sql, RowMapper mapper, QueryMetrics metrics) {
+        if (usernameIndex != null && !usernameIndex.mightExist(username)) {
+            LOG.debug("⚠️ ユーザーが見つかりませんでした（インデックス）", "username", username);
+            return null;
+        }
+        long generation = usernameIndex != null ? usernameIndex.generation() : 0;
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
@@ -52,46 +210,30 @@ public class UserDatabase {
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
                     // データベースの行をUserオブジェクトに変換
-                    User user = new User();
-                    user.setId(resultSet.getLong("id"));
-                    user.setUsername(resultSet.getString("username"));
-                    user.setEmail(resultSet.getString("email"));
-                    user.setPasswordHash(resultSet.getString("password_hash"));
-                    user.setFirstName(resultSet.getString("first_name"));
-                    user.setLastName(resultSet.getString("last_name"));
-                    user.setActive(resultSet.getBoolean("is_active"));
-                    
-                    // 日時データの処理
-                    Timestamp createdAt = resultSet.getTimestamp("created_at");
-                    if (createdAt != null) {
-                        user.setCreatedAt(createdAt.toLocalDateTime());
-                    }
-                    
-                    Timestamp updatedAt = resultSet.getTimestamp("updated_at");
-                    if (updatedAt != null) {
-                        user.setUpdatedAt(updatedAt.toLocalDateTime());
-                    }
-                    
-                    Timestamp lastLoginAt = resultSet.getTimestamp("last_login_at");
-                    if (lastLoginAt != null) {
-                        user.setLastLoginAt(lastLoginAt.toLocalDateTime());
-                    }
-                    
-                    System.out.println("✅ ユーザー検索成功: " + user);
+                    User user = mapper.map(resultSet);
+                    LOG.debug("✅ ユーザー検索成功", "id", user.getId(), "username", user.getUsername());
                     return user;
                 }
             }
+            // 見つからなかった名前はしばらく DB に問い合わせない（エラーの場合は記録しない）
+            if (usernameIndex != null) {
+                usernameIndex.recordMissing(username, generation);
+            }
         } catch (SQLException e) {
-            System.err.println("❌ ユーザー検索エラー: " + e.getMessage());
+            metrics.recordError();
+            LOG.error("❌ ユーザー検索エラー", "error", e.getMessage());
+        } finally {
+            metrics.record(System.nanoTime() - start);
         }
         
-        System.out.println("⚠️ ユーザーが見つかりませんでした: " + username);
+        LOG.debug("⚠️ ユーザーが見つかりませんでした", "username", username);
         return null;
     }
     
     // IDでユーザーを検索
     public User findUserById(Long id) {
-        String sql = "SELECT * FROM users WHERE id = ?";
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users WHERE id = ?";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
@@ -100,45 +242,133 @@ public class UserDatabase {
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    User user = mapResultSetToUser(resultSet);
-                    System.out.println("✅ ユーザー検索成功 (ID: " + id + "): " + user);
+                    User user = PROFILE_MAPPER.map(resultSet);
+                    LOG.debug("✅ ユーザー検索成功", "id", id, "username", user.getUsername());
                     return user;
                 }
             }
         } catch (SQLException e) {
-            System.err.println("❌ ユーザー検索エラー (ID: " + id + "): " + e.getMessage());
+            FIND_BY_ID_QUERY.recordError();
+            LOG.error("❌ ユーザー検索エラー", "id", id, "error", e.getMessage());
+        } finally {
+            FIND_BY_ID_QUERY.record(System.nanoTime() - start);
         }
         
-        System.out.println("⚠️ ユーザーが見つかりませんでした (ID: " + id + ")");
+        LOG.debug("⚠️ ユーザーが見つかりませんでした", "id", id);
         return null;
     }
     
     // 全ユーザーを取得
     public List<User> getAllUsers() {
         List<User> users = new ArrayList<>();  // JavaScript の [] に相当
-        String sql = "SELECT * FROM users ORDER BY created_at DESC";
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users ORDER BY created_at DESC";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(sql)) {
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
             
             while (resultSet.next()) {
-                User user = mapResultSetToUser(resultSet);
+                User user = PROFILE_MAPPER.map(resultSet);
                 users.add(user);  // JavaScript の push() に相当
             }
             
-            System.out.println("✅ 全ユーザー取得成功: " + users.size() + "件");
+            LOG.debug("✅ 全ユーザー取得成功", "count", users.size());
             
         } catch (SQLException e) {
-            System.err.println("❌ 全ユーザー取得エラー: " + e.getMessage());
+            GET_ALL_QUERY.recordError();
+            LOG.error("❌ 全ユーザー取得エラー", "error", e.getMessage());
+        } finally {
+            GET_ALL_QUERY.record(System.nanoTime() - start);
         }
         
         return users;
     }
     
+    // 全ユーザーを1行ずつコールバックに渡す（一覧をメモリに溜めない）
+    // ResultSetをストリーミングで読むため、読み終わるまで接続を占有する
+    public int forEachUser(UserConsumer consumer) throws IOException, SQLException {
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users ORDER BY created_at DESC";
+        int count = 0;
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            
+            // MySQL Connector/J で行単位のストリーミングを有効にする（他のドライバーでは負の値はエラーになる）
+            if (DatabaseConnection.isMySql()) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+            }
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(PROFILE_MAPPER.map(resultSet));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            FOR_EACH_QUERY.recordError();
+            throw e;
+        } finally {
+            // クライアントへの書き込み時間も含む（読み終わるまで接続を占有している時間）
+            FOR_EACH_QUERY.record(System.nanoTime() - start);
+        }
+        
+        return count;
+    }
+    
+    // ユーザー数を取得（インデックスの大きさを決めるため）
+    public int countUsers() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM users";
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } catch (SQLException e) {
+            COUNT_QUERY.recordError();
+            throw e;
+        } finally {
+            COUNT_QUERY.record(System.nanoTime() - start);
+        }
+    }
+    
+    // 全ユーザー名を1件ずつコールバックに渡す（インデックスの作成用。username 列だけを読む）
+    public int forEachUsername(Consumer<String> consumer) throws SQLException {
+        String sql = "SELECT username FROM users";
+        int count = 0;
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            
+            // MySQL Connector/J で行単位のストリーミングを有効にする（他のドライバーでは負の値はエラーになる）
+            if (DatabaseConnection.isMySql()) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+            }
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getString(1));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            FOR_EACH_USERNAME_QUERY.recordError();
+            throw e;
+        } finally {
+            FOR_EACH_USERNAME_QUERY.record(System.nanoTime() - start);
+        }
+        
+        return count;
+    }
+    
     // ユーザー情報を更新（UPDATE）
     public boolean updateUser(User user) {
         String sql = "UPDATE users SET email = ?, first_name = ?, last_name = ?, is_active = ? WHERE id = ?";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
@@ -152,22 +382,26 @@ public class UserDatabase {
             int affectedRows = statement.executeUpdate();
             
             if (affectedRows > 0) {
-                System.out.println("✅ ユーザー更新成功: " + user);
+                LOG.debug("✅ ユーザー更新成功", "id", user.getId());
                 return true;
             } else {
-                System.out.println("⚠️ 更新対象のユーザーが見つかりませんでした (ID: " + user.getId() + ")");
+                LOG.debug("⚠️ 更新対象のユーザーが見つかりませんでした", "id", user.getId());
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ ユーザー更新エラー: " + e.getMessage());
+            UPDATE_QUERY.recordError();
+            LOG.error("❌ ユーザー更新エラー", "error", e.getMessage());
             return false;
+        } finally {
+            UPDATE_QUERY.record(System.nanoTime() - start);
         }
     }
     
     // 最終ログイン日時を更新
     public void updateLastLogin(Long userId) {
         String sql = "UPDATE users SET last_login_at = CURRENT_TIMESTAMP WHERE id = ?";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
@@ -176,18 +410,73 @@ public class UserDatabase {
             
             int affectedRows = statement.executeUpdate();
             if (affectedRows > 0) {
-                System.out.println("✅ 最終ログイン日時更新成功 (ID: " + userId + ")");
+                LOG.debug("✅ 最終ログイン日時更新成功", "id", userId);
             } else {
-                System.out.println("⚠️ 更新対象のユーザーが見つかりませんでした (ID: " + userId + ")");
+                LOG.debug("⚠️ 更新対象のユーザーが見つかりませんでした", "id", userId);
+            }
+        } catch (SQLException e) {
+            UPDATE_LAST_LOGIN_QUERY.recordError();
+            LOG.error("❌ 最終ログイン日時更新エラー", "error", e.getMessage());
+        } finally {
+            UPDATE_LAST_LOGIN_QUERY.record(System.nanoTime() - start);
+        }
+    }
+    
+    // 複数ユーザーの最終ログイン日時を1トランザクションでまとめて更新する（LastLoginWriter から呼ばれる）
+    // loginTimes はユーザーID -> ログイン日時（ミリ秒）
+    public void updateLastLoginBatch(Map<Long, Long> loginTimes) throws SQLException {
+        String sql = "UPDATE users SET last_login_at = ? WHERE id = ?";
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Long> entry : loginTimes.entrySet()) {
+                    statement.setTimestamp(1, new Timestamp(entry.getValue()));
+                    statement.setLong(2, entry.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            System.err.println("❌ 最終ログイン日時更新エラー: " + e.getMessage());
+            UPDATE_LAST_LOGIN_BATCH_QUERY.recordError();
+            throw e;
+        } finally {
+            UPDATE_LAST_LOGIN_BATCH_QUERY.record(System.nanoTime() - start);
+        }
+        LOG.debug("✅ 最終ログイン日時をまとめて更新しました", "users", loginTimes.size());
+    }
+    
+    // パスワードハッシュを更新（ログイン時の再ハッシュ用）
+    public void updatePasswordHash(Long userId, String passwordHash) throws SQLException {
+        String sql = "UPDATE users SET password_hash = ? WHERE id = ?";
+        long start = System.nanoTime();
+        
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            
+            statement.setString(1, passwordHash);
+            statement.setLong(2, userId);
+            statement.executeUpdate();
+            LOG.debug("✅ パスワードハッシュ更新成功", "id", userId);
+        } catch (SQLException e) {
+            UPDATE_PASSWORD_HASH_QUERY.recordError();
+            throw e;
+        } finally {
+            UPDATE_PASSWORD_HASH_QUERY.record(System.nanoTime() - start);
         }
     }
     
     // ユーザーを削除（DELETE）
     public boolean deleteUser(Long userId) {
         String sql = "DELETE FROM users WHERE id = ?";
+        long start = System.nanoTime();
         
         try (Connection connection = DatabaseConnection.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
@@ -197,46 +486,24 @@ public class UserDatabase {
             int affectedRows = statement.executeUpdate();
             
             if (affectedRows > 0) {
-                System.out.println("✅ ユーザー削除成功 (ID: " + userId + ")");
+                LOG.debug("✅ ユーザー削除成功", "id", userId);
                 return true;
             } else {
-                System.out.println("⚠️ 削除対象のユーザーが見つかりませんでした (ID: " + userId + ")");
+                LOG.debug("⚠️ 削除対象のユーザーが見つかりませんでした", "id", userId);
                 return false;
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ ユーザー削除エラー: " + e.getMessage());
+            DELETE_QUERY.recordError();
+            LOG.error("❌ ユーザー削除エラー", "error", e.getMessage());
             return false;
+        } finally {
+            DELETE_QUERY.record(System.nanoTime() - start);
         }
     }
     
-    // ResultSetからUserオブジェクトへの変換（共通処理）
-    private User mapResultSetToUser(ResultSet resultSet) throws SQLException {
-        User user = new User();
-        user.setId(resultSet.getLong("id"));
-        user.setUsername(resultSet.getString("username"));
-        user.setEmail(resultSet.getString("email"));
-        user.setPasswordHash(resultSet.getString("password_hash"));
-        user.setFirstName(resultSet.getString("first_name"));
-        user.setLastName(resultSet.getString("last_name"));
-        user.setActive(resultSet.getBoolean("is_active"));
-        
-        // 日時データの処理
-        Timestamp createdAt = resultSet.getTimestamp("created_at");
-        if (createdAt != null) {
-            user.setCreatedAt(createdAt.toLocalDateTime());
-        }
-        
-        Timestamp updatedAt = resultSet.getTimestamp("updated_at");
-        if (updatedAt != null) {
-            user.setUpdatedAt(updatedAt.toLocalDateTime());
-        }
-        
-        Timestamp lastLoginAt = resultSet.getTimestamp("last_login_at");
-        if (lastLoginAt != null) {
-            user.setLastLoginAt(lastLoginAt.toLocalDateTime());
-        }
-        
-        return user;
+    // 日時の列を変換する（NULL の場合は null）
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
     }
 }
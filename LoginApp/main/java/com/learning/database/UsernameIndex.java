@@ -0,0 +1,405 @@
+package com.learning.database;
+
+import com.learning.logging.AsyncLogger;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// 登録済みユーザー名のインデックス（「存在しない」を MySQL に問い合わせずに答えるため）
+//
+// 起動時に全ユーザー名をブルームフィルターに読み込み、UserDatabase.createUser のたびに追加する。
+// ブルームフィルターは「含まれない」と答えた場合は確実に存在しないので、その名前の SELECT を省ける。
+// 「含まれるかもしれない」場合は DB に問い合わせ、見つからなければ短い時間だけ負のキャッシュに入れる
+// （誤判定や削除済みのユーザー名で同じ問い合わせを繰り返さないため）。
+//
+// ブルームフィルターからは削除できないので、deleteUser 後の名前は「含まれるかもしれない」のままになる（DB で確認するだけで害はない）。
+// 追加件数が想定を超えた場合や一定時間ごとに、DB から読み直して作り直す。
+// 他のプロセスが直接 users テーブルに追加した名前は作り直すまで見えないため、複数台で同じ DB を使う場合は無効にすること。
+// 最終的な重複チェックは users.username の UNIQUE 制約で行う。
+//
+// 「存在しない」と答えるのは、キーが照合順序（utf8mb4_unicode_ci）と確実に一致する場合だけにする。
+// 表示可能な ASCII だけの名前同士なら、照合順序で同じになるのは大文字小文字と末尾の空白の違いだけなので key で正確にまとめられる。
+// それ以外の名前（æ と ae、ゼロ幅スペースや制御文字を含む名前など）はキーでは同じと判定しきれないため、
+// 問い合わせた名前が ASCII でない場合や、ASCII でない名前が1件でも登録されている場合はブルームフィルターを使わず DB で確認する。
+// 負のキャッシュも ASCII の名前だけを入れる（ASCII でない名前の登録で、照合順序では同じ名前のエントリが残らないよう全て消す）。
+public class UsernameIndex {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(UsernameIndex.class);
+
+    // DB の照合順序（utf8mb4_unicode_ci）は大文字小文字とアクセントを区別しないため、キーでも結合文字を取り除く
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final boolean enabled;
+    private final long minExpected;
+    private final double falsePositiveRate;
+    private final long negativeTtlMillis;
+    private final int negativeMaxEntries;
+    private final UserDatabase loader;
+
+    private volatile BloomFilter filter;
+    // 作り直し中は追加を新しいフィルターにも書き込む（読み込み中に登録された名前を取りこぼさないため）
+    private volatile BloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Object rebuildLock = new Object();
+
+    // ユーザー名のキー -> 見つからなかった名前と有効期限
+    // 照合順序が大文字小文字を区別する DB（H2 など）でも誤らないよう、一致するのは問い合わせた名前そのものだけにする
+    private final Map<String, Missing> negativeCache = new ConcurrentHashMap<>();
+    // 追加のたびに進める（問い合わせ中に登録された名前を負のキャッシュに入れないため）
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder negativeCacheHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    private UsernameIndex(boolean enabled, long minExpected, double falsePositiveRate, long negativeTtlMillis,
+                          int negativeMaxEntries, long refreshMillis) {
+        this.enabled = enabled;
+        this.minExpected = minExpected;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.negativeMaxEntries = negativeMaxEntries;
+        this.loader = new UserDatabase();
+
+        if (!enabled) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "username-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 読み込みに失敗した場合は filter が null のままになり、全て DB に問い合わせる
+        rebuild();
+        if (refreshMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // システムプロパティから作成する
+    //   users.index.enabled        : ブルームフィルターと負のキャッシュを使う場合は true（既定値: true）
+    //   users.index.expected       : 想定するユーザー数の下限（既定値: 100000。実際の件数の2倍の方が大きければそちら）
+    //   users.index.fpp            : ブルームフィルターの誤判定率（既定値: 0.01）
+    //   users.index.refreshSeconds : DB から作り直す間隔。0 で無効（既定値: 600）
+    //   users.negativeCache.ttlMillis   : 負のキャッシュの有効期間（既定値: 10000）
+    //   users.negativeCache.maxEntries  : 負のキャッシュの上限件数（既定値: 10000）
+    public static UsernameIndex fromSystemProperties() {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("users.index.enabled", "true"));
+        long expected = Math.max(1_000L, Long.getLong("users.index.expected", 100_000L));
+        double fpp = Double.parseDouble(System.getProperty("users.index.fpp", "0.01"));
+        long refreshMillis = TimeUnit.SECONDS.toMillis(Long.getLong("users.index.refreshSeconds", 600L));
+        long ttlMillis = Long.getLong("users.negativeCache.ttlMillis", 10_000L);
+        int maxEntries = Integer.getInteger("users.negativeCache.maxEntries", 10_000);
+        return new UsernameIndex(enabled, expected, Math.min(0.5, Math.max(1e-6, fpp)), ttlMillis, maxEntries,
+                refreshMillis);
+    }
+
+    // 登録されている可能性があるか（false なら確実に登録されていない）
+    public boolean mightExist(String username) {
+        if (!enabled) {
+            return true;
+        }
+        if (!isPrintableAscii(username)) {
+            // キーが照合順序と一致する保証がないので DB で確認する
+            return true;
+        }
+        String key = key(username);
+        BloomFilter current = filter;
+        if (current != null && current.isExact() && !current.mightContain(key)) {
+            filterNegatives.increment();
+            return false;
+        }
+        Missing missing = negativeCache.get(key);
+        if (missing != null && missing.username.equals(username)) {
+            if (missing.expiresAtMillis > System.currentTimeMillis()) {
+                negativeCacheHits.increment();
+                return false;
+            }
+            negativeCache.remove(key, missing);
+        }
+        return true;
+    }
+
+    // DB に問い合わせる前に取得し、見つからなかった場合に recordMissing へ渡す
+    public long generation() {
+        return generation.get();
+    }
+
+    // DB で見つからなかった名前を負のキャッシュに入れる
+    // 問い合わせ中に登録があった場合（世代が進んだ場合）は、その名前かもしれないので入れない
+    public void recordMissing(String username, long generationAtLookup) {
+        if (!enabled || negativeTtlMillis <= 0 || !isPrintableAscii(username)) {
+            return;
+        }
+        if (filter != null && filter.isExact()) {
+            // ブルームフィルターの誤判定（または削除済みの名前）
+            falsePositives.increment();
+        }
+        long now = System.currentTimeMillis();
+        if (negativeCache.size() >= negativeMaxEntries) {
+            negativeCache.values().removeIf(missing -> missing.expiresAtMillis <= now);
+            if (negativeCache.size() >= negativeMaxEntries) {
+                return;
+            }
+        }
+        String key = key(username);
+        Missing missing = new Missing(username, now + negativeTtlMillis);
+        negativeCache.put(key, missing);
+        if (generation.get() != generationAtLookup) {
+            negativeCache.remove(key, missing);
+        }
+    }
+
+    // 登録した（または既に存在すると分かった）名前を追加する
+    public void add(String username) {
+        if (!enabled) {
+            return;
+        }
+        generation.incrementAndGet();
+        if (isPrintableAscii(username)) {
+            negativeCache.remove(key(username));
+        } else {
+            // 照合順序では同じになる ASCII の名前がどれかはキーから分からないので、全て消す
+            negativeCache.clear();
+        }
+
+        BloomFilter next = building;
+        if (next != null) {
+            addTo(next, username);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            addTo(current, username);
+            if (current.isOverCapacity() && rebuilding.compareAndSet(false, true)) {
+                // 想定件数を超えると誤判定率が上がるので、大きなフィルターで作り直す
+                scheduler.execute(() -> {
+                    rebuilding.set(false);
+                    rebuild();
+                });
+            }
+        }
+    }
+
+    // DB の全ユーザー名から作り直して差し替える
+    private void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            BloomFilter current = filter;
+            long expected = Math.max(minExpected, current != null ? current.getApproximateCount() * 2 : 0);
+            try {
+                int count = loader.countUsers();
+                BloomFilter next = new BloomFilter(Math.max(expected, count * 2L), falsePositiveRate);
+                building = next;
+                int loaded = loader.forEachUsername(username -> addTo(next, username));
+                filter = next;
+                rebuilds.increment();
+                if (!next.isExact()) {
+                    LOG.warn("⚠️ ASCII 以外のユーザー名が登録されているため、存在しない名前の判定はDBで行います");
+                }
+                LOG.info("🔎 ユーザー名インデックスを作成しました", "users", loaded,
+                        "bits", next.getBitCount(), "hashes", next.getHashCount(),
+                        "millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (SQLException e) {
+                LOG.error("❌ ユーザー名インデックスの作成エラー（DB で確認します）", "error", e.getMessage());
+            } finally {
+                building = null;
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // 照合順序に近いキー（大文字小文字・結合文字で表せるアクセント・ß/ss・末尾の空白の違いを同じキーにまとめる）
+    // 表示可能な ASCII だけの名前なら utf8mb4_unicode_ci と一致する。それ以外は近いだけで、ø と o、æ と ae のように
+    // 分解できない文字や、照合順序では無視される文字（ゼロ幅スペースなど）はまとめないため、存在の判定には使わない
+    // （mightExist を参照。LoginRateLimiter のバケットのように、まとめ損ねても結果が変わらない用途には使える）
+    public static String key(String username) {
+        String trimmed = username.stripTrailing();
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (trimmed.charAt(i) >= 0x80) {
+                String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFKD);
+                return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                        .toLowerCase(Locale.ROOT).replace("ß", "ss");
+            }
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    // 表示可能な ASCII（0x20〜0x7E）だけの名前か（key が照合順序と確実に一致する範囲）
+    static boolean isPrintableAscii(String username) {
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ASCII でない名前を入れたフィルターは「存在しない」の判定に使えなくなる（ビットを立てる前に印を付ける）
+    private static void addTo(BloomFilter filter, String username) {
+        if (!isPrintableAscii(username)) {
+            filter.markInexact();
+        }
+        filter.add(key(username));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return filter != null;
+    }
+
+    public long getApproximateCount() {
+        BloomFilter current = filter;
+        return current != null ? current.getApproximateCount() : 0;
+    }
+
+    public long getBitCount() {
+        BloomFilter current = filter;
+        return current != null ? current.getBitCount() : 0;
+    }
+
+    public int getNegativeCacheSize() {
+        return negativeCache.size();
+    }
+
+    public long getFilterNegatives() {
+        return filterNegatives.sum();
+    }
+
+    public long getNegativeCacheHits() {
+        return negativeCacheHits.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.sum();
+    }
+
+    // 負のキャッシュの1件
+    private static final class Missing {
+        private final String username;
+        private final long expiresAtMillis;
+
+        private Missing(String username, long expiresAtMillis) {
+            this.username = username;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    // ロックを使わないブルームフィルター（ビットは AtomicLongArray に CAS で立てる）
+    static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final long capacity;
+        private final LongAdder added = new LongAdder();
+        // ASCII でない名前を含む場合は false（キーが照合順序と一致しない名前があるため、含まれないとは言い切れない）
+        private volatile boolean exact = true;
+
+        BloomFilter(long expected, double falsePositiveRate) {
+            // m = -n ln(p) / (ln 2)^2, k = m / n * ln 2
+            long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+            this.capacity = expected;
+        }
+
+        // 2つのハッシュ値の組み合わせ（h1 + i * h2）で k 個の位置を決める（Kirsch-Mitzenmacher の方法）
+        void add(String key) {
+            long h1 = hash64(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+            added.increment();
+        }
+
+        boolean mightContain(String key) {
+            long h1 = hash64(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void markInexact() {
+            exact = false;
+        }
+
+        boolean isExact() {
+            return exact;
+        }
+
+        boolean isOverCapacity() {
+            return added.sum() > capacity;
+        }
+
+        long getApproximateCount() {
+            return added.sum();
+        }
+
+        long getBitCount() {
+            return bitCount;
+        }
+
+        int getHashCount() {
+            return hashCount;
+        }
+
+        // FNV-1a（64ビット）を MurmurHash3 の最終処理で混ぜたもの
+        private static long hash64(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
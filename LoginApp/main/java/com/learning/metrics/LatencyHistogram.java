@@ -0,0 +1,84 @@
+package com.learning.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// 固定バケットのレイテンシヒストグラム
+// 記録はLongAdderのみで行うため、ホットパスでロック競合が発生しない
+public class LatencyHistogram {
+    // バケット上限（マイクロ秒）。最後のバケットは+Inf扱い
+    private static final long[] BOUNDS_MICROS = {
+            50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000,
+            25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000
+    };
+
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    // 経過時間を記録する
+    public void record(long nanos) {
+        long micros = nanos / 1_000;
+        int index = BOUNDS_MICROS.length;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            if (micros <= BOUNDS_MICROS[i]) {
+                index = i;
+                break;
+            }
+        }
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    // バケットの上限値（秒）を取得する。最後の要素は+Inf
+    public double[] getUpperBoundsSeconds() {
+        double[] bounds = new double[BOUNDS_MICROS.length + 1];
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            bounds[i] = BOUNDS_MICROS[i] / 1_000_000.0;
+        }
+        bounds[BOUNDS_MICROS.length] = Double.POSITIVE_INFINITY;
+        return bounds;
+    }
+
+    // 累積バケット件数を取得する（Prometheusの"le"形式）
+    public long[] getCumulativeCounts() {
+        long[] result = new long[buckets.length];
+        long running = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            running += buckets[i].sum();
+            result[i] = running;
+        }
+        return result;
+    }
+
+    // バケット境界から概算のパーセンタイル値（ミリ秒）を求める
+    public double getPercentileMillis(double percentile) {
+        long[] cumulative = getCumulativeCounts();
+        long total = cumulative[cumulative.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            if (cumulative[i] >= threshold) {
+                return BOUNDS_MICROS[i] / 1_000.0;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,249 @@
+package com.learning.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+// アプリケーション全体のメトリクスを保持し、Prometheusのテキスト形式で出力するクラス
+// リクエストとクエリの記録はLongAdderのみで行い、ロックを取らない。
+// JVMのヒープ・GC・スレッド数とゲージは記録せず、出力（スクレイプ）のたびに読み取る。
+public class MetricsRegistry {
+    // ルートの種類の上限（不正なパスが大量に来てもメモリとラベル数が増え続けないようにする）
+    private static final int MAX_ROUTES = Integer.getInteger("metrics.maxRoutes", 200);
+
+    // 上限を超えたルートをまとめるラベル
+    public static final String OVERFLOW_ROUTE = "other";
+
+    private final Map<String, RequestMetrics> requests = new ConcurrentHashMap<>();
+    private final Map<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, NamedHistogram> histograms = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    // 初回アクセス時にのみ生成されるスレッドセーフな遅延初期化
+    private static class Holder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    // MetricsRegistryのインスタンスを取得する（Singletonパターン）
+    public static MetricsRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // ルートごとのリクエスト統計を取得する（なければ作成する）
+    public RequestMetrics request(String method, String route) {
+        String key = method + ' ' + route;
+        RequestMetrics metrics = requests.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (requests.size() >= MAX_ROUTES) {
+            String overflowKey = method + ' ' + OVERFLOW_ROUTE;
+            return requests.computeIfAbsent(overflowKey, k -> new RequestMetrics(method, OVERFLOW_ROUTE));
+        }
+        return requests.computeIfAbsent(key, k -> new RequestMetrics(method, route));
+    }
+
+    // DAOメソッドごとのクエリ統計を取得する（なければ作成する）
+    // DAOのstatic finalフィールドの初期化で呼び出す想定
+    public QueryMetrics query(String dao, String method) {
+        return queries.computeIfAbsent(dao + '.' + method, k -> new QueryMetrics(dao, method));
+    }
+
+    // スクレイプ時に値を読み取るゲージを登録する（同じ名前の場合は置き換える）
+    public void registerGauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    // 他のクラスが記録しているヒストグラムを登録する（同じ名前の場合は置き換える）
+    public void registerHistogram(String name, String help, LatencyHistogram histogram) {
+        histograms.put(name, new NamedHistogram(help, histogram));
+    }
+
+    // 全てのメトリクスをPrometheusのテキスト形式（version 0.0.4）で出力する
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        writeRequests(out);
+        writeQueries(out);
+        writeGauges(out);
+        writeJvm(out);
+        return out.toString();
+    }
+
+    private void writeRequests(StringBuilder out) {
+        List<RequestMetrics> routes = new ArrayList<>(requests.values());
+        routes.sort(Comparator.comparing(RequestMetrics::getRoute).thenComparing(RequestMetrics::getMethod));
+
+        header(out, "http_requests_total", "counter", "HTTPリクエスト数（ルート・メソッド・ステータスコード別）");
+        for (RequestMetrics route : routes) {
+            for (Map.Entry<Integer, Long> entry : route.getStatusCounts().entrySet()) {
+                sample(out, "http_requests_total",
+                        labels("route", route.getRoute(), "method", route.getMethod(),
+                                "status", String.valueOf(entry.getKey())),
+                        entry.getValue());
+            }
+        }
+
+        header(out, "http_requests_in_flight", "gauge", "処理中のHTTPリクエスト数");
+        for (RequestMetrics route : routes) {
+            sample(out, "http_requests_in_flight",
+                    labels("route", route.getRoute(), "method", route.getMethod()), route.getInFlight());
+        }
+
+        header(out, "http_request_duration_seconds", "histogram", "HTTPリクエストの処理時間");
+        for (RequestMetrics route : routes) {
+            histogram(out, "http_request_duration_seconds",
+                    labels("route", route.getRoute(), "method", route.getMethod()), route.getLatency());
+        }
+    }
+
+    private void writeQueries(StringBuilder out) {
+        List<QueryMetrics> list = new ArrayList<>(queries.values());
+        list.sort(Comparator.comparing(QueryMetrics::getDao).thenComparing(QueryMetrics::getMethod));
+
+        header(out, "jdbc_query_duration_seconds", "histogram", "JDBCクエリの実行時間（DAOメソッド別）");
+        for (QueryMetrics query : list) {
+            histogram(out, "jdbc_query_duration_seconds",
+                    labels("dao", query.getDao(), "method", query.getMethod()), query.getLatency());
+        }
+
+        header(out, "jdbc_query_errors_total", "counter", "SQLExceptionで失敗したJDBCクエリ数");
+        for (QueryMetrics query : list) {
+            sample(out, "jdbc_query_errors_total",
+                    labels("dao", query.getDao(), "method", query.getMethod()), query.getErrors());
+        }
+    }
+
+    private void writeGauges(StringBuilder out) {
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            header(out, entry.getKey(), "gauge", entry.getValue().help);
+            sample(out, entry.getKey(), "", entry.getValue().value.getAsDouble());
+        }
+        for (Map.Entry<String, NamedHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            header(out, entry.getKey(), "histogram", entry.getValue().help);
+            histogram(out, entry.getKey(), "", entry.getValue().histogram);
+        }
+    }
+
+    private void writeJvm(StringBuilder out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+
+        header(out, "jvm_memory_bytes_used", "gauge", "JVMのメモリ使用量");
+        sample(out, "jvm_memory_bytes_used", labels("area", "heap"), heap.getUsed());
+        sample(out, "jvm_memory_bytes_used", labels("area", "nonheap"), nonHeap.getUsed());
+        header(out, "jvm_memory_bytes_committed", "gauge", "JVMが確保しているメモリ量");
+        sample(out, "jvm_memory_bytes_committed", labels("area", "heap"), heap.getCommitted());
+        sample(out, "jvm_memory_bytes_committed", labels("area", "nonheap"), nonHeap.getCommitted());
+        header(out, "jvm_memory_bytes_max", "gauge", "JVMのメモリ上限（未設定の場合は-1）");
+        sample(out, "jvm_memory_bytes_max", labels("area", "heap"), heap.getMax());
+        sample(out, "jvm_memory_bytes_max", labels("area", "nonheap"), nonHeap.getMax());
+
+        // GCの回数と累積時間（コレクターごと）
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        header(out, "jvm_gc_collection_seconds", "summary", "GCの回数と累積時間");
+        for (GarbageCollectorMXBean gc : collectors) {
+            String gcLabels = labels("gc", gc.getName());
+            sample(out, "jvm_gc_collection_seconds_count", gcLabels, Math.max(0, gc.getCollectionCount()));
+            sample(out, "jvm_gc_collection_seconds_sum", gcLabels, Math.max(0, gc.getCollectionTime()) / 1_000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(out, "jvm_threads_current", "gauge", "JVMのプラットフォームスレッド数");
+        sample(out, "jvm_threads_current", "", threads.getThreadCount());
+        header(out, "jvm_threads_daemon", "gauge", "JVMのデーモンスレッド数");
+        sample(out, "jvm_threads_daemon", "", threads.getDaemonThreadCount());
+
+        header(out, "process_uptime_seconds", "gauge", "JVMの起動からの経過時間");
+        sample(out, "process_uptime_seconds", "", ManagementFactory.getRuntimeMXBean().getUptime() / 1_000.0);
+    }
+
+    // ヒストグラムのバケット・合計・件数を出力する
+    // 件数は+Infバケットの値を使い、同じスクレイプ内でバケットと件数が食い違わないようにする
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        double[] bounds = histogram.getUpperBoundsSeconds();
+        long[] cumulative = histogram.getCumulativeCounts();
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        for (int i = 0; i < bounds.length; i++) {
+            out.append(name).append("_bucket").append(prefix)
+                    .append("le=\"").append(formatValue(bounds[i])).append("\"} ")
+                    .append(cumulative[i]).append('\n');
+        }
+        sample(out, name + "_sum", labels, histogram.getSumNanos() / 1_000_000_000.0);
+        sample(out, name + "_count", labels, cumulative[cumulative.length - 1]);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    // ラベルを {name="value",...} 形式にする（引数は名前と値の組）
+    private static String labels(String... namesAndValues) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static final class Gauge {
+        private final String help;
+        private final DoubleSupplier value;
+
+        private Gauge(String help, DoubleSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private static final class NamedHistogram {
+        private final String help;
+        private final LatencyHistogram histogram;
+
+        private NamedHistogram(String help, LatencyHistogram histogram) {
+            this.help = help;
+            this.histogram = histogram;
+        }
+    }
+}
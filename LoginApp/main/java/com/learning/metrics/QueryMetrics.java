@@ -0,0 +1,43 @@
+package com.learning.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// 1つのDAOメソッドのJDBCクエリ統計（実行時間とエラー件数）
+// DAOのstatic finalフィールドに保持して使い回すため、記録時にマップを引く必要はない
+public class QueryMetrics {
+    private final String dao;
+    private final String method;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    QueryMetrics(String dao, String method) {
+        this.dao = dao;
+        this.method = method;
+    }
+
+    // クエリの実行時間を記録する（接続の取得からResultSetの読み終わりまで）
+    public void record(long nanos) {
+        latency.record(nanos);
+    }
+
+    // SQLExceptionで失敗したクエリを数える
+    public void recordError() {
+        errors.increment();
+    }
+
+    public String getDao() {
+        return dao;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
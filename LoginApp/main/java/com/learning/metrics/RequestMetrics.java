@@ -0,0 +1,61 @@
+package com.learning.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 1つのルート（メソッド + パスのテンプレート）のリクエスト統計
+// 処理中の件数・ステータスコードごとの件数・レイテンシをLongAdderで記録する
+public class RequestMetrics {
+    private final String method;
+    private final String route;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    RequestMetrics(String method, String route) {
+        this.method = method;
+        this.route = route;
+    }
+
+    // リクエストの処理開始を記録する
+    public void start() {
+        inFlight.increment();
+    }
+
+    // リクエストの処理完了を記録する
+    public void finish(int status, long nanos) {
+        inFlight.decrement();
+        latency.record(nanos);
+        // 既に存在するステータスはgetだけで済ませ、computeIfAbsentのロックを避ける
+        LongAdder counter = statusCounts.get(status);
+        if (counter == null) {
+            counter = statusCounts.computeIfAbsent(status, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    // ステータスコードごとの件数（ステータスコード順）
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
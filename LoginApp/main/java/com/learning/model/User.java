@@ -1,5 +1,7 @@
 package com.learning.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 
 // JavaScript: const user = { id: 1, name: "John" };
@@ -44,6 +46,8 @@ public class User {
         return email;
     }
     
+    // JSON には出力しない（ユーザー一覧 API などでそのまま変換されるため）
+    @JsonIgnore
     public String getPasswordHash() {
         return passwordHash;
     }
@@ -64,6 +68,8 @@ public class User {
         return createdAt;
     }
     
+    // 一覧・プロフィールの取得では読まない列なので JSON には出力しない
+    @JsonIgnore
     public LocalDateTime getUpdatedAt() {
         return updatedAt;
     }
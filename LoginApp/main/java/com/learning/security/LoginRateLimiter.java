@@ -0,0 +1,242 @@
+package com.learning.security;
+
+import com.learning.database.UsernameIndex;
+import com.learning.logging.AsyncLogger;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// ログイン試行の回数制限（総当たり・パスワードリスト攻撃で DB とハッシュ計算を使い切られないため）
+//
+// ユーザー名ごとと接続元アドレスごとにトークンバケットを持ち、どちらかが空なら DB に問い合わせる前に 429 を返す。
+// バケットは「使ったトークンがすべて回復する理論上の時刻」を AtomicLong 1つで持ち、CAS で更新する（GCRA と同じ考え方）。
+// 補充は取得時にまとめて計算するので、キーごとのタイマーは持たない。
+// 満タンまで戻ったバケットは状態を持つ意味がないので、定期的にまとめて削除する。
+// キーの数には上限があり、超えた分はハッシュで選んだ共有バケット（ストライプ）を使う（ランダムなユーザー名を大量に送られてもメモリが増え続けない）。
+public class LoginRateLimiter {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(LoginRateLimiter.class);
+
+    private static final int OVERFLOW_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final Buckets usernames;
+    private final Buckets addresses;
+    // System.nanoTime 基準の現在時刻（テストでは差し替える）
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+
+    private LoginRateLimiter(boolean enabled, Buckets usernames, Buckets addresses, LongSupplier clock, long sweepMillis) {
+        this.enabled = enabled;
+        this.usernames = usernames;
+        this.addresses = addresses;
+        this.clock = clock;
+        if (!enabled || sweepMillis <= 0) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // テスト用（時計を差し替え、スケジューラーは起動しない。満タンのバケットの削除は evictIdle を直接呼ぶ）
+    LoginRateLimiter(int userBurst, int userPerMinute, int addressBurst, int addressPerMinute, int maxKeys,
+                     LongSupplier clock) {
+        this(true, new Buckets(userBurst, userPerMinute, maxKeys, clock),
+                new Buckets(addressBurst, addressPerMinute, maxKeys, clock), clock, 0);
+    }
+
+    // システムプロパティから作成する
+    //   security.login.rateLimit.enabled : 回数制限を行う場合は true（既定値: true）
+    //   security.login.user.burst        : ユーザー名ごとに連続で試行できる回数（既定値: 5）
+    //   security.login.user.perMinute    : ユーザー名ごとに1分あたりに回復する回数（既定値: 5）
+    //   security.login.address.burst     : 接続元ごとに連続で試行できる回数（既定値: 20）
+    //   security.login.address.perMinute : 接続元ごとに1分あたりに回復する回数（既定値: 60）
+    //   security.login.maxKeys           : ユーザー名・接続元それぞれで個別に管理するキーの上限（既定値: 100000）
+    //   security.login.sweepSeconds      : 満タンに戻ったバケットを削除する間隔（既定値: 60）
+    public static LoginRateLimiter fromSystemProperties() {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("security.login.rateLimit.enabled", "true"));
+        int maxKeys = Math.max(1, Integer.getInteger("security.login.maxKeys", 100_000));
+        Buckets usernames = new Buckets(
+                Math.max(1, Integer.getInteger("security.login.user.burst", 5)),
+                Math.max(1, Integer.getInteger("security.login.user.perMinute", 5)), maxKeys, System::nanoTime);
+        Buckets addresses = new Buckets(
+                Math.max(1, Integer.getInteger("security.login.address.burst", 20)),
+                Math.max(1, Integer.getInteger("security.login.address.perMinute", 60)), maxKeys, System::nanoTime);
+        long sweepMillis = TimeUnit.SECONDS.toMillis(Math.max(1L, Long.getLong("security.login.sweepSeconds", 60L)));
+        return new LoginRateLimiter(enabled, usernames, addresses, System::nanoTime, sweepMillis);
+    }
+
+    // 接続元アドレスの試行を1回分消費する
+    // 許可する場合は 0、拒否する場合は次に試行できるまでの秒数（Retry-After に使う）を返す
+    public long tryAcquireAddress(InetSocketAddress remoteAddress) {
+        if (!enabled || remoteAddress == null) {
+            return 0;
+        }
+        return addresses.tryAcquire(addressKey(remoteAddress.getAddress()));
+    }
+
+    // ユーザー名の試行を1回分消費する（戻り値は tryAcquireAddress と同じ）
+    public long tryAcquireUsername(String username) {
+        if (!enabled) {
+            return 0;
+        }
+        // 大文字小文字などを変えて制限をすり抜けられないよう、DB の照合順序に近いキー（UsernameIndex.key）にする
+        return usernames.tryAcquire(UsernameIndex.key(username));
+    }
+
+    // ログインに成功したユーザー名の制限を解除する（入力ミスの後に正しく入力した利用者を待たせない）
+    public void onSuccess(String username) {
+        if (enabled) {
+            usernames.reset(UsernameIndex.key(username));
+        }
+    }
+
+    // 満タンに戻ったバケットを削除する
+    void evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = usernames.evictIdle(now) + addresses.evictIdle(now);
+        if (evicted > 0) {
+            LOG.debug("🧹 ログイン制限のバケットを削除しました", "evicted", evicted,
+                    "usernames", usernames.size(), "addresses", addresses.size());
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // IPv6 は利用者ごとに /64 が割り当てられることが多く、下位64ビットを変えながら試行できるため /64 単位でまとめる
+    // X-Forwarded-For は偽装できるので使わない（プロキシの後ろに置く場合は、プロキシ側で制限すること）
+    private static String addressKey(InetAddress address) {
+        if (address instanceof Inet6Address) {
+            byte[] bytes = address.getAddress();
+            StringBuilder key = new StringBuilder(20);
+            for (int i = 0; i < 8; i += 2) {
+                key.append(Integer.toHexString(((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff))).append(':');
+            }
+            return key.append(":/64").toString();
+        }
+        return address.getHostAddress();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getUsernameRejected() {
+        return usernames.rejected.sum();
+    }
+
+    public long getAddressRejected() {
+        return addresses.rejected.sum();
+    }
+
+    public long getAllowed() {
+        return addresses.allowed.sum();
+    }
+
+    public int getTrackedUsernames() {
+        return usernames.size();
+    }
+
+    public int getTrackedAddresses() {
+        return addresses.size();
+    }
+
+    public long getEvicted() {
+        return usernames.evicted.sum() + addresses.evicted.sum();
+    }
+
+    // 1種類のキー（ユーザー名または接続元）のトークンバケットの集まり
+    private static final class Buckets {
+        // トークン1つが回復するまでの時間
+        private final long intervalNanos;
+        // 満タンから空になるまでに使える時間（burst 回分）
+        private final long burstNanos;
+        private final int maxKeys;
+        private final LongSupplier clock;
+        // キー -> 使ったトークンがすべて回復する理論上の時刻（System.nanoTime 基準。現在より前なら満タン）
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong[] overflow = new AtomicLong[OVERFLOW_STRIPES];
+
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder evicted = new LongAdder();
+
+        private Buckets(int burst, int perMinute, int maxKeys, LongSupplier clock) {
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+            this.burstNanos = intervalNanos * burst;
+            this.maxKeys = maxKeys;
+            this.clock = clock;
+            long initial = clock.getAsLong();
+            for (int i = 0; i < overflow.length; i++) {
+                overflow[i] = new AtomicLong(initial);
+            }
+        }
+
+        // トークンを1つ使う（使えない場合は待ち時間の秒数）
+        private long tryAcquire(String key) {
+            AtomicLong bucket = bucket(key);
+            long now = clock.getAsLong();
+            while (true) {
+                long theoretical = bucket.get();
+                // 回復済みの時刻が過去なら満タンなので、現在から数える
+                long next = (theoretical - now > 0 ? theoretical : now) + intervalNanos;
+                if (next - now > burstNanos) {
+                    rejected.increment();
+                    long waitNanos = next - now - burstNanos;
+                    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+                }
+                if (bucket.compareAndSet(theoretical, next)) {
+                    allowed.increment();
+                    return 0;
+                }
+            }
+        }
+
+        private AtomicLong bucket(String key) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            if (buckets.size() >= maxKeys) {
+                // 上限を超えたキーは共有のストライプを使う（同じストライプのキー同士は制限を共有する）
+                return overflow[(key.hashCode() & 0x7fffffff) % OVERFLOW_STRIPES];
+            }
+            return buckets.computeIfAbsent(key, k -> new AtomicLong(clock.getAsLong()));
+        }
+
+        private void reset(String key) {
+            buckets.remove(key);
+        }
+
+        // 満タンに戻ったバケットを削除する（削除しても次に作られるバケットと同じ状態なので結果は変わらない）
+        // 削除と同時に取得されたバケットへの1回分の消費は失われることがあるが、満タンからの1回なので許容する
+        private int evictIdle(long now) {
+            int before = buckets.size();
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            int removed = Math.max(0, before - buckets.size());
+            evicted.add(removed);
+            return removed;
+        }
+
+        private int size() {
+            return buckets.size();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.learning.security;
+
+import com.learning.logging.AsyncLogger;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// パスワードのハッシュ化と検証（bcrypt）
+//
+// bcrypt は意図的に遅い CPU 処理なので、HTTP のスレッドでは実行せず専用の上限付きプールで実行する。
+// プールのキューが満杯の時は待たせずに BusyException を投げ、呼び出し側は 503 を返す。
+// これによりログインが集中しても、他の API のスレッドや CPU を使い切らない。
+//
+// コストは起動時に「1回のハッシュ化が目標ミリ秒に近くなる値」を計測して決める。
+// 保存済みハッシュのコストが現在の設定と違う場合や、旧形式（"hashed_" + パスワード）の場合は
+// ログイン成功時に needsRehash が true を返すので、その場で新しいハッシュに置き換える。
+public class PasswordHasher {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(PasswordHasher.class);
+
+    // 以前の簡易ハッシュの接頭辞（移行のために検証だけ対応する）
+    private static final String LEGACY_PREFIX = "hashed_";
+    private static final int MIN_COST = 10;
+    private static final int MAX_COST = 16;
+    // コストを決めるときに計測する回数（奇数にして中央値を1つに決める）
+    private static final int CALIBRATION_RUNS = 5;
+
+    // 処理が混み合っていてハッシュ化を受け付けられない（503 を返すべき）
+    public static class BusyException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private final int cost;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor pool;
+    // 存在しないユーザーでも同じ時間がかかるよう、比較用に使うダミーのハッシュ
+    private final String dummyHash;
+
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
+
+    private PasswordHasher(int cost, int threads, int queueCapacity, long timeoutMillis) {
+        this.cost = cost;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = BCrypt.hashpw("dummy-password", BCrypt.gensalt(cost));
+    }
+
+    // システムプロパティから作成する
+    //   security.bcrypt.cost         : bcrypt のコスト（指定しない場合は targetMillis に合わせて自動計測）
+    //   security.bcrypt.targetMillis : 1回のハッシュ化の目標時間（既定値: 100）
+    //   security.hash.threads        : ハッシュ化専用スレッド数（既定値: CPU数の半分、最低1）
+    //   security.hash.queue          : 処理待ちの上限。超えたら 503（既定値: 64）
+    //   security.hash.timeoutMillis  : 1件の待ち時間の上限。超えたら 503（既定値: 5000）
+    public static PasswordHasher fromSystemProperties() {
+        int threads = Integer.getInteger("security.hash.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queue = Integer.getInteger("security.hash.queue", 64);
+        long timeoutMillis = Long.getLong("security.hash.timeoutMillis", 5_000L);
+
+        Integer configuredCost = Integer.getInteger("security.bcrypt.cost");
+        int cost;
+        if (configuredCost != null) {
+            cost = Math.max(4, Math.min(31, configuredCost));
+        } else {
+            cost = calibrate(Long.getLong("security.bcrypt.targetMillis", 100L));
+        }
+        LOG.info("🔐 パスワードハッシュ設定", "cost", cost, "threads", threads, "queue", queue);
+        return new PasswordHasher(cost, threads, queue, timeoutMillis);
+    }
+
+    // 1回のハッシュ化が目標時間を超えない最大のコストを求める（コストが1増えると時間は2倍になる）
+    static int calibrate(long targetMillis) {
+        String salt = BCrypt.gensalt(MIN_COST);
+        // 初回は JIT が効いていないので計測に使わない
+        BCrypt.hashpw("calibration", salt);
+        // 1回だけだと GC や他の処理の割り込みで大きくぶれるため、複数回計測した中央値を使う
+        double[] samples = new double[CALIBRATION_RUNS];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        double millis = samples[samples.length / 2];
+
+        int cost = MIN_COST;
+        while (cost < MAX_COST && millis * 2 <= targetMillis) {
+            cost++;
+            millis *= 2;
+        }
+        LOG.debug("🔐 bcrypt コストを計測しました", "cost", cost, "estimatedMillis", Math.round(millis));
+        return cost;
+    }
+
+    // パスワードをハッシュ化する
+    public String hash(String password) throws BusyException {
+        return run(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    // パスワードを検証する（storedHash が null の場合もダミーで同じ時間をかけてから false を返す）
+    public boolean verify(String password, String storedHash) throws BusyException {
+        if (storedHash != null && storedHash.startsWith(LEGACY_PREFIX)) {
+            byte[] expected = storedHash.getBytes(StandardCharsets.UTF_8);
+            byte[] actual = (LEGACY_PREFIX + password).getBytes(StandardCharsets.UTF_8);
+            return MessageDigest.isEqual(expected, actual);
+        }
+        String target = storedHash != null ? storedHash : dummyHash;
+        boolean matched = run(() -> {
+            try {
+                return BCrypt.checkpw(password, target);
+            } catch (IllegalArgumentException e) {
+                // 不正な形式のハッシュ
+                return false;
+            }
+        });
+        return matched && storedHash != null;
+    }
+
+    // 保存済みハッシュを現在の設定で作り直すべきかどうか
+    public boolean needsRehash(String storedHash) {
+        if (storedHash == null || storedHash.startsWith(LEGACY_PREFIX)) {
+            return true;
+        }
+        // bcrypt の形式: $2a$10$...（4〜5文字目がコスト）
+        try {
+            return Integer.parseInt(storedHash.substring(4, 6)) != cost;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    // ハッシュを作り直して保存する（ログインの応答は待たせない。混んでいる場合は次回のログインに回す）
+    public void rehashAsync(String password, HashConsumer consumer) {
+        // ログインの検証を優先するため、キューが半分以上埋まっていたら後回しにする
+        if (pool.getQueue().remainingCapacity() < pool.getQueue().size()) {
+            LOG.debug("⚠️ ハッシュ化が混み合っているため再ハッシュを見送りました");
+            return;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    consumer.accept(timed(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+                    rehashed.increment();
+                } catch (Exception e) {
+                    LOG.error("❌ パスワードハッシュの更新エラー", "error", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.debug("⚠️ ハッシュ化が混み合っているため再ハッシュを見送りました");
+        }
+    }
+
+    // 再ハッシュした結果を受け取る
+    @FunctionalInterface
+    public interface HashConsumer {
+        void accept(String newHash) throws Exception;
+    }
+
+    private interface HashTask<T> {
+        T call();
+    }
+
+    private <T> T run(HashTask<T> task) throws BusyException {
+        Future<T> future;
+        try {
+            future = pool.submit(() -> timed(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusyException("password hashing queue is full");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new BusyException("password hashing timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException("interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("password hashing failed", e.getCause());
+        }
+    }
+
+    private <T> T timed(HashTask<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            hashCount.increment();
+            hashNanos.add(elapsed);
+            maxHashNanos.accumulate(elapsed);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getThreads() {
+        return pool.getMaximumPoolSize();
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActive() {
+        return pool.getActiveCount();
+    }
+
+    public long getHashCount() {
+        return hashCount.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getRehashed() {
+        return rehashed.sum();
+    }
+
+    // 1回のハッシュ化の平均時間（ミリ秒）
+    public double getAverageHashMillis() {
+        long count = hashCount.sum();
+        return count == 0 ? 0 : hashNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    public double getMaxHashMillis() {
+        return maxHashNanos.get() / 1_000_000.0;
+    }
+}
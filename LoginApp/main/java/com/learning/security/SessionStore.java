@@ -0,0 +1,403 @@
+package com.learning.security;
+
+import com.learning.database.SessionDatabase;
+import com.learning.logging.AsyncLogger;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// ログインセッションの管理（メモリ上で検証し、MySQL には問い合わせない）
+//
+// トークンは「セレクター.検証値」の形式。セレクターでマップを引き、検証値は SHA-256 のハッシュ同士を
+// MessageDigest.isEqual で比較するので、比較時間からトークンを推測されない。メモリにも DB にも
+// 検証値そのものは保存しない。
+//
+// 有効期限はアクセスのたびに延長する（スライディング方式）。期限切れの削除はセッションごとのタイマーではなく
+// タイマーホイール（一定間隔で1スロットずつ進むリング）で行う。延長してもスロットは移動せず、
+// スロットを処理する時にまだ期限が残っていれば、その時点の期限のスロットへ入れ直す。
+//
+// session.persist=true の場合は、作成・延長・削除を user_sessions テーブルへ非同期でまとめて書き戻し、
+// 起動時に有効なセッションを読み込む（サーバーを再起動してもログイン状態が残る）。
+public class SessionStore {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SessionStore.class);
+
+    private static final int SELECTOR_BYTES = 12;
+    private static final int VERIFIER_BYTES = 32;
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder TOKEN_DECODER = Base64.getUrlDecoder();
+    private static final HexFormat HEX = HexFormat.of();
+
+    // 1ユーザーのログインセッション
+    public static final class Session {
+        private final String selector;
+        private final byte[] verifierHash;
+        private final long userId;
+        private final String username;
+        private volatile long expiresAtMillis;
+        // DB に書き戻した有効期限（延長のたびに書き込まないため）
+        private volatile long persistedExpiresAtMillis;
+
+        private Session(String selector, byte[] verifierHash, long userId, String username, long expiresAtMillis) {
+            this.selector = selector;
+            this.verifierHash = verifierHash;
+            this.userId = userId;
+            this.username = username;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        private String storedToken() {
+            return selector + ":" + HEX.formatHex(verifierHash);
+        }
+
+        private SessionDatabase.SessionRow toRow() {
+            return new SessionDatabase.SessionRow(userId, username, storedToken(), expiresAtMillis);
+        }
+    }
+
+    // DB への書き戻し待ち（同じセッションへの変更は最後の1件にまとめる）
+    private static final class PendingWrite {
+        private final Session session;
+        private final boolean delete;
+
+        private PendingWrite(Session session, boolean delete) {
+            this.session = session;
+            this.delete = delete;
+        }
+    }
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    // 現在時刻（テストでは差し替える）
+    private final LongSupplier clock;
+
+    // タイマーホイール（スロットごとにセレクターを保持する）
+    private final List<Set<String>> wheel;
+    private final long tickMillis;
+    private long processedTick;
+
+    private final SessionDatabase sessionDatabase;
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder persistFailures = new LongAdder();
+
+    private SessionStore(long ttlMillis, long tickMillis, int wheelSize, boolean persist, long flushMillis) {
+        this(ttlMillis, tickMillis, wheelSize, persist, flushMillis, System::currentTimeMillis, true);
+    }
+
+    // テスト用（時計を差し替え、スケジューラーは起動しない。ホイールは advanceWheel を直接呼んで進める）
+    SessionStore(long ttlMillis, long tickMillis, int wheelSize, LongSupplier clock) {
+        this(ttlMillis, tickMillis, wheelSize, false, 0, clock, false);
+    }
+
+    private SessionStore(long ttlMillis, long tickMillis, int wheelSize, boolean persist, long flushMillis,
+                         LongSupplier clock, boolean startScheduler) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.processedTick = clock.getAsLong() / tickMillis;
+        this.sessionDatabase = persist ? new SessionDatabase() : null;
+        if (!startScheduler) {
+            this.scheduler = null;
+            return;
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(persist ? 2 : 1, runnable -> {
+            Thread thread = new Thread(runnable, "session-store-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::advanceWheel, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        if (persist) {
+            restore();
+            scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // システムプロパティから作成する
+    //   session.ttlMinutes  : 最後のアクセスからの有効期間（既定値: 30）
+    //   session.tickMillis  : タイマーホイールの1スロットの時間（既定値: 1000）
+    //   session.wheelSize   : タイマーホイールのスロット数（既定値: 512）
+    //   session.persist     : user_sessions テーブルへ書き戻す場合は true（既定値: false）
+    //   session.flushMillis : 書き戻しの間隔（既定値: 1000）
+    public static SessionStore fromSystemProperties() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(Long.getLong("session.ttlMinutes", 30L));
+        long tickMillis = Math.max(10L, Long.getLong("session.tickMillis", 1_000L));
+        int wheelSize = Math.max(8, Integer.getInteger("session.wheelSize", 512));
+        boolean persist = Boolean.getBoolean("session.persist");
+        long flushMillis = Math.max(100L, Long.getLong("session.flushMillis", 1_000L));
+        return new SessionStore(ttlMillis, tickMillis, wheelSize, persist, flushMillis);
+    }
+
+    // セッションを作成し、クライアントに渡すトークンを返す
+    public String create(long userId, String username) {
+        byte[] selectorBytes = new byte[SELECTOR_BYTES];
+        byte[] verifier = new byte[VERIFIER_BYTES];
+        random.nextBytes(selectorBytes);
+        random.nextBytes(verifier);
+        String selector = TOKEN_ENCODER.encodeToString(selectorBytes);
+
+        Session session = new Session(selector, sha256(verifier), userId, username,
+                clock.getAsLong() + ttlMillis);
+        sessions.put(selector, session);
+        schedule(session);
+        created.increment();
+        markDirty(session, false);
+        return selector + "." + TOKEN_ENCODER.encodeToString(verifier);
+    }
+
+    // トークンを検証し、有効なら期限を延長してセッションを返す（無効・期限切れの場合は null）
+    public Session validate(String token) {
+        validations.increment();
+        Session session = lookup(token);
+        if (session == null) {
+            validationFailures.increment();
+            return null;
+        }
+        long now = clock.getAsLong();
+        session.expiresAtMillis = now + ttlMillis;
+        // 延長のたびに書き込むと DB が追いつかないので、1分以上延びた時だけ書き戻す
+        if (session.expiresAtMillis - session.persistedExpiresAtMillis >= TimeUnit.MINUTES.toMillis(1)) {
+            markDirty(session, false);
+        }
+        return session;
+    }
+
+    // ログアウト（トークンが有効な場合だけ削除する）
+    public boolean invalidate(String token) {
+        Session session = lookup(token);
+        if (session == null || !sessions.remove(session.selector, session)) {
+            return false;
+        }
+        invalidated.increment();
+        markDirty(session, true);
+        return true;
+    }
+
+    private Session lookup(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        Session session = sessions.get(token.substring(0, dot));
+        if (session == null) {
+            return null;
+        }
+        byte[] verifier;
+        try {
+            verifier = TOKEN_DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(session.verifierHash, sha256(verifier))) {
+            return null;
+        }
+        if (session.expiresAtMillis <= clock.getAsLong()) {
+            // ホイールがまだ処理していない期限切れセッション
+            return null;
+        }
+        return session;
+    }
+
+    // 期限のスロット（期限を切り上げた tick）に入れる
+    private void schedule(Session session) {
+        long tick = (session.expiresAtMillis + tickMillis - 1) / tickMillis;
+        wheel.get((int) (tick % wheel.size())).add(session.selector);
+    }
+
+    // 経過した tick のスロットを順に処理する（scheduler のスレッドだけが呼ぶ。テストではスケジューラーの代わりに直接呼ぶ）
+    void advanceWheel() {
+        try {
+            long now = clock.getAsLong();
+            long currentTick = now / tickMillis;
+            // 長時間止まっていた場合でも、1周分を超えて処理する必要はない
+            long from = Math.max(processedTick + 1, currentTick - wheel.size() + 1);
+            for (long tick = from; tick <= currentTick; tick++) {
+                Set<String> slot = wheel.get((int) (tick % wheel.size()));
+                List<String> due = new ArrayList<>(slot);
+                slot.removeAll(due);
+                for (String selector : due) {
+                    Session session = sessions.get(selector);
+                    if (session == null) {
+                        continue;
+                    }
+                    if (session.expiresAtMillis <= now) {
+                        if (sessions.remove(selector, session)) {
+                            expired.increment();
+                            markDirty(session, true);
+                        }
+                    } else {
+                        // 延長されていたので、現在の期限のスロットへ入れ直す
+                        schedule(session);
+                    }
+                }
+            }
+            processedTick = currentTick;
+        } catch (RuntimeException e) {
+            LOG.error("❌ セッション期限切れ処理エラー", "error", e.getMessage());
+        }
+    }
+
+    private void markDirty(Session session, boolean delete) {
+        if (sessionDatabase == null) {
+            return;
+        }
+        if (!delete) {
+            session.persistedExpiresAtMillis = session.expiresAtMillis;
+        }
+        pendingWrites.put(session.selector, new PendingWrite(session, delete));
+    }
+
+    // 起動時に DB から有効なセッションを読み込む
+    private void restore() {
+        try {
+            int purged = sessionDatabase.deleteExpiredSessions();
+            int loaded = sessionDatabase.loadActiveSessions(row -> {
+                String stored = row.getStoredToken();
+                int colon = stored.indexOf(':');
+                if (colon <= 0) {
+                    return;
+                }
+                Session session = new Session(stored.substring(0, colon), HEX.parseHex(stored.substring(colon + 1)),
+                        row.getUserId(), row.getUsername(), row.getExpiresAtMillis());
+                session.persistedExpiresAtMillis = session.expiresAtMillis;
+                sessions.put(session.selector, session);
+                schedule(session);
+            });
+            LOG.info("🔑 セッションを復元しました", "loaded", loaded, "purged", purged);
+        } catch (SQLException | IllegalArgumentException e) {
+            LOG.error("❌ セッションの復元に失敗しました", "error", e.getMessage());
+        }
+    }
+
+    // 書き戻し待ちをまとめて DB に反映する
+    private void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        List<PendingWrite> batch = new ArrayList<>(pendingWrites.size());
+        for (String selector : new ArrayList<>(pendingWrites.keySet())) {
+            PendingWrite write = pendingWrites.remove(selector);
+            if (write != null) {
+                batch.add(write);
+            }
+        }
+
+        List<SessionDatabase.SessionRow> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.delete) {
+                deletes.add(write.session.storedToken());
+            } else {
+                upserts.add(write.session.toRow());
+            }
+        }
+
+        try {
+            sessionDatabase.writeBatch(upserts, deletes);
+        } catch (SQLException e) {
+            persistFailures.increment();
+            LOG.error("❌ セッションの書き戻しに失敗しました（次回再試行します）", "error", e.getMessage());
+            // 失敗した分は、その後に新しい変更が入っていなければ戻しておく
+            for (PendingWrite write : batch) {
+                pendingWrites.putIfAbsent(write.session.selector, write);
+            }
+        }
+    }
+
+    // 停止する（書き戻し待ちがあれば反映してから止める）
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (sessionDatabase != null) {
+            flush();
+        }
+    }
+
+    private static byte[] sha256(byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getInvalidated() {
+        return invalidated.sum();
+    }
+
+    public long getValidations() {
+        return validations.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    public int getPendingWrites() {
+        return pendingWrites.size();
+    }
+
+    public long getPersistFailures() {
+        return persistFailures.sum();
+    }
+}
@@ -1,83 +1,128 @@
 package com.learning.server;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.learning.database.LastLoginWriter;
 import com.learning.database.UserDatabase;
+import com.learning.database.UsernameIndex;
+import com.learning.logging.AsyncLogger;
 import com.learning.model.User;
+import com.learning.security.LoginRateLimiter;
+import com.learning.security.PasswordHasher;
+import com.learning.security.SessionStore;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ApiHandler {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(ApiHandler.class);
+    private static final String SESSION_COOKIE = "SESSION";
+
     private final UserDatabase userDatabase;
+    private final LastLoginWriter lastLoginWriter;
+    private final PasswordHasher passwordHasher;
+    private final SessionStore sessionStore;
+    private final LoginRateLimiter loginRateLimiter;
     private final ObjectMapper objectMapper;
+    // ストリーミング時は要素ごとにflushせず、バッファが溜まった分だけ送る
+    private final ObjectWriter streamItemWriter;
+    // リクエストボディは文字列にせず、ストリームから直接 Map に変換する
+    private final ObjectReader requestReader;
+    private final RequestBodyReader bodyReader;
     
-    public ApiHandler() {
-        this.userDatabase = new UserDatabase();
-        this.objectMapper = new ObjectMapper();
+    public ApiHandler(PasswordHasher passwordHasher, SessionStore sessionStore, UsernameIndex usernameIndex,
+                      LastLoginWriter lastLoginWriter, LoginRateLimiter loginRateLimiter) {
+        // 存在しないユーザー名の確認はインデックスで済ませ、DB に問い合わせない
+        this.userDatabase = new UserDatabase(usernameIndex);
+        this.lastLoginWriter = lastLoginWriter;
+        this.passwordHasher = passwordHasher;
+        this.sessionStore = sessionStore;
+        this.loginRateLimiter = loginRateLimiter;
+        // 読み書きのバッファはスレッドに依存しないプールから借りる（スレッドが入れ替わってもバッファを使い回せる）
+        this.objectMapper = new ObjectMapper(JsonFactory.builder()
+                .recyclerPool(JsonRecyclerPools.sharedLockFreePool())
+                .build());
         // Java 8 日時サポートを有効化
         this.objectMapper.findAndRegisterModules();
+        this.streamItemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.requestReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
+        this.bodyReader = new RequestBodyReader();
     }
     
-    // ユーザー一覧取得 API
-    public void handleUsers(HttpExchange exchange) throws IOException {
-        SimpleHttpServer.addCorsHeaders(exchange);
-        
-        if ("OPTIONS".equals(exchange.getRequestMethod())) {
-            exchange.sendResponseHeaders(200, -1);
-            return;
-        }
-        
+    // ユーザー一覧取得 API（GET /api/users）
+    public void handleUsers(HttpExchange exchange, Router.PathParams params) throws IOException {
         try {
-            if ("GET".equals(exchange.getRequestMethod())) {
-                // 全ユーザー取得
-                List<User> users = userDatabase.getAllUsers();
-                
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("users", users);
-                response.put("count", users.size());
-                response.put("message", "ユーザー一覧を取得しました");
-                
-                String jsonResponse = objectMapper.writeValueAsString(response);
-                SimpleHttpServer.sendJsonResponse(exchange, 200, jsonResponse);
-                
-                System.out.println("✅ ユーザー一覧API: " + users.size() + "件のユーザーを返却");
-                
-            } else {
-                SimpleHttpServer.sendErrorResponse(exchange, 405, "Method not allowed");
-            }
+            // 全ユーザーをストリーミングで返す
+            int count = streamUsers(exchange);
+            LOG.debug("✅ ユーザー一覧API", "count", count);
+        } catch (ResponseAbortedException e) {
+            LOG.error("❌ ユーザー一覧ストリーミングエラー", "error", e.getMessage());
+            throw e;
         } catch (Exception e) {
-            System.err.println("❌ ユーザー一覧API エラー: " + e.getMessage());
+            LOG.error("❌ ユーザー一覧API エラー", "error", e.getMessage());
+            if (exchange.getResponseCode() != -1) {
+                // 本文の送信中に失敗した場合（クライアントの切断など）はエラー応答を返せないので、接続ごと切る
+                throw new ResponseAbortedException("ユーザー一覧の送信に失敗しました", e);
+            }
             SimpleHttpServer.sendErrorResponse(exchange, 500, "Internal server error");
         }
     }
     
-    // ユーザー登録 API
-    public void handleRegister(HttpExchange exchange) throws IOException {
-        SimpleHttpServer.addCorsHeaders(exchange);
-        
-        if ("OPTIONS".equals(exchange.getRequestMethod())) {
-            exchange.sendResponseHeaders(200, -1);
-            return;
-        }
+    // ユーザー一覧をJSONとしてストリーミング送信する
+    // 一覧・文字列・バイト配列を作らず、読み込んだ行をそのままチャンク転送で書き出す
+    private int streamUsers(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        // 長さ0を指定するとチャンク転送エンコーディングになる
+        exchange.sendResponseHeaders(200, 0);
         
-        if (!"POST".equals(exchange.getRequestMethod())) {
-            SimpleHttpServer.sendErrorResponse(exchange, 405, "Method not allowed");
-            return;
+        int count = 0;
+        OutputStream outputStream = exchange.getResponseBody();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            // 途中で失敗した場合に閉じ括弧を補ったり、出力先を閉じて終端チャンクを送ったりしない
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeStringField("message", "ユーザー一覧を取得しました");
+            generator.writeArrayFieldStart("users");
+            count = userDatabase.forEachUser(user -> streamItemWriter.writeValue(generator, user));
+            generator.writeEndArray();
+            generator.writeNumberField("count", count);
+            generator.writeEndObject();
+        } catch (SQLException e) {
+            // ヘッダー送信後なのでステータスは変えられない。不完全なJSONのまま接続を切る
+            throw new ResponseAbortedException("ユーザー一覧の読み込みに失敗しました", e);
         }
-        
+        // 最後まで書けた場合だけ終端チャンクを送る
+        outputStream.close();
+        return count;
+    }
+    
+    // ユーザー登録 API（POST /api/auth/register）
+    public void handleRegister(HttpExchange exchange, Router.PathParams params) throws IOException {
         try {
             // リクエストボディを読み取り
-            String requestBody = readRequestBody(exchange);
-            System.out.println("📥 登録リクエスト受信: " + requestBody);
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> requestData = objectMapper.readValue(requestBody, Map.class);
+            Map<String, Object> requestData = readRequestBody(exchange);
+            if (requestData == null) {
+                return;
+            }
+            // 本文にはパスワードが含まれるため、明示的に有効化した場合だけ出力する
+            if (LOG.isPayloadEnabled()) {
+                LOG.debug("📥 登録リクエスト受信", "body", requestData);
+            }
             
             // パラメータ取得
             String username = (String) requestData.get("username");
@@ -97,18 +142,29 @@ public class ApiHandler {
                 return;
             }
             
-            // 重複チェック（簡易版）
-            User existingUser = userDatabase.findUserByUsername(username);
-            if (existingUser != null) {
+            // 重複チェック（インデックスに無い名前は DB に問い合わせない。最終的な判定は UNIQUE 制約で行う）
+            if (userDatabase.usernameExists(username)) {
                 SimpleHttpServer.sendErrorResponse(exchange, 409, "このユーザー名は既に使用されています");
                 return;
             }
             
-            // ユーザー作成（実際の実装ではパスワードをハッシュ化する）
+            // ユーザー作成（パスワードは専用スレッドで bcrypt ハッシュ化する）
             User newUser = new User(username, email, firstName, lastName);
-            newUser.setPasswordHash("hashed_" + password); // 簡易ハッシュ（実際はBCryptを使用）
+            try {
+                newUser.setPasswordHash(passwordHasher.hash(password));
+            } catch (PasswordHasher.BusyException e) {
+                sendBusyResponse(exchange);
+                return;
+            }
             
-            User createdUser = userDatabase.createUser(newUser);
+            User createdUser;
+            try {
+                createdUser = userDatabase.createUser(newUser);
+            } catch (UserDatabase.DuplicateUserException e) {
+                // 同じ名前の登録が同時に来た場合など、事前のチェックをすり抜けた重複
+                SimpleHttpServer.sendErrorResponse(exchange, 409, "このユーザー名またはメールアドレスは既に使用されています");
+                return;
+            }
             
             if (createdUser != null) {
                 // レスポンス作成（パスワードハッシュは除外）
@@ -120,39 +176,35 @@ public class ApiHandler {
                 String jsonResponse = objectMapper.writeValueAsString(response);
                 SimpleHttpServer.sendJsonResponse(exchange, 201, jsonResponse);
                 
-                System.out.println("✅ ユーザー登録成功: " + username);
+                LOG.info("✅ ユーザー登録成功", "username", username);
                 
             } else {
                 SimpleHttpServer.sendErrorResponse(exchange, 500, "ユーザー登録に失敗しました");
             }
             
         } catch (Exception e) {
-            System.err.println("❌ ユーザー登録API エラー: " + e.getMessage());
+            LOG.error("❌ ユーザー登録API エラー", "error", e.getMessage());
             SimpleHttpServer.sendErrorResponse(exchange, 500, "Internal server error");
         }
     }
     
-    // ログイン API
-    public void handleLogin(HttpExchange exchange) throws IOException {
-        SimpleHttpServer.addCorsHeaders(exchange);
-        
-        if ("OPTIONS".equals(exchange.getRequestMethod())) {
-            exchange.sendResponseHeaders(200, -1);
-            return;
-        }
-        
-        if (!"POST".equals(exchange.getRequestMethod())) {
-            SimpleHttpServer.sendErrorResponse(exchange, 405, "Method not allowed");
-            return;
-        }
-        
+    // ログイン API（POST /api/auth/login）
+    public void handleLogin(HttpExchange exchange, Router.PathParams params) throws IOException {
         try {
-            // リクエストボディを読み取り
-            String requestBody = readRequestBody(exchange);
-            System.out.println("📥 ログインリクエスト受信");
+            // 接続元ごとの試行回数（ボディを読む前に確認する）
+            long retryAfter = loginRateLimiter.tryAcquireAddress(exchange.getRemoteAddress());
+            if (retryAfter > 0) {
+                sendTooManyRequests(exchange, retryAfter);
+                LOG.warn("⚠️ ログイン試行が多すぎます（接続元）", "remote", exchange.getRemoteAddress());
+                return;
+            }
             
-            @SuppressWarnings("unchecked")
-            Map<String, Object> requestData = objectMapper.readValue(requestBody, Map.class);
+            // リクエストボディを読み取り
+            Map<String, Object> requestData = readRequestBody(exchange);
+            if (requestData == null) {
+                return;
+            }
+            LOG.debug("📥 ログインリクエスト受信");
             
             String username = (String) requestData.get("username");
             String password = (String) requestData.get("password");
@@ -165,70 +217,169 @@ public class ApiHandler {
                 return;
             }
             
-            // ユーザー検索
-            User user = userDatabase.findUserByUsername(username);
+            // ユーザー名ごとの試行回数（DB とパスワード検証より先に確認する）
+            retryAfter = loginRateLimiter.tryAcquireUsername(username);
+            if (retryAfter > 0) {
+                sendTooManyRequests(exchange, retryAfter);
+                LOG.warn("⚠️ ログイン試行が多すぎます（ユーザー名）", "username", username);
+                return;
+            }
             
-            if (user != null && user.isActive()) {
-                // 簡易パスワード検証（実際はBCryptで検証）
-                if (("hashed_" + password).equals(user.getPasswordHash())) {
-                    // 最終ログイン日時を更新
-                    userDatabase.updateLastLogin(user.getId());
+            // ユーザー検索（検証に必要な列だけを取得する）
+            User credentials = userDatabase.findCredentialsByUsername(username);
+            
+            if (credentials != null && credentials.isActive()) {
+                // パスワード検証（bcrypt、専用スレッドで実行）
+                boolean valid;
+                try {
+                    valid = passwordHasher.verify(password, credentials.getPasswordHash());
+                } catch (PasswordHasher.BusyException e) {
+                    sendBusyResponse(exchange);
+                    return;
+                }
+                
+                // 応答に載せるプロフィールは検証に成功した場合だけ取得する（前回の最終ログイン日時を返すため更新より先に読む）
+                User user = valid ? userDatabase.findUserById(credentials.getId()) : null;
+                if (valid && user == null) {
+                    // 検証の直後に削除された場合や DB エラー
+                    SimpleHttpServer.sendErrorResponse(exchange, 500, "ログインに失敗しました");
+                    return;
+                }
+                
+                if (user != null) {
+                    // 入力ミスの後に正しく入力できた利用者は、すぐに制限を解除する
+                    loginRateLimiter.onSuccess(username);
+                    
+                    // 最終ログイン日時を記録（UPDATE はバックグラウンドでまとめて行い、ここでは待たない）
+                    lastLoginWriter.record(user.getId());
+                    
+                    // 旧形式やコストが変わったハッシュは、応答とは別に作り直して保存する
+                    if (passwordHasher.needsRehash(credentials.getPasswordHash())) {
+                        Long userId = user.getId();
+                        passwordHasher.rehashAsync(password, newHash -> userDatabase.updatePasswordHash(userId, newHash));
+                    }
+                    
+                    // セッションを発行（以降のリクエストは DB に問い合わせずにトークンで認証できる）
+                    String token = sessionStore.create(user.getId(), user.getUsername());
+                    setSessionCookie(exchange, token, sessionStore.getTtlMillis() / 1000);
                     
                     Map<String, Object> response = new HashMap<>();
                     response.put("success", true);
                     response.put("message", "ログインしました");
                     response.put("user", createUserResponse(user));
+                    response.put("token", token);
                     
                     String jsonResponse = objectMapper.writeValueAsString(response);
                     SimpleHttpServer.sendJsonResponse(exchange, 200, jsonResponse);
                     
-                    System.out.println("✅ ログイン成功: " + username);
+                    LOG.info("✅ ログイン成功", "username", username);
                     
                 } else {
                     SimpleHttpServer.sendErrorResponse(exchange, 401, "ユーザー名またはパスワードが間違っています");
-                    System.out.println("⚠️ ログイン失敗（パスワード不一致）: " + username);
+                    LOG.warn("⚠️ ログイン失敗（パスワード不一致）", "username", username);
                 }
             } else {
+                // ユーザーの有無が応答時間で分からないよう、存在しない場合もダミーのハッシュで検証する
+                try {
+                    passwordHasher.verify(password, null);
+                } catch (PasswordHasher.BusyException e) {
+                    sendBusyResponse(exchange);
+                    return;
+                }
                 SimpleHttpServer.sendErrorResponse(exchange, 401, "ユーザー名またはパスワードが間違っています");
-                System.out.println("⚠️ ログイン失敗（ユーザーが存在しない）: " + username);
+                LOG.warn("⚠️ ログイン失敗（ユーザーが存在しない）", "username", username);
             }
             
         } catch (Exception e) {
-            System.err.println("❌ ログインAPI エラー: " + e.getMessage());
+            LOG.error("❌ ログインAPI エラー", "error", e.getMessage());
             SimpleHttpServer.sendErrorResponse(exchange, 500, "Internal server error");
         }
     }
     
-    // ログアウト API
-    public void handleLogout(HttpExchange exchange) throws IOException {
-        SimpleHttpServer.addCorsHeaders(exchange);
-        
-        if ("OPTIONS".equals(exchange.getRequestMethod())) {
-            exchange.sendResponseHeaders(200, -1);
-            return;
-        }
-        
-        if (!"POST".equals(exchange.getRequestMethod())) {
-            SimpleHttpServer.sendErrorResponse(exchange, 405, "Method not allowed");
-            return;
-        }
-        
+    // ユーザー名・接続元ごとのログイン試行回数の上限に達した場合は 429 を返し、次に試行できるまでの秒数を Retry-After で伝える
+    private void sendTooManyRequests(HttpExchange exchange, long retryAfterSeconds) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+        SimpleHttpServer.sendErrorResponse(exchange, 429, "ログインの試行回数が多すぎます。しばらくしてから再度お試しください");
+    }
+    
+    // ハッシュ化の処理待ちが上限を超えた場合は 503 で少し待ってから再試行させる
+    private void sendBusyResponse(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        SimpleHttpServer.sendErrorResponse(exchange, 503, "混み合っています。しばらくしてから再度お試しください");
+        LOG.warn("⚠️ パスワードハッシュ処理が混み合っています", "queue", passwordHasher.getQueueDepth());
+    }
+    
+    // ログアウト API（POST /api/auth/logout）
+    public void handleLogout(HttpExchange exchange, Router.PathParams params) throws IOException {
         try {
+            // セッションを削除し、Cookie も消す
+            boolean loggedOut = sessionStore.invalidate(extractSessionToken(exchange));
+            setSessionCookie(exchange, "", 0);
+            
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "ログアウトしました");
+            response.put("message", loggedOut ? "ログアウトしました" : "ログインしていません");
             
             String jsonResponse = objectMapper.writeValueAsString(response);
             SimpleHttpServer.sendJsonResponse(exchange, 200, jsonResponse);
             
-            System.out.println("✅ ログアウト処理完了");
+            LOG.debug("✅ ログアウト処理完了");
             
         } catch (Exception e) {
-            System.err.println("❌ ログアウトAPI エラー: " + e.getMessage());
+            LOG.error("❌ ログアウトAPI エラー", "error", e.getMessage());
             SimpleHttpServer.sendErrorResponse(exchange, 500, "Internal server error");
         }
     }
     
+    // ログイン中のユーザー情報 API（GET /api/auth/me）
+    // セッションをメモリ上で検証し、DB には問い合わせない
+    public void handleMe(HttpExchange exchange, Router.PathParams params) throws IOException {
+        try {
+            SessionStore.Session session = sessionStore.validate(extractSessionToken(exchange));
+            if (session == null) {
+                SimpleHttpServer.sendErrorResponse(exchange, 401, "ログインしていません");
+                return;
+            }
+            
+            Map<String, Object> user = new HashMap<>();
+            user.put("id", session.getUserId());
+            user.put("username", session.getUsername());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("user", user);
+            response.put("expiresAt", session.getExpiresAtMillis());
+            
+            SimpleHttpServer.sendJsonResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            
+        } catch (Exception e) {
+            LOG.error("❌ セッション確認API エラー", "error", e.getMessage());
+            SimpleHttpServer.sendErrorResponse(exchange, 500, "Internal server error");
+        }
+    }
+    
+    // Authorization: Bearer ヘッダー、なければ SESSION Cookie からトークンを取り出す
+    private String extractSessionToken(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return authorization.substring(7).trim();
+        }
+        for (String cookieHeader : exchange.getRequestHeaders().getOrDefault("Cookie", List.of())) {
+            for (String cookie : cookieHeader.split(";")) {
+                String trimmed = cookie.trim();
+                if (trimmed.startsWith(SESSION_COOKIE + "=")) {
+                    return trimmed.substring(SESSION_COOKIE.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+    
+    private void setSessionCookie(HttpExchange exchange, String token, long maxAgeSeconds) {
+        exchange.getResponseHeaders().add("Set-Cookie",
+                SESSION_COOKIE + "=" + token + "; Path=/; Max-Age=" + maxAgeSeconds + "; HttpOnly; SameSite=Lax");
+    }
+    
     // ユーザーレスポンス作成（パスワードハッシュを除外）
     private Map<String, Object> createUserResponse(User user) {
         Map<String, Object> userResponse = new HashMap<>();
@@ -245,9 +396,23 @@ public class ApiHandler {
     }
     
     // リクエストボディを読み取るヘルパーメソッド
-    private String readRequestBody(HttpExchange exchange) throws IOException {
-        try (InputStream inputStream = exchange.getRequestBody()) {
-            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    // 上限（http.maxBodyBytes）を超える場合は 413、JSON が不正な場合は 400 を送って null を返す
+    private Map<String, Object> readRequestBody(HttpExchange exchange) throws IOException {
+        Map<String, Object> requestData;
+        try {
+            requestData = bodyReader.read(exchange, requestReader);
+        } catch (RequestBodyReader.TooLargeException e) {
+            SimpleHttpServer.sendErrorResponse(exchange, 413, "リクエストが大きすぎます");
+            LOG.warn("⚠️ リクエストボディが上限を超えています", "maxBytes", e.getMaxBytes());
+            return null;
+        } catch (JsonProcessingException e) {
+            SimpleHttpServer.sendErrorResponse(exchange, 400, "リクエストの形式が正しくありません");
+            return null;
+        }
+        if (requestData == null) {
+            // ボディが "null" の場合
+            SimpleHttpServer.sendErrorResponse(exchange, 400, "リクエストの形式が正しくありません");
         }
+        return requestData;
     }
 }
@@ -0,0 +1,94 @@
+package com.learning.server;
+
+import com.learning.metrics.MetricsRegistry;
+import com.learning.metrics.RequestMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+// ハンドラーを包み、ルートごとの件数・ステータスコード・処理時間・処理中の件数を記録するハンドラー
+public class InstrumentedHandler implements HttpHandler {
+    private final HttpHandler delegate;
+    private final Function<String, String> routeResolver;
+    private final MetricsRegistry registry;
+
+    // 全てのリクエストを同じルート名で記録する（静的ファイルなど）
+    public InstrumentedHandler(HttpHandler delegate, String route) {
+        this(delegate, path -> route);
+    }
+
+    // パスからルート名を決めて記録する
+    public InstrumentedHandler(HttpHandler delegate, Function<String, String> routeResolver) {
+        this.delegate = delegate;
+        this.routeResolver = routeResolver;
+        this.registry = MetricsRegistry.getInstance();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String route = routeResolver.apply(exchange.getRequestURI().getPath());
+        RequestMetrics metrics = registry.request(normalizeMethod(exchange.getRequestMethod()), route);
+        metrics.start();
+        long start = System.nanoTime();
+        try {
+            delegate.handle(exchange);
+        } finally {
+            // レスポンスを送らずに終わった場合（例外など）は500として数える
+            int status = exchange.getResponseCode();
+            metrics.finish(status > 0 ? status : 500, System.nanoTime() - start);
+        }
+    }
+
+    // 数字だけのパス要素を {id} に置き換える（例: /api/users/12 → /api/users/{id}）
+    // IDごとにラベルが増えないようにするため
+    public static String templatePath(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            sb.append(isNumeric(segment) ? "{id}" : segment);
+            if (end < path.length()) {
+                sb.append('/');
+            }
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+
+    private static boolean isNumeric(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 想定外のメソッドは OTHER にまとめる（ラベルの種類が増えないようにする）
+    private static String normalizeMethod(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "POST":
+            case "PUT":
+            case "PATCH":
+            case "DELETE":
+            case "OPTIONS":
+                return method;
+            default:
+                return "OTHER";
+        }
+    }
+}
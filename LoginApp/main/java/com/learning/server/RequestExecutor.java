@@ -0,0 +1,238 @@
+package com.learning.server;
+
+import com.learning.logging.AsyncLogger;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// HTTPリクエストを実行するExecutor（実行方式を起動時に選べる）
+//   virtual  : リクエストごとに仮想スレッドを作る
+//   fixed    : 固定サイズのスレッドプール
+//   adaptive : キュー待ち時間に応じてスレッド数を増減するプール
+//
+// 処理待ち＋処理中のリクエスト数が上限に達したら、キューに積まずに
+// ディスパッチャースレッド上で即座に 503 + Retry-After を返す（過負荷時の負荷制限）
+public class RequestExecutor implements Executor {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(RequestExecutor.class);
+
+    public enum Mode {
+        VIRTUAL, FIXED, ADAPTIVE;
+
+        public static Mode fromString(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("⚠️ 不明な実行モードです（virtual を使用します）", "mode", value);
+                return VIRTUAL;
+            }
+        }
+    }
+
+    // 503 を返すべきリクエストかどうか（ディスパッチャースレッドで実行中だけtrue）
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    // adaptive モードの調整間隔と目標キュー待ち時間
+    private static final long ADJUST_INTERVAL_MILLIS = 500;
+    private static final long TARGET_QUEUE_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Mode mode;
+    private final ExecutorService delegate;
+    private final int maxOutstanding;
+    private final int retryAfterSeconds;
+    private final int minThreads;
+    private final int maxThreads;
+    private ScheduledExecutorService controller;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    // 直近の調整区間のキュー待ち時間（合計と件数）
+    private final LongAdder windowWaitNanos = new LongAdder();
+    private final LongAdder windowCount = new LongAdder();
+    private final AtomicLong lastQueueLatencyNanos = new AtomicLong();
+
+    private RequestExecutor(Mode mode, int minThreads, int maxThreads, int maxOutstanding, int retryAfterSeconds) {
+        this.mode = mode;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.maxOutstanding = maxOutstanding;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.delegate = switch (mode) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory());
+            case FIXED -> Executors.newFixedThreadPool(maxThreads, namedThreadFactory("http-worker-"));
+            case ADAPTIVE -> new ThreadPoolExecutor(minThreads, maxThreads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), namedThreadFactory("http-worker-"));
+        };
+
+        if (mode == Mode.ADAPTIVE) {
+            controller = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("http-pool-controller"));
+            controller.scheduleAtFixedRate(this::adjustPoolSize,
+                    ADJUST_INTERVAL_MILLIS, ADJUST_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // システムプロパティから作成する
+    //   server.executor       : virtual / fixed / adaptive（既定値: virtual）
+    //   server.threads        : fixed のスレッド数、adaptive の最大スレッド数（既定値: CPU数×8）
+    //   server.minThreads     : adaptive の最小スレッド数（既定値: CPU数）
+    //   server.maxOutstanding : 処理待ち＋処理中の上限。超えたら503（既定値: 1000）
+    //   server.retryAfter     : 503 の Retry-After 秒数（既定値: 1）
+    public static RequestExecutor fromSystemProperties() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        Mode mode = Mode.fromString(System.getProperty("server.executor", "virtual"));
+        int maxThreads = Integer.getInteger("server.threads", cpus * 8);
+        int minThreads = Math.min(Integer.getInteger("server.minThreads", cpus), maxThreads);
+        int maxOutstanding = Integer.getInteger("server.maxOutstanding", 1000);
+        int retryAfter = Integer.getInteger("server.retryAfter", 1);
+        return new RequestExecutor(mode, minThreads, maxThreads, maxOutstanding, retryAfter);
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        // 過負荷時はキューに積まず、この場（ディスパッチャースレッド）で503を返させる
+        if (queued.get() + inFlight.get() >= maxOutstanding) {
+            shed.increment();
+            SHEDDING.set(Boolean.TRUE);
+            try {
+                command.run();
+            } finally {
+                SHEDDING.remove();
+            }
+            return;
+        }
+
+        long enqueuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                long waitNanos = System.nanoTime() - enqueuedAt;
+                queued.decrementAndGet();
+                inFlight.incrementAndGet();
+                windowWaitNanos.add(waitNanos);
+                windowCount.increment();
+                try {
+                    command.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // adaptive モード: キュー待ち時間が目標を超えたら増やし、十分短くて暇なら減らす
+    private void adjustPoolSize() {
+        long count = windowCount.sumThenReset();
+        long waitNanos = windowWaitNanos.sumThenReset();
+        long averageWait = count > 0 ? waitNanos / count : 0;
+        lastQueueLatencyNanos.set(averageWait);
+
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) delegate;
+        int current = pool.getCorePoolSize();
+
+        if (averageWait > TARGET_QUEUE_LATENCY_NANOS && current < maxThreads) {
+            // 足りない分を一気に増やしすぎないよう、現在の半分ずつ増やす
+            int next = Math.min(maxThreads, current + Math.max(1, current / 2));
+            pool.setMaximumPoolSize(Math.max(next, pool.getMaximumPoolSize()));
+            pool.setCorePoolSize(next);
+        } else if (averageWait < TARGET_QUEUE_LATENCY_NANOS / 4
+                && current > minThreads
+                && pool.getActiveCount() < current / 2) {
+            pool.setCorePoolSize(current - 1);
+        }
+    }
+
+    // 過負荷時は 503 + Retry-After を返し、そうでなければ元のハンドラーを呼ぶ
+    public HttpHandler guard(HttpHandler handler) {
+        return exchange -> {
+            if (SHEDDING.get()) {
+                try {
+                    SimpleHttpServer.addCorsHeaders(exchange);
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                    SimpleHttpServer.sendErrorResponse(exchange, 503, "Service unavailable");
+                } finally {
+                    exchange.close();
+                }
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    public void shutdown() {
+        if (controller != null) {
+            controller.shutdownNow();
+        }
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delegate.shutdownNow();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    // 現在のスレッド数（virtual の場合は処理中のリクエスト数）
+    public int getPoolSize() {
+        if (delegate instanceof ThreadPoolExecutor pool) {
+            return pool.getPoolSize();
+        }
+        return inFlight.get();
+    }
+
+    // 直近の平均キュー待ち時間（ミリ秒、adaptive モードのみ更新）
+    public double getQueueLatencyMillis() {
+        return lastQueueLatencyNanos.get() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.learning.server;
+
+import java.io.IOException;
+
+// ステータスとヘッダーを送った後で、レスポンスを最後まで書けなかったことを表す例外
+//
+// ハンドラーはこの例外を受け取ったら exchange を閉じずにそのまま投げる。
+// HttpServer はハンドラーから IOException が投げられると接続を切断するため、チャンク転送の終端が送られず、
+// クライアントは途中で切れたレスポンス（200 の正常な短い一覧ではない）として扱える。
+public class ResponseAbortedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ResponseAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,88 +1,357 @@
 package com.learning.server;
 
+import com.learning.database.DatabaseConnection;
+import com.learning.database.LastLoginWriter;
+import com.learning.database.PooledDataSource;
+import com.learning.database.UserDatabase;
+import com.learning.database.UsernameIndex;
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.MetricsRegistry;
+import com.learning.security.LoginRateLimiter;
+import com.learning.security.PasswordHasher;
+import com.learning.security.SessionStore;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.Executors;
+import java.util.Map;
 
 public class SimpleHttpServer {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SimpleHttpServer.class);
+
     private static final int PORT = 8080;
     
     private HttpServer server;
+    private RequestExecutor executor;
     private final StaticFileHandler staticFileHandler;
     private final ApiHandler apiHandler;
+    private final PasswordHasher passwordHasher;
+    private final SessionStore sessionStore;
+    private final UsernameIndex usernameIndex;
+    private final LastLoginWriter lastLoginWriter;
+    private final LoginRateLimiter loginRateLimiter;
     
     public SimpleHttpServer() {
         this.staticFileHandler = new StaticFileHandler();
-        this.apiHandler = new ApiHandler();
+        // bcrypt のコストは起動時に計測して決める（-Dsecurity.bcrypt.cost で固定も可能）
+        this.passwordHasher = PasswordHasher.fromSystemProperties();
+        // セッションはメモリ上で管理する（-Dsession.persist=true で user_sessions テーブルへ書き戻す）
+        this.sessionStore = SessionStore.fromSystemProperties();
+        // 登録済みユーザー名を起動時に読み込む（-Dusers.index.enabled=false で毎回 DB に問い合わせる）
+        this.usernameIndex = UsernameIndex.fromSystemProperties();
+        // 最終ログイン日時はバッファに溜めて一定間隔でまとめて書き込む
+        this.lastLoginWriter = LastLoginWriter.fromSystemProperties(new UserDatabase());
+        // ログイン試行はユーザー名・接続元ごとに回数を制限する（-Dsecurity.login.rateLimit.enabled=false で無効）
+        this.loginRateLimiter = LoginRateLimiter.fromSystemProperties();
+        this.apiHandler = new ApiHandler(passwordHasher, sessionStore, usernameIndex, lastLoginWriter, loginRateLimiter);
     }
     
     public void start() throws IOException {
         server = HttpServer.create(new InetSocketAddress(PORT), 0);
         
-        // 静的ファイル配信（HTML, CSS, JS）
-        server.createContext("/", staticFileHandler);
+        // リクエスト実行方式（-Dserver.executor=virtual|fixed|adaptive で切り替え）
+        executor = RequestExecutor.fromSystemProperties();
+        
+        // 静的ファイル配信（HTML, CSS, JS）。ファイルごとには分けず、まとめて計測する
+        server.createContext("/", new InstrumentedHandler(executor.guard(staticFileHandler), "static"));
+        
+        // API エンドポイント（ルート表で振り分ける。404 / 405 / OPTIONS はルーターが返す）
+        Router apiRouter = new Router(SimpleHttpServer::sendErrorResponse)
+                .get("/api/test", this::handleTest)
+                .get("/api/metrics", this::handleMetrics)
+                .get("/api/users", apiHandler::handleUsers)
+                .post("/api/auth/register", apiHandler::handleRegister)
+                .post("/api/auth/login", apiHandler::handleLogin)
+                .post("/api/auth/logout", apiHandler::handleLogout)
+                .get("/api/auth/me", apiHandler::handleMe);
+        
+        // 過負荷時は 503 を返すようにガードする
+        // 計測はガードの外側で行い、過負荷で断った 503 も数える
+        server.createContext("/api", new InstrumentedHandler(executor.guard(exchange -> {
+            boolean aborted = false;
+            try {
+                addCorsHeaders(exchange);
+                apiRouter.dispatch(exchange);
+            } catch (ResponseAbortedException e) {
+                // 途中まで送ったレスポンスは閉じずに、HttpServer に接続ごと切断させる
+                aborted = true;
+                throw e;
+            } finally {
+                if (!aborted) {
+                    exchange.close();
+                }
+            }
+        }), InstrumentedHandler::templatePath));
         
-        // API エンドポイント
-        server.createContext("/api/test", new TestApiHandler());
-        server.createContext("/api/users", apiHandler::handleUsers);
-        server.createContext("/api/auth/register", apiHandler::handleRegister);
-        server.createContext("/api/auth/login", apiHandler::handleLogin);
-        server.createContext("/api/auth/logout", apiHandler::handleLogout);
+        // Prometheus 形式のメトリクス（過負荷の時こそ読めるようにガードしない）
+        registerGauges();
+        server.createContext("/metrics", this::handlePrometheusMetrics);
         
-        // スレッドプール設定
-        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.setExecutor(executor);
         
         server.start();
-        System.out.println("🚀 HTTP Server started on http://localhost:" + PORT);
-        System.out.println("🌐 サーバーが起動しました: http://localhost:" + PORT);
-        System.out.println("📂 静的ファイル: http://localhost:" + PORT + "/html/");
-        System.out.println("🔧 API テスト: http://localhost:" + PORT + "/api/test");
-        System.out.println("⏹️  停止するには Ctrl+C を押してください");
+        LOG.info("🚀 HTTP Server started", "url", "http://localhost:" + PORT, "executor", executor.getMode());
+        LOG.info("📂 静的ファイル", "url", "http://localhost:" + PORT + "/html/");
+        LOG.info("🔧 API テスト", "url", "http://localhost:" + PORT + "/api/test");
+        LOG.info("📊 メトリクス", "url", "http://localhost:" + PORT + "/api/metrics");
+        LOG.info("📈 Prometheus", "url", "http://localhost:" + PORT + "/metrics");
+        LOG.info("⏹️ 停止するには Ctrl+C を押してください");
         
-        // シャットダウンフック
-        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        // シャットダウンフック（停止処理のログを書き出してから、最後にロガーを止める）
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop();
+            AsyncLogger.shutdown();
+        }));
     }
     
     public void stop() {
         if (server != null) {
             server.stop(0);
-            System.out.println("🛑 サーバーが停止しました");
+            server = null;
+            // 処理中のリクエストが終わるのを待つ（ログイン処理が最終ログイン日時を記録し終えてから書き込みを止める）
+            executor.shutdown();
+            staticFileHandler.close();
+            passwordHasher.shutdown();
+            sessionStore.shutdown();
+            usernameIndex.shutdown();
+            loginRateLimiter.shutdown();
+            // 書き込み待ちの最終ログイン日時は、接続プールを閉じる前に書き込む
+            lastLoginWriter.shutdown();
+            DatabaseConnection.shutdown();
+            LOG.info("🛑 サーバーが停止しました");
         }
     }
     
-    // テスト用のシンプルなAPIハンドラー
-    static class TestApiHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            // CORS ヘッダーを追加
-            addCorsHeaders(exchange);
-            
-            if ("OPTIONS".equals(exchange.getRequestMethod())) {
-                exchange.sendResponseHeaders(200, -1);
+    // Executor・コネクションプール・パスワードハッシュ・セッション・ユーザー名インデックス・最終ログイン日時の書き込み・ログイン制限の状態をゲージとして登録する
+    private void registerGauges() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.registerGauge("request_executor_queue_depth", "リクエストExecutorのキュー待ち数",
+                executor::getQueueDepth);
+        registry.registerGauge("request_executor_in_flight", "リクエストExecutorで処理中のリクエスト数",
+                executor::getInFlight);
+        registry.registerGauge("db_pool_connections_active", "貸し出し中の接続数",
+                () -> DatabaseConnection.getPool().getActiveConnections());
+        registry.registerGauge("db_pool_connections_idle", "アイドル状態の接続数",
+                () -> DatabaseConnection.getPool().getIdleConnections());
+        registry.registerGauge("db_pool_connections_max", "最大接続数",
+                () -> DatabaseConnection.getPool().getMaxSize());
+        registry.registerGauge("password_hasher_queue_depth", "パスワードハッシュ化の待ち数",
+                passwordHasher::getQueueDepth);
+        registry.registerGauge("password_hasher_active", "ハッシュ化中のスレッド数",
+                passwordHasher::getActive);
+        registry.registerGauge("sessions_active", "有効なセッション数",
+                sessionStore::getActiveSessions);
+        registry.registerGauge("username_index_filter_negatives", "ユーザー名インデックスで存在しないと判定した回数",
+                usernameIndex::getFilterNegatives);
+        registry.registerGauge("username_index_negative_cache_hits", "負のキャッシュで存在しないと判定した回数",
+                usernameIndex::getNegativeCacheHits);
+        registry.registerGauge("username_index_false_positives", "インデックスで判定できず DB で見つからなかった回数",
+                usernameIndex::getFalsePositives);
+        registry.registerGauge("username_index_negative_cache_entries", "負のキャッシュの件数",
+                usernameIndex::getNegativeCacheSize);
+        registry.registerGauge("last_login_pending", "書き込み待ちの最終ログイン日時の件数",
+                lastLoginWriter::getPending);
+        registry.registerGauge("last_login_coalesced", "書き込み前の再ログインでまとめた回数",
+                lastLoginWriter::getCoalesced);
+        registry.registerGauge("last_login_dropped", "上限を超えて破棄した最終ログイン日時の件数",
+                lastLoginWriter::getDropped);
+        registry.registerGauge("last_login_flush_failures", "最終ログイン日時の書き込みに失敗した回数",
+                lastLoginWriter::getFlushFailures);
+        registry.registerGauge("login_rate_limit_username_rejected", "ユーザー名ごとの制限で拒否したログイン試行の数",
+                loginRateLimiter::getUsernameRejected);
+        registry.registerGauge("login_rate_limit_address_rejected", "接続元ごとの制限で拒否したログイン試行の数",
+                loginRateLimiter::getAddressRejected);
+        registry.registerGauge("login_rate_limit_tracked_usernames", "試行回数を管理中のユーザー名の数",
+                loginRateLimiter::getTrackedUsernames);
+        registry.registerGauge("login_rate_limit_tracked_addresses", "試行回数を管理中の接続元の数",
+                loginRateLimiter::getTrackedAddresses);
+    }
+    
+    // メトリクスを Prometheus のテキスト形式で返す（GET /metrics）
+    private void handlePrometheusMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
                 return;
             }
             
-            // JSON レスポンス（fetch() で受け取れる形式）
-            String jsonResponse = """
-                {
-                    "message": "🎉 API テスト成功！",
-                    "timestamp": "%s",
-                    "status": "ok",
-                    "server": "Java Plain HTTP Server",
-                    "version": "1.0.0"
-                }
-                """.formatted(java.time.LocalDateTime.now());
-            
-            sendJsonResponse(exchange, 200, jsonResponse);
+            byte[] responseBytes = MetricsRegistry.getInstance().scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, responseBytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBytes);
+            }
+        } finally {
+            exchange.close();
         }
     }
     
+    // サーバーの実行状態を返すメトリクス API（GET /api/metrics）
+    private void handleMetrics(HttpExchange exchange, Router.PathParams params) throws IOException {
+        PooledDataSource pool = DatabaseConnection.getPool();
+        Map<String, Object> staticStats = staticFileHandler.getCacheStats();
+        String jsonResponse = """
+            {
+                "executor": {
+                    "mode": "%s",
+                    "poolSize": %d,
+                    "queueDepth": %d,
+                    "inFlight": %d,
+                    "maxOutstanding": %d,
+                    "completed": %d,
+                    "shed": %d,
+                    "queueLatencyMillis": %s
+                },
+                "connectionPool": {
+                    "maxSize": %d,
+                    "total": %d,
+                    "active": %d,
+                    "idle": %d,
+                    "statementCacheHits": %d,
+                    "statementCacheMisses": %d
+                },
+                "passwordHashing": {
+                    "cost": %d,
+                    "threads": %d,
+                    "active": %d,
+                    "queueDepth": %d,
+                    "hashes": %d,
+                    "rejected": %d,
+                    "rehashed": %d,
+                    "averageHashMillis": %s,
+                    "maxHashMillis": %s
+                },
+                "sessions": {
+                    "active": %d,
+                    "created": %d,
+                    "expired": %d,
+                    "invalidated": %d,
+                    "validations": %d,
+                    "validationFailures": %d,
+                    "pendingWrites": %d,
+                    "persistFailures": %d
+                },
+                "usernameIndex": {
+                    "enabled": %s,
+                    "loaded": %s,
+                    "approximateCount": %d,
+                    "bits": %d,
+                    "filterNegatives": %d,
+                    "negativeCacheHits": %d,
+                    "negativeCacheEntries": %d,
+                    "falsePositives": %d,
+                    "rebuilds": %d
+                },
+                "lastLoginWriter": {
+                    "pending": %d,
+                    "recorded": %d,
+                    "coalesced": %d,
+                    "written": %d,
+                    "dropped": %d,
+                    "flushFailures": %d
+                },
+                "loginRateLimiter": {
+                    "enabled": %s,
+                    "allowed": %d,
+                    "usernameRejected": %d,
+                    "addressRejected": %d,
+                    "trackedUsernames": %d,
+                    "trackedAddresses": %d,
+                    "evicted": %d
+                },
+                "staticCache": {
+                    "entries": %s,
+                    "bytes": %s,
+                    "hits": %s,
+                    "misses": %s,
+                    "evictions": %s,
+                    "invalidations": %s
+                }
+            }
+            """.formatted(
+                executor.getMode().name().toLowerCase(),
+                executor.getPoolSize(),
+                executor.getQueueDepth(),
+                executor.getInFlight(),
+                executor.getMaxOutstanding(),
+                executor.getCompleted(),
+                executor.getShed(),
+                executor.getQueueLatencyMillis(),
+                pool.getMaxSize(),
+                pool.getTotalConnections(),
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getStatementCacheHits(),
+                pool.getStatementCacheMisses(),
+                passwordHasher.getCost(),
+                passwordHasher.getThreads(),
+                passwordHasher.getActive(),
+                passwordHasher.getQueueDepth(),
+                passwordHasher.getHashCount(),
+                passwordHasher.getRejected(),
+                passwordHasher.getRehashed(),
+                passwordHasher.getAverageHashMillis(),
+                passwordHasher.getMaxHashMillis(),
+                sessionStore.getActiveSessions(),
+                sessionStore.getCreated(),
+                sessionStore.getExpired(),
+                sessionStore.getInvalidated(),
+                sessionStore.getValidations(),
+                sessionStore.getValidationFailures(),
+                sessionStore.getPendingWrites(),
+                sessionStore.getPersistFailures(),
+                usernameIndex.isEnabled(),
+                usernameIndex.isLoaded(),
+                usernameIndex.getApproximateCount(),
+                usernameIndex.getBitCount(),
+                usernameIndex.getFilterNegatives(),
+                usernameIndex.getNegativeCacheHits(),
+                usernameIndex.getNegativeCacheSize(),
+                usernameIndex.getFalsePositives(),
+                usernameIndex.getRebuilds(),
+                lastLoginWriter.getPending(),
+                lastLoginWriter.getRecorded(),
+                lastLoginWriter.getCoalesced(),
+                lastLoginWriter.getWritten(),
+                lastLoginWriter.getDropped(),
+                lastLoginWriter.getFlushFailures(),
+                loginRateLimiter.isEnabled(),
+                loginRateLimiter.getAllowed(),
+                loginRateLimiter.getUsernameRejected(),
+                loginRateLimiter.getAddressRejected(),
+                loginRateLimiter.getTrackedUsernames(),
+                loginRateLimiter.getTrackedAddresses(),
+                loginRateLimiter.getEvicted(),
+                staticStats.get("entries"),
+                staticStats.get("bytes"),
+                staticStats.get("hits"),
+                staticStats.get("misses"),
+                staticStats.get("evictions"),
+                staticStats.get("invalidations"));
+        
+        sendJsonResponse(exchange, 200, jsonResponse);
+    }
+    
+    // テスト用のシンプルな API（GET /api/test）
+    private void handleTest(HttpExchange exchange, Router.PathParams params) throws IOException {
+        // JSON レスポンス（fetch() で受け取れる形式）
+        String jsonResponse = """
+            {
+                "message": "🎉 API テスト成功！",
+                "timestamp": "%s",
+                "status": "ok",
+                "server": "Java Plain HTTP Server",
+                "version": "1.0.0"
+            }
+            """.formatted(java.time.LocalDateTime.now());
+        
+        sendJsonResponse(exchange, 200, jsonResponse);
+    }
+    
     // CORS ヘッダーを追加するユーティリティメソッド
     public static void addCorsHeaders(HttpExchange exchange) {
         exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
@@ -0,0 +1,546 @@
+package com.learning.server;
+
+import com.learning.logging.AsyncLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// 静的ファイルをメモリ上に保持するキャッシュ
+// ファイルは初回アクセス時に一度だけ読み込み、強いETag（内容のSHA-256）と最終更新日時を計算しておく。
+// キャッシュ全体の合計バイト数に上限があり、超えた場合は最も長く使われていないファイルから追い出す。
+// WatchServiceでディレクトリを監視し、ディスク上のファイルが変更・削除されたらエントリを無効化する。
+// テキスト系のファイルは読み込み時に一度だけgzip圧縮し、リクエストごとには圧縮しない。
+// キャッシュする上限を超える大きいファイルは内容をヒープに読み込まず、送信時にディスクから直接転送する。
+public class StaticAssetCache implements AutoCloseable {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(StaticAssetCache.class);
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    public static final String GZIP = "gzip";
+    public static final String BROTLI = "br";
+
+    // キャッシュされた1ファイル分の内容と検証用ヘッダー
+    // 圧縮して小さくなるファイルは、圧縮済みの内容（gzip / brotli）も一緒に保持する。
+    // 大きいファイルは内容をヒープに持たず、送信時にFileChannelから直接転送する。
+    public static final class Asset {
+        private final byte[] content;
+        private final byte[] gzip;
+        private final byte[] brotli;
+        // 内容をヒープに持たないファイル（contentがnullの場合のみ使う）
+        private final Path file;
+        private final long length;
+        private final String contentType;
+        private final String etag;
+        private final long lastModifiedMillis;
+        private final String lastModified;
+
+        Asset(byte[] content, byte[] gzip, byte[] brotli, String contentType, String etag, long lastModifiedMillis) {
+            this(content, gzip, brotli, null, content.length, contentType, etag, lastModifiedMillis);
+        }
+
+        Asset(Path file, long length, String contentType, String etag, long lastModifiedMillis) {
+            this(null, null, null, file, length, contentType, etag, lastModifiedMillis);
+        }
+
+        private Asset(byte[] content, byte[] gzip, byte[] brotli, Path file, long length,
+                      String contentType, String etag, long lastModifiedMillis) {
+            this.content = content;
+            this.gzip = gzip;
+            this.brotli = brotli;
+            this.file = file;
+            this.length = length;
+            this.contentType = contentType;
+            this.etag = etag;
+            // HTTPの日時は秒単位のため、比較用に切り捨てておく
+            this.lastModifiedMillis = lastModifiedMillis - lastModifiedMillis % 1000;
+            this.lastModified = HTTP_DATE.format(Instant.ofEpochMilli(this.lastModifiedMillis));
+        }
+
+        // 指定したエンコーディングの内容のバイト数
+        public long getLength(String encoding) {
+            if (BROTLI.equals(encoding)) {
+                return brotli.length;
+            }
+            if (GZIP.equals(encoding)) {
+                return gzip.length;
+            }
+            return length;
+        }
+
+        // 指定したエンコーディングの内容の一部を書き出す
+        // ヒープに持たないファイルはFileChannel.transferToで転送し、ファイル全体を読み込まない
+        public void writeTo(OutputStream out, String encoding, long offset, long count) throws IOException {
+            if (content != null) {
+                byte[] body = BROTLI.equals(encoding) ? brotli : GZIP.equals(encoding) ? gzip : content;
+                out.write(body, (int) offset, (int) count);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = offset;
+                long end = offset + count;
+                while (position < end) {
+                    long sent = channel.transferTo(position, end - position, target);
+                    if (sent <= 0) {
+                        throw new IOException("送信中にファイルが短くなりました: " + file);
+                    }
+                    position += sent;
+                }
+            }
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        // 指定したエンコーディングのETag（表現ごとに異なる強いETagにする）
+        public String getEtag(String encoding) {
+            if (encoding == null) {
+                return etag;
+            }
+            return etag.substring(0, etag.length() - 1) + '-' + encoding + '"';
+        }
+
+        public long getLastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        // Last-Modifiedヘッダーの値（RFC 1123形式）
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        // 圧縮済みの内容を持っているかどうか（持っている場合はVary: Accept-Encodingが必要）
+        public boolean hasEncodings() {
+            return gzip != null || brotli != null;
+        }
+
+        // Accept-Encodingヘッダーから返すエンコーディングを選ぶ（brotli、gzipの順に優先）
+        public String selectEncoding(String acceptEncoding) {
+            if (acceptEncoding == null || !hasEncodings()) {
+                return null;
+            }
+            boolean acceptsBrotli = false;
+            boolean acceptsGzip = false;
+            for (String part : acceptEncoding.split(",")) {
+                String[] tokens = part.trim().split(";");
+                String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+                if (isRejected(tokens)) {
+                    continue;
+                }
+                if (coding.equals(BROTLI) || coding.equals("*")) {
+                    acceptsBrotli = true;
+                }
+                if (coding.equals(GZIP) || coding.equals("x-gzip") || coding.equals("*")) {
+                    acceptsGzip = true;
+                }
+            }
+            if (acceptsBrotli && brotli != null) {
+                return BROTLI;
+            }
+            if (acceptsGzip && gzip != null) {
+                return GZIP;
+            }
+            return null;
+        }
+
+        // "gzip;q=0" のように q=0 が指定されたものは受け付けない
+        private static boolean isRejected(String[] tokens) {
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // 条件付きリクエストに対して304を返せるかどうか
+        // If-None-Matchがある場合はそちらを優先し、If-Modified-Sinceは無視する（RFC 9110）
+        public boolean isNotModified(String encoding, String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                String current = getEtag(encoding);
+                for (String candidate : ifNoneMatch.split(",")) {
+                    String tag = candidate.trim();
+                    // If-None-Matchは弱い比較（W/ を無視して比較する）
+                    if (tag.startsWith("W/")) {
+                        tag = tag.substring(2);
+                    }
+                    if (tag.equals("*") || tag.equals(current)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ifModifiedSince != null) {
+                try {
+                    long since = Instant.from(HTTP_DATE.parse(ifModifiedSince.trim())).toEpochMilli();
+                    return lastModifiedMillis <= since;
+                } catch (DateTimeException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // If-Rangeヘッダーが現在の内容と一致するかどうか（一致しなければRangeを無視して全体を返す）
+        // If-RangeのETagは強い比較のため、W/ 付きのETagは一致しない
+        public boolean matchesIfRange(String ifRange) {
+            if (ifRange == null) {
+                return true;
+            }
+            String value = ifRange.trim();
+            if (value.startsWith("\"") || value.startsWith("W/")) {
+                return value.equals(etag);
+            }
+            try {
+                return Instant.from(HTTP_DATE.parse(value)).toEpochMilli() == lastModifiedMillis;
+            } catch (DateTimeException e) {
+                return false;
+            }
+        }
+
+        // キャッシュの容量計算に使う、ヒープ上に保持している全バイト数
+        long size() {
+            if (content == null) {
+                return 0;
+            }
+            return content.length
+                    + (gzip != null ? gzip.length : 0)
+                    + (brotli != null ? brotli.length : 0);
+        }
+    }
+
+    private final Path root;
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final long compressMinBytes;
+
+    // アクセス順のLinkedHashMap（先頭が最も長く使われていないエントリ）
+    private final LinkedHashMap<Path, Asset> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // 無効化のたびに進める世代番号（読み込み中に変更されたファイルを保存しないため）
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    // maxFileBytes を超えるファイルは内容を読み込まず、送信時にディスクから直接転送する
+    // 監視スレッドは構築が終わってから fromSystemProperties で開始する（構築途中の this をスレッドに渡さない）
+    private StaticAssetCache(Path root, long maxBytes, long maxFileBytes, long compressMinBytes) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(maxFileBytes, maxBytes);
+        this.compressMinBytes = compressMinBytes;
+    }
+
+    // システムプロパティの設定でキャッシュを作成する
+    //   static.cache.maxBytes: キャッシュ全体の最大バイト数（既定値: 32MB）
+    //   static.cache.maxFileBytes: 内容をヒープに保持する1ファイルの最大バイト数（既定値: 1MB）
+    //   static.compress.minBytes: 圧縮版を用意する最小バイト数（既定値: 1024）
+    public static StaticAssetCache fromSystemProperties(Path root) {
+        long maxBytes = Long.getLong("static.cache.maxBytes", 32L * 1024 * 1024);
+        long maxFileBytes = Long.getLong("static.cache.maxFileBytes", 1024L * 1024);
+        long compressMinBytes = Long.getLong("static.compress.minBytes", 1024L);
+        StaticAssetCache cache = new StaticAssetCache(root, maxBytes, maxFileBytes, compressMinBytes);
+        cache.startWatching();
+        return cache;
+    }
+
+    // リクエストパスに対応するファイルを取得する（存在しない、またはルートの外を指す場合はnull）
+    public Asset get(String requestPath, String contentType) throws IOException {
+        Path file = resolve(requestPath);
+        if (file == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            Asset cached = entries.get(file);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+
+        long readGeneration = generation.get();
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long length = Files.size(file);
+        if (length > maxFileBytes) {
+            // 大きいファイルは内容を読み込まず、サイズと更新日時だけを保持する（圧縮もしない）
+            String etag = '"' + Long.toHexString(length) + '-' + Long.toHexString(lastModified) + '"';
+            Asset asset = new Asset(file, length, contentType, etag, lastModified);
+            put(file, asset, readGeneration);
+            return asset;
+        }
+
+        byte[] content = Files.readAllBytes(file);
+        String etag = computeEtag(content);
+
+        byte[] gzip = null;
+        byte[] brotli = null;
+        if (content.length >= compressMinBytes && isCompressible(contentType)) {
+            gzip = smallerThan(content, gzip(content));
+            brotli = smallerThan(content, readPrecompressed(file, ".br", lastModified));
+        }
+        Asset asset = new Asset(content, gzip, brotli, contentType, etag, lastModified);
+        put(file, asset, readGeneration);
+        return asset;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/")
+                || contentType.contains("javascript")
+                || contentType.contains("json")
+                || contentType.contains("svg");
+    }
+
+    // 圧縮して小さくならない場合は圧縮版を持たない
+    private static byte[] smallerThan(byte[] content, byte[] compressed) {
+        return compressed != null && compressed.length < content.length ? compressed : null;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3 + 64);
+        // 圧縮は1ファイルにつき1回だけなので、最大圧縮率で圧縮する
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return buffer.toByteArray();
+    }
+
+    // ビルド時に作成された圧縮済みファイル（例: app.js.br）を読み込む
+    // JDKにはbrotliの圧縮器がないため、brotliはこの方法でのみ提供する
+    // 元ファイルより古い場合は内容が食い違っている可能性があるため使わない
+    private static byte[] readPrecompressed(Path file, String suffix, long lastModified) throws IOException {
+        Path precompressed = file.resolveSibling(file.getFileName() + suffix);
+        if (!Files.isRegularFile(precompressed)
+                || Files.getLastModifiedTime(precompressed).toMillis() < lastModified) {
+            return null;
+        }
+        return Files.readAllBytes(precompressed);
+    }
+
+    // リクエストパスをルートディレクトリ配下の絶対パスに変換する（ディレクトリトラバーサルは拒否）
+    private Path resolve(String requestPath) {
+        String relative = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+        try {
+            Path file = root.resolve(relative).normalize();
+            return file.startsWith(root) ? file : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private synchronized void put(Path file, Asset asset, long readGeneration) {
+        if (generation.get() != readGeneration) {
+            // 読み込み中にファイルが変更された可能性があるため保存しない
+            return;
+        }
+        Asset previous = entries.put(file, asset);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        totalBytes += asset.size();
+
+        Iterator<Map.Entry<Path, Asset>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, Asset> eldest = iterator.next();
+            if (eldest.getKey().equals(file)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().size();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    // 指定したファイルのエントリを削除する
+    public synchronized void invalidate(Path file) {
+        generation.incrementAndGet();
+        Asset removed = entries.remove(file);
+        if (removed != null) {
+            totalBytes -= removed.size();
+            invalidations.increment();
+        }
+    }
+
+    // 全てのエントリを削除する
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.add(entries.size());
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private static String computeEtag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            // 先頭16バイトで十分に衝突しにくい
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256が利用できません", e);
+        }
+    }
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerAll(root);
+        } catch (IOException e) {
+            // 監視できなくても配信はできる（変更の反映にはサーバー再起動が必要）
+            LOG.warn("⚠️ 静的ファイルの変更監視を開始できません", "root", root, "error", e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(this::watchLoop, "static-asset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void registerAll(Path start) throws IOException {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    // 取りこぼした可能性があるので全て捨てる
+                    invalidateAll();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    // ディレクトリごと消えた場合に備え、配下のエントリも捨てる
+                    invalidateUnder(changed);
+                } else {
+                    invalidate(changed);
+                }
+                String name = changed.getFileName().toString();
+                if (name.endsWith(".br")) {
+                    // 圧縮済みファイルが変わったら元ファイルのエントリを作り直す
+                    invalidate(changed.resolveSibling(name.substring(0, name.length() - 3)));
+                }
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    try {
+                        registerAll(changed);
+                    } catch (IOException e) {
+                        LOG.warn("⚠️ ディレクトリを監視対象に追加できません", "dir", changed, "error", e.getMessage());
+                    }
+                }
+                LOG.debug("🔄 静的ファイルの変更を検知しました", "path", changed, "kind", event.kind().name());
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private synchronized void invalidateUnder(Path dir) {
+        generation.incrementAndGet();
+        Iterator<Map.Entry<Path, Asset>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Asset> entry = iterator.next();
+            if (entry.getKey().startsWith(dir)) {
+                totalBytes -= entry.getValue().size();
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    // キャッシュの統計情報を取得する
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("⚠️ ファイル監視の停止に失敗しました", "error", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.learning.server;
 
+import com.learning.logging.AsyncLogger;
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 public class StaticFileHandler implements HttpHandler {
-    private static final String STATIC_DIR = "src/main/resources/static";
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(StaticFileHandler.class);
+
+    // 起動するディレクトリによって場所が変わるため static.dir で上書きできる（例: -Dstatic.dir=main/resources/static）
+    private static final String STATIC_DIR = System.getProperty("static.dir", "src/main/resources/static");
+    
+    // 一度読み込んだファイルはメモリ上に保持し、ディスク上で変更されたら捨てる
+    private final StaticAssetCache cache = StaticAssetCache.fromSystemProperties(Paths.get(STATIC_DIR));
     
     @Override
     public void handle(HttpExchange exchange) throws IOException {
@@ -29,33 +35,88 @@ public class StaticFileHandler implements HttpHandler {
             requestPath = "/html/index.html";
         }
         
-        // ファイルパスの構築
-        Path filePath = Paths.get(STATIC_DIR + requestPath);
+        StaticAssetCache.Asset asset;
+        try {
+            asset = cache.get(requestPath, getContentType(requestPath));
+        } catch (IOException e) {
+            LOG.error("❌ ファイル読み込みエラー", "path", requestPath, "error", e.getMessage());
+            send404Response(exchange);
+            return;
+        }
         
-        if (Files.exists(filePath) && !Files.isDirectory(filePath)) {
-            // ファイルが存在する場合
-            try {
-                String contentType = getContentType(requestPath);
-                byte[] fileContent = Files.readAllBytes(filePath);
-                
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.sendResponseHeaders(200, fileContent.length);
-                
-                try (OutputStream outputStream = exchange.getResponseBody()) {
-                    outputStream.write(fileContent);
-                }
-                
-                System.out.println("📄 静的ファイル配信: " + requestPath + " (" + fileContent.length + " bytes)");
-                
-            } catch (IOException e) {
-                System.err.println("❌ ファイル読み込みエラー: " + requestPath + " - " + e.getMessage());
-                send404Response(exchange);
-            }
-        } else {
+        if (asset == null) {
             // ファイルが存在しない場合
-            System.out.println("⚠️ ファイルが見つかりません: " + requestPath);
+            LOG.debug("⚠️ ファイルが見つかりません", "path", requestPath);
             send404Response(exchange);
+            return;
+        }
+        
+        Headers requestHeaders = exchange.getRequestHeaders();
+        String rangeHeader = requestHeaders.getFirst("Range");
+        // Accept-Encoding に応じて、読み込み時に用意しておいた圧縮版を選ぶ
+        // Range 指定がある場合は無圧縮の内容に対する範囲として扱う
+        String encoding = rangeHeader == null
+                ? asset.selectEncoding(requestHeaders.getFirst("Accept-Encoding"))
+                : null;
+        if (asset.hasEncodings()) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        }
+        exchange.getResponseHeaders().set("ETag", asset.getEtag(encoding));
+        exchange.getResponseHeaders().set("Last-Modified", asset.getLastModified());
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        // 毎回再検証させ、変更がなければ 304 で本文の転送を省く
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (asset.isNotModified(encoding, ifNoneMatch, ifModifiedSince)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            LOG.debug("📄 静的ファイル未変更", "path", requestPath);
+            return;
+        }
+        
+        long length = asset.getLength(encoding);
+        ByteRange range = asset.matchesIfRange(requestHeaders.getFirst("If-Range"))
+                ? ByteRange.parse(rangeHeader, length)
+                : null;
+        if (range == ByteRange.UNSATISFIABLE) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+            exchange.sendResponseHeaders(416, -1);
+            exchange.close();
+            return;
+        }
+        
+        exchange.getResponseHeaders().set("Content-Type", asset.getContentType());
+        if (encoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
         }
+        long offset = 0;
+        long count = length;
+        if (range != null) {
+            offset = range.getStart();
+            count = range.getLength();
+            exchange.getResponseHeaders().set("Content-Range", range.toContentRange(length));
+            exchange.sendResponseHeaders(206, count);
+        } else {
+            // 長さ 0 を渡すと chunked 転送になるため、空のファイルは -1（本文なし）で返す
+            exchange.sendResponseHeaders(200, count == 0 ? -1 : count);
+        }
+        
+        // 大きいファイルはヒープに読み込まず、FileChannel から直接転送される
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            asset.writeTo(outputStream, encoding, offset, count);
+        }
+        
+        LOG.debug("📄 静的ファイル配信", "path", requestPath, "bytes", count, "encoding", encoding);
+    }
+    
+    public Map<String, Object> getCacheStats() {
+        return cache.getStats();
+    }
+    
+    public void close() {
+        cache.close();
     }
     
     private String getContentType(String path) {
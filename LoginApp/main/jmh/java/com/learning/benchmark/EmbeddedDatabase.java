@@ -0,0 +1,71 @@
+package com.learning.benchmark;
+
+import com.learning.database.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// ベンチマーク用の組み込みDB（H2 の MySQL 互換モード、メモリ上）
+// DatabaseConnection はクラスの初期化時に接続先を決めるため、start は DatabaseConnection を使う前に呼ぶ。
+// JMH はベンチマークごとに JVM を fork するので、設定がベンチマーク間で混ざることはない。
+final class EmbeddedDatabase {
+    private static final String URL = "jdbc:h2:mem:java_learning_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private EmbeddedDatabase() {
+    }
+
+    // 接続先を組み込みDBに切り替え、users テーブルを指定件数のデータで作り直す
+    static void start(int rows) throws SQLException {
+        System.setProperty("db.url", URL);
+        System.setProperty("db.user", "sa");
+        System.setProperty("db.password", "");
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS users");
+            // MySQL_Setup_Guide.md と同じ列・インデックス
+            statement.execute("CREATE TABLE users ("
+                    + "id BIGINT PRIMARY KEY AUTO_INCREMENT, "
+                    + "username VARCHAR(50) NOT NULL UNIQUE, "
+                    + "email VARCHAR(100) NOT NULL UNIQUE, "
+                    + "password_hash VARCHAR(255) NOT NULL, "
+                    + "first_name VARCHAR(50) NOT NULL, "
+                    + "last_name VARCHAR(50) NOT NULL, "
+                    + "is_active BOOLEAN DEFAULT TRUE, "
+                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "last_login_at TIMESTAMP NULL)");
+        }
+
+        String sql = "INSERT INTO users (username, email, password_hash, first_name, last_name, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            for (int i = 1; i <= rows; i++) {
+                statement.setString(1, username(i));
+                statement.setString(2, "user" + i + "@example.com");
+                // bcrypt と同じ長さのダミー値（ベンチマークでは検証しない）
+                statement.setString(3, "$2a$10$abcdefghijklmnopqrstuuABCDEFGHIJKLMNOPQRSTUVWXYZ01234");
+                statement.setString(4, "太郎" + i);
+                statement.setString(5, "山田");
+                statement.setTimestamp(6, Timestamp.valueOf(base.plusSeconds(i)));
+                statement.addBatch();
+                if (i % 1000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    static String username(int i) {
+        return "user" + i;
+    }
+}
@@ -0,0 +1,23 @@
+package com.learning.benchmark;
+
+import com.learning.server.SimpleHttpServer;
+
+// 組み込みDB（H2）で SimpleHttpServer を起動する（MySQL を用意せずに負荷試験を行うため）
+//
+// 使い方: java -Dstatic.dir=main/resources/static -cp target/benchmarks.jar com.learning.benchmark.EmbeddedServer [投入するユーザー数]
+// Executor やハッシュ化プールの設定は通常どおり -Dsecurity.hash.threads=4 などのシステムプロパティで指定する。
+// セッションの書き戻し（session.persist）には対応していない（user_sessions テーブルを作らないため）。
+public final class EmbeddedServer {
+
+    private EmbeddedServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        EmbeddedDatabase.start(rows);
+
+        SimpleHttpServer server = new SimpleHttpServer();
+        // 停止はサーバー自身のシャットダウンフックで行う
+        server.start();
+    }
+}
@@ -0,0 +1,90 @@
+package com.learning.benchmark;
+
+import com.learning.database.UserDatabase;
+import com.learning.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// UserDatabase のクエリを組み込みDBに対して計測する
+// 行の読み取り・User への変換・プールの貸し借りのコストを見るためのもので、MySQL との通信時間は含まない
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UserDatabaseBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private UserDatabase userDatabase;
+    private String[] usernames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmbeddedDatabase.start(rows);
+        userDatabase = new UserDatabase();
+        // 文字列の連結を計測に含めないよう事前に作っておく
+        usernames = new String[Math.min(rows, 1024)];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = EmbeddedDatabase.username(i + 1);
+        }
+    }
+
+    // プロフィールの検索
+    @Benchmark
+    public User findUserByUsername() {
+        return userDatabase.findUserByUsername(usernames[next++ % usernames.length]);
+    }
+
+    // ログイン時のパスワード検証用（認証に必要な4列だけ）
+    @Benchmark
+    public User findCredentialsByUsername() {
+        return userDatabase.findCredentialsByUsername(usernames[next++ % usernames.length]);
+    }
+
+    // 存在しないユーザー名（失敗するログイン）
+    @Benchmark
+    public User findMissingUser() {
+        return userDatabase.findUserByUsername("nobody");
+    }
+
+    // 登録時の重複チェック
+    @Benchmark
+    public boolean usernameExists() {
+        return userDatabase.usernameExists(usernames[next++ % usernames.length]);
+    }
+
+    @Benchmark
+    public User findUserById() {
+        return userDatabase.findUserById((long) (next++ % rows + 1));
+    }
+
+    @Benchmark
+    public List<User> getAllUsers() {
+        return userDatabase.getAllUsers();
+    }
+
+    @Benchmark
+    public int forEachUser(Blackhole blackhole) throws IOException, SQLException {
+        return userDatabase.forEachUser(blackhole::consume);
+    }
+}
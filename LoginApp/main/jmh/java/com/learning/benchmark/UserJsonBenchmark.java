@@ -0,0 +1,90 @@
+package com.learning.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.learning.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ユーザー一覧の JSON シリアライズを件数ごとに計測する
+// ApiHandler と同じ ObjectMapper の設定で、バイト配列を作る方式とストリーミング方式を比べる
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UserJsonBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter streamItemWriter;
+    private List<User> users;
+    // 書き込みを捨てる出力先（nullOutputStream と違い close 後も使える）
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        streamItemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        users = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            User user = new User(EmbeddedDatabase.username(i), "user" + i + "@example.com", "太郎" + i, "山田");
+            user.setId((long) i);
+            user.setCreatedAt(base.plusSeconds(i));
+            user.setUpdatedAt(base.plusSeconds(i));
+            users.add(user);
+        }
+    }
+
+    // 一覧全体を byte[] にしてから送る方式
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    // 1件ずつジェネレーターに書き出す方式（ApiHandler のユーザー一覧 API 相当）
+    @Benchmark
+    public void streamItems() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(sink, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (User user : users) {
+                streamItemWriter.writeValue(generator, user);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
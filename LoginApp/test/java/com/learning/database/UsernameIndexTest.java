@@ -0,0 +1,40 @@
+package com.learning.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// UsernameIndex のキーと、「存在しない」と答えてよい範囲のテスト
+class UsernameIndexTest {
+
+    @Test
+    void asciiKeyFoldsCaseAndTrailingSpacesLikeTheCollation() {
+        assertEquals(UsernameIndex.key("alice"), UsernameIndex.key("Alice"));
+        assertEquals(UsernameIndex.key("alice"), UsernameIndex.key("ALICE  "));
+        assertTrue(UsernameIndex.isPrintableAscii("Alice_01 "));
+    }
+
+    @Test
+    void namesOutsidePrintableAsciiAreNotTrusted() {
+        // 照合順序では ae や bob と同じになりうるが、キーは一致しない
+        assertFalse(UsernameIndex.isPrintableAscii("æ"));
+        assertFalse(UsernameIndex.isPrintableAscii("bob\u200B"));
+        assertFalse(UsernameIndex.isPrintableAscii("bob\t"));
+        assertFalse(UsernameIndex.isPrintableAscii("ｂｏｂ"));
+    }
+
+    @Test
+    void filterAnswersMembershipForAddedKeys() {
+        UsernameIndex.BloomFilter filter = new UsernameIndex.BloomFilter(1_000, 0.01);
+        filter.add(UsernameIndex.key("Alice"));
+
+        assertTrue(filter.mightContain(UsernameIndex.key("alice")));
+        assertFalse(filter.mightContain(UsernameIndex.key("bob")));
+        assertTrue(filter.isExact());
+
+        filter.markInexact();
+        assertFalse(filter.isExact());
+    }
+}
@@ -0,0 +1,144 @@
+package com.learning.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// LoginRateLimiter（GCRA 方式のトークンバケット）の補充と Retry-After のテスト
+// 時計を差し替えて、経過時間を指定しながら試行する
+class LoginRateLimiterTest {
+    // nanoTime は負の値にもなるので、負の値から始めて符号をまたいでも動くことを確かめる
+    private final AtomicLong now = new AtomicLong(-TimeUnit.SECONDS.toNanos(30));
+    private LoginRateLimiter limiter;
+
+    @AfterEach
+    void tearDown() {
+        if (limiter != null) {
+            limiter.shutdown();
+        }
+    }
+
+    // ユーザー名: 5回まで連続、1分に5回（12秒に1回）回復。接続元: 3回まで連続、1分に60回（1秒に1回）回復
+    private LoginRateLimiter newLimiter(int maxKeys) {
+        limiter = new LoginRateLimiter(5, 5, 3, 60, maxKeys, now::get);
+        return limiter;
+    }
+
+    private void advanceSeconds(double seconds) {
+        now.addAndGet((long) (seconds * 1_000_000_000L));
+    }
+
+    private static InetSocketAddress address(String host) throws UnknownHostException {
+        return new InetSocketAddress(InetAddress.getByName(host), 50000);
+    }
+
+    @Test
+    void burstIsAllowedThenRejectedWithRetryAfter() {
+        LoginRateLimiter limits = newLimiter(100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limits.tryAcquireUsername("alice"), "attempt " + i);
+        }
+        // 次のトークンが回復するまで12秒
+        assertEquals(12, limits.tryAcquireUsername("alice"));
+        assertEquals(1, limits.getUsernameRejected());
+        // 拒否された試行はトークンを消費しない
+        assertEquals(12, limits.tryAcquireUsername("alice"));
+    }
+
+    @Test
+    void tokensRefillOverTime() {
+        LoginRateLimiter limits = newLimiter(100);
+        for (int i = 0; i < 5; i++) {
+            limits.tryAcquireUsername("alice");
+        }
+
+        advanceSeconds(11.5);
+        // 残り0.5秒は切り上げて1秒
+        assertEquals(1, limits.tryAcquireUsername("alice"));
+
+        advanceSeconds(0.5);
+        assertEquals(0, limits.tryAcquireUsername("alice"));
+        assertEquals(12, limits.tryAcquireUsername("alice"));
+
+        // 満タンまで回復しても、連続で使えるのは burst 回まで
+        advanceSeconds(600);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limits.tryAcquireUsername("alice"), "attempt " + i);
+        }
+        assertTrue(limits.tryAcquireUsername("alice") > 0);
+    }
+
+    @Test
+    void usernameVariantsShareABucket() {
+        LoginRateLimiter limits = newLimiter(100);
+        limits.tryAcquireUsername("alice");
+        limits.tryAcquireUsername("Alice");
+        limits.tryAcquireUsername("ALICE ");
+        limits.tryAcquireUsername("Álice");
+        limits.tryAcquireUsername("alice");
+        assertTrue(limits.tryAcquireUsername("aLiCe") > 0);
+        // 別のユーザー名には影響しない
+        assertEquals(0, limits.tryAcquireUsername("bob"));
+    }
+
+    @Test
+    void successfulLoginResetsTheUsernameBucket() {
+        LoginRateLimiter limits = newLimiter(100);
+        for (int i = 0; i < 5; i++) {
+            limits.tryAcquireUsername("alice");
+        }
+        limits.onSuccess("Alice");
+        assertEquals(0, limits.tryAcquireUsername("alice"));
+    }
+
+    @Test
+    void addressBucketsGroupIpv6By64() throws UnknownHostException {
+        LoginRateLimiter limits = newLimiter(100);
+        assertEquals(0, limits.tryAcquireAddress(address("2001:db8:1:2::1")));
+        assertEquals(0, limits.tryAcquireAddress(address("2001:db8:1:2::2")));
+        assertEquals(0, limits.tryAcquireAddress(address("2001:db8:1:2:ffff::3")));
+        assertEquals(1, limits.tryAcquireAddress(address("2001:db8:1:2::4")));
+
+        // 別の /64 と IPv4 は別のバケット
+        assertEquals(0, limits.tryAcquireAddress(address("2001:db8:1:3::1")));
+        assertEquals(0, limits.tryAcquireAddress(address("192.0.2.1")));
+        assertEquals(0, limits.tryAcquireAddress(null));
+    }
+
+    @Test
+    void fullBucketsAreEvicted() {
+        LoginRateLimiter limits = newLimiter(100);
+        limits.tryAcquireUsername("alice");
+        limits.tryAcquireUsername("bob");
+        limits.tryAcquireUsername("bob");
+        assertEquals(2, limits.getTrackedUsernames());
+
+        advanceSeconds(12);
+        limits.evictIdle();
+        assertEquals(1, limits.getTrackedUsernames());
+
+        advanceSeconds(12);
+        limits.evictIdle();
+        assertEquals(0, limits.getTrackedUsernames());
+        assertEquals(2, limits.getEvicted());
+    }
+
+    @Test
+    void keysBeyondTheLimitUseSharedStripes() {
+        LoginRateLimiter limits = newLimiter(1);
+        limits.tryAcquireUsername("alice");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limits.tryAcquireUsername("bob"), "attempt " + i);
+        }
+        assertTrue(limits.tryAcquireUsername("bob") > 0);
+        assertEquals(1, limits.getTrackedUsernames());
+    }
+}
@@ -0,0 +1,133 @@
+package com.learning.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// SessionStore のタイマーホイールによる期限切れとスライディング方式の延長のテスト
+// 時計を差し替え、スケジューラーの代わりに advanceWheel を呼んでホイールを進める
+class SessionStoreTest {
+    private static final long TICK_MILLIS = 1_000;
+    private static final int WHEEL_SIZE = 8;
+    private static final long START = 1_000_000;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private SessionStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    private SessionStore newStore(long ttlMillis) {
+        store = new SessionStore(ttlMillis, TICK_MILLIS, WHEEL_SIZE, now::get);
+        return store;
+    }
+
+    // 1 tick ずつ時計とホイールを進める
+    private void advanceTo(long millis) {
+        while (now.get() < millis) {
+            now.set(Math.min(millis, now.get() + TICK_MILLIS));
+            store.advanceWheel();
+        }
+    }
+
+    @Test
+    void sessionExpiresWhenTheWheelReachesItsSlot() {
+        SessionStore sessions = newStore(5_000);
+        String token = sessions.create(1, "alice");
+
+        advanceTo(START + 4_000);
+        assertEquals(1, sessions.getActiveSessions());
+
+        advanceTo(START + 5_000);
+        assertEquals(0, sessions.getActiveSessions());
+        assertEquals(1, sessions.getExpired());
+        assertNull(sessions.validate(token));
+    }
+
+    @Test
+    void expiredSessionIsRejectedBeforeTheWheelRemovesIt() {
+        SessionStore sessions = newStore(5_000);
+        String token = sessions.create(1, "alice");
+
+        now.set(START + 5_000);
+        assertNull(sessions.validate(token));
+        assertEquals(1, sessions.getActiveSessions());
+    }
+
+    @Test
+    void validateExtendsTheExpiry() {
+        SessionStore sessions = newStore(5_000);
+        String token = sessions.create(1, "alice");
+
+        advanceTo(START + 3_000);
+        SessionStore.Session session = sessions.validate(token);
+        assertNotNull(session);
+        assertEquals(START + 8_000, session.getExpiresAtMillis());
+
+        // 元の期限のスロットを処理しても、延長済みなので削除されずに入れ直される
+        advanceTo(START + 5_000);
+        assertEquals(1, sessions.getActiveSessions());
+        assertEquals(0, sessions.getExpired());
+
+        advanceTo(START + 7_000);
+        assertNotNull(sessions.validate(token));
+        assertEquals(START + 12_000, session.getExpiresAtMillis());
+
+        advanceTo(START + 12_000);
+        assertEquals(0, sessions.getActiveSessions());
+        assertEquals(1, sessions.getExpired());
+        assertNull(sessions.validate(token));
+    }
+
+    @Test
+    void ttlLongerThanOneRevolutionIsRescheduled() {
+        // 期限が20 tick 先なので、8スロットのホイールを何周かしてから削除される
+        SessionStore sessions = newStore(20_000);
+        sessions.create(1, "alice");
+
+        advanceTo(START + 19_000);
+        assertEquals(1, sessions.getActiveSessions());
+
+        advanceTo(START + 20_000);
+        assertEquals(0, sessions.getActiveSessions());
+        assertEquals(1, sessions.getExpired());
+    }
+
+    @Test
+    void invalidatedSessionIsNotCountedAsExpired() {
+        SessionStore sessions = newStore(5_000);
+        String token = sessions.create(1, "alice");
+
+        assertTrue(sessions.invalidate(token));
+        assertFalse(sessions.invalidate(token));
+        assertNull(sessions.validate(token));
+
+        advanceTo(START + 5_000);
+        assertEquals(0, sessions.getActiveSessions());
+        assertEquals(1, sessions.getInvalidated());
+        assertEquals(0, sessions.getExpired());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        SessionStore sessions = newStore(5_000);
+        String token = sessions.create(1, "alice");
+        String selector = token.substring(0, token.indexOf('.'));
+
+        assertNull(sessions.validate(selector + ".AAAA"));
+        assertNull(sessions.validate(selector));
+        assertNull(sessions.validate(null));
+        assertEquals(3, sessions.getValidationFailures());
+    }
+}
@@ -30,10 +30,51 @@ function App() {
     fetchTodos()
   }, [])
 
+  // 他のタブや利用者による変更をSSEで受け取り、一覧を取り直さずに差分だけ反映する
+  useEffect(() => {
+    const source = new EventSource(`${API_BASE_URL}/todos/stream`)
+    let disconnected = false
+
+    source.addEventListener('created', (e) => insertTodo(JSON.parse(e.data)))
+    source.addEventListener('updated', (e) => replaceTodo(JSON.parse(e.data)))
+    source.addEventListener('deleted', (e) => {
+      const { id } = JSON.parse(e.data)
+      setTodos(current => current.filter(todo => todo.id !== id))
+    })
+    // 一括処理の後は差分が届かないため、一覧を取り直す
+    source.addEventListener('resync', () => fetchTodos(false))
+
+    // 切断中の変更は届かないため、再接続したら一覧を取り直す
+    source.onerror = () => {
+      disconnected = true
+    }
+    source.onopen = () => {
+      if (disconnected) {
+        disconnected = false
+        fetchTodos(false)
+      }
+    }
+
+    return () => source.close()
+  }, [])
+
+  // 作成されたTodoを一覧の先頭に追加（自分の操作の結果とイベントのどちらが先に届いても重複しない）
+  // 既にある場合は、その後の更新が先に届いている可能性があるため置き換えない
+  const insertTodo = (todo) => {
+    setTodos(current => current.some(t => t.id === todo.id) ? current : [todo, ...current])
+  }
+
+  // 更新されたTodoを一覧に反映（一覧にないTodoは追加しない）
+  const replaceTodo = (todo) => {
+    setTodos(current => current.map(t => t.id === todo.id ? todo : t))
+  }
+
   // 全てのTodoを取得
-  const fetchTodos = async () => {
+  const fetchTodos = async (showLoading = true) => {
     try {
-      setLoading(true)
+      if (showLoading) {
+        setLoading(true)
+      }
       const response = await fetch(`${API_BASE_URL}/todos`)
       if (!response.ok) {
         throw new Error('Todoの取得に失敗しました')
@@ -73,7 +114,7 @@ function App() {
       }
 
       const createdTodo = await response.json()
-      setTodos([createdTodo, ...todos])
+      insertTodo(createdTodo)
       setNewTodo({ title: '', description: '' })
       setError('')
     } catch (err) {
@@ -102,7 +143,7 @@ function App() {
       }
 
       const updated = await response.json()
-      setTodos(todos.map(t => t.id === todo.id ? updated : t))
+      replaceTodo(updated)
       setError('')
     } catch (err) {
       setError(err.message)
@@ -125,7 +166,7 @@ function App() {
         throw new Error('Todoの削除に失敗しました')
       }
 
-      setTodos(todos.filter(todo => todo.id !== id))
+      setTodos(current => current.filter(todo => todo.id !== id))
       setError('')
     } catch (err) {
       setError(err.message)
@@ -13,7 +13,13 @@ CREATE TABLE IF NOT EXISTS todos (
     description TEXT,
     completed BOOLEAN DEFAULT FALSE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    -- 一覧のキーセットページング用（ORDER BY created_at DESC, id DESC）
+    INDEX idx_todos_created_id (created_at, id),
+    -- 完了状態で絞り込んだ一覧用
+    INDEX idx_todos_completed_created_id (completed, created_at, id),
+    -- タイトルの前方一致検索用（範囲検索になるため ORDER BY created_at には使えず、一致した行を並び替える）
+    INDEX idx_todos_title (title)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- サンプルデータの挿入
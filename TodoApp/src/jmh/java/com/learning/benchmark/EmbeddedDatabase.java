@@ -0,0 +1,75 @@
+package com.learning.benchmark;
+
+import com.learning.database.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * ベンチマーク用の組み込みDB（H2のMySQL互換モード、メモリ上）
+ *
+ * DatabaseConnectionは初回アクセス時に接続先を決めるため、
+ * {@link #start} はDatabaseConnectionやDAOを使う前に呼ぶ必要がある。
+ * JMHはベンチマークごとに別のJVMをforkするので、設定がベンチマーク間で混ざることはない。
+ */
+final class EmbeddedDatabase {
+    private static final String URL = "jdbc:h2:mem:todoapp;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * 接続先を組み込みDBに切り替え、todosテーブルを指定件数のデータで作り直す
+     * @param rows 投入するTodoの件数
+     * @return 組み込みDBに接続したDatabaseConnection
+     */
+    static DatabaseConnection start(int rows) throws SQLException {
+        System.setProperty("db.url", URL);
+        System.setProperty("db.user", "sa");
+        System.setProperty("db.password", "");
+
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS todos");
+            // init.sqlと同じ列・インデックス（ENGINEなどMySQL固有の指定は除く）
+            stmt.execute("CREATE TABLE todos ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "title VARCHAR(255) NOT NULL, "
+                    + "description TEXT, "
+                    + "completed BOOLEAN DEFAULT FALSE, "
+                    + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE INDEX idx_todos_created_id ON todos (created_at, id)");
+            stmt.execute("CREATE INDEX idx_todos_completed_created_id ON todos (completed, created_at, id)");
+            stmt.execute("CREATE INDEX idx_todos_title ON todos (title)");
+        }
+
+        String sql = "INSERT INTO todos (title, description, completed, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        try (Connection conn = db.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = 1; i <= rows; i++) {
+                Timestamp createdAt = Timestamp.valueOf(base.plusSeconds(i));
+                stmt.setString(1, "タスク " + i);
+                stmt.setString(2, "ベンチマーク用のTodo " + i + " の説明文です");
+                stmt.setBoolean(3, i % 3 == 0);
+                stmt.setTimestamp(4, createdAt);
+                stmt.setTimestamp(5, createdAt);
+                stmt.addBatch();
+                if (i % 1000 == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        return db;
+    }
+}
@@ -0,0 +1,21 @@
+package com.learning.benchmark;
+
+import com.learning.Main;
+
+/**
+ * 組み込みDB（H2）でTodoAppを起動する（MySQLを用意せずに負荷試験を行うため）
+ *
+ * 使い方: java -cp target/benchmarks.jar com.learning.benchmark.EmbeddedServer [投入するTodoの件数]
+ * Executorやプールの設定は通常どおり -Dserver.executor=bounded などのシステムプロパティで指定する。
+ */
+public final class EmbeddedServer {
+
+    private EmbeddedServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        EmbeddedDatabase.start(rows);
+        Main.main(new String[0]);
+    }
+}
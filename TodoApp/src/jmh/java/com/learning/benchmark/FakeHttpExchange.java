@@ -0,0 +1,197 @@
+package com.learning.benchmark;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ソケットを使わずにハンドラーを呼び出すためのHttpExchange
+ *
+ * レスポンス本文は保持せずバイト数だけを数えるため、ベンチマークの計測対象は
+ * ハンドラー自身の処理（ヘッダー設定・DBアクセス・シリアライズ・書き込み）に限られる。
+ * 1つのインスタンスを {@link #reset} で使い回し、計測ループでの余計な割り当てを避ける。
+ */
+public final class FakeHttpExchange extends HttpExchange {
+    private static final InetSocketAddress LOCAL = new InetSocketAddress(InetAddress.getLoopbackAddress(), 8080);
+    private static final InetSocketAddress REMOTE = new InetSocketAddress(InetAddress.getLoopbackAddress(), 50000);
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final CountingOutputStream responseBody = new CountingOutputStream();
+
+    private String method;
+    private URI uri;
+    private InputStream requestBody = new ByteArrayInputStream(EMPTY);
+    private int responseCode = -1;
+    private long responseLength;
+
+    /**
+     * 次のリクエスト用に状態を初期化する
+     * @param method HTTPメソッド
+     * @param uri リクエストURI（パスとクエリ）
+     * @return このインスタンス
+     */
+    public FakeHttpExchange reset(String method, URI uri) {
+        this.method = method;
+        this.uri = uri;
+        this.requestBody = new ByteArrayInputStream(EMPTY);
+        this.responseCode = -1;
+        this.responseLength = 0;
+        requestHeaders.clear();
+        responseHeaders.clear();
+        responseBody.reset();
+        return this;
+    }
+
+    /**
+     * リクエストヘッダーを追加する
+     */
+    public FakeHttpExchange header(String name, String value) {
+        requestHeaders.add(name, value);
+        return this;
+    }
+
+    /**
+     * リクエスト本文を設定する
+     */
+    public FakeHttpExchange body(byte[] body) {
+        this.requestBody = new ByteArrayInputStream(body);
+        return this;
+    }
+
+    /**
+     * ハンドラーが書き込んだレスポンス本文のバイト数
+     */
+    public long getResponseBytes() {
+        return responseBody.count;
+    }
+
+    /**
+     * sendResponseHeadersに渡されたContent-Length（0はchunked、-1は本文なし）
+     */
+    public long getResponseLength() {
+        return responseLength;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // 閉じる対象のソケットはない
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        if (responseCode != -1) {
+            throw new IllegalStateException("headers already sent");
+        }
+        this.responseCode = rCode;
+        this.responseLength = responseLength;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return REMOTE;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return LOCAL;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    /**
+     * 書き込まれたバイト数だけを数えるOutputStream（closeしても再利用できる）
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        void reset() {
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
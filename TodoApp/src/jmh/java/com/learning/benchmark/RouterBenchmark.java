@@ -0,0 +1,94 @@
+package com.learning.benchmark;
+
+import com.learning.server.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routerの照合とディスパッチを計測する（固定パス / int パラメータ / 深いパス / 404 / 405）
+ * 今後の追加を想定して、TodoApiHandlerのルートに加えて数十件のルートを登録しておく
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+    private static final String[] RESOURCES = {
+            "todos", "projects", "users", "tags", "comments", "attachments", "teams", "labels"
+    };
+
+    private Router router;
+    private FakeHttpExchange exchange;
+    private long lastValue;
+
+    private final URI listUri = URI.create("/api/todos");
+    private final URI byIdUri = URI.create("/api/todos/12345");
+    private final URI nestedUri = URI.create("/api/projects/42/comments/9001");
+    private final URI batchUri = URI.create("/api/todos/batch");
+    private final URI notFoundUri = URI.create("/api/unknown/path");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        router = new Router((exchange, status, message) -> exchange.sendResponseHeaders(status, -1));
+        for (String resource : RESOURCES) {
+            String base = "/api/" + resource;
+            router.get(base, (exchange, params) -> lastValue = 0)
+                    .post(base, (exchange, params) -> lastValue = 0)
+                    .get(base + "/{id:int}", (exchange, params) -> lastValue = params.getInt("id"))
+                    .put(base + "/{id:int}", (exchange, params) -> lastValue = params.getInt("id"))
+                    .delete(base + "/{id:int}", (exchange, params) -> lastValue = params.getInt("id"))
+                    .get(base + "/{id:int}/comments/{commentId:long}",
+                            (exchange, params) -> lastValue = params.getLong("commentId"));
+        }
+        router.post("/api/todos/batch", (exchange, params) -> lastValue = 0)
+                .get("/api/stats/pool", (exchange, params) -> lastValue = 0)
+                .get("/api/stats/cache", (exchange, params) -> lastValue = 0);
+        exchange = new FakeHttpExchange();
+    }
+
+    @Benchmark
+    public long literal() throws IOException {
+        router.dispatch(exchange.reset("GET", listUri));
+        return lastValue;
+    }
+
+    @Benchmark
+    public long intParam() throws IOException {
+        router.dispatch(exchange.reset("GET", byIdUri));
+        return lastValue;
+    }
+
+    @Benchmark
+    public long nestedParams() throws IOException {
+        router.dispatch(exchange.reset("GET", nestedUri));
+        return lastValue;
+    }
+
+    @Benchmark
+    public int methodNotAllowed() throws IOException {
+        router.dispatch(exchange.reset("GET", batchUri));
+        return exchange.getResponseCode();
+    }
+
+    @Benchmark
+    public int notFound() throws IOException {
+        router.dispatch(exchange.reset("GET", notFoundUri));
+        return exchange.getResponseCode();
+    }
+}
@@ -0,0 +1,123 @@
+package com.learning.benchmark;
+
+import com.learning.server.StaticFileHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * StaticFileHandlerの配信を計測する（キャッシュ済みの小さなファイル、gzip、304、Range、ディスクから転送する大きなファイル）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticFileHandlerBenchmark {
+
+    private Path root;
+    private StaticFileHandler handler;
+    private FakeHttpExchange exchange;
+    private final URI indexUri = URI.create("/");
+    private final URI scriptUri = URI.create("/assets/app.js");
+    private final URI largeUri = URI.create("/assets/video.bin");
+    private String scriptEtag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("static-bench");
+        Files.createDirectories(root.resolve("assets"));
+        Files.writeString(root.resolve("index.html"),
+                "<!doctype html><html><head><script src=\"/assets/app.js\"></script></head><body><div id=\"root\"></div></body></html>");
+
+        // 圧縮が効くテキスト（約200KB）
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; script.length() < 200_000; i++) {
+            script.append("export function component").append(i).append("(props) { return props.value + ").append(i).append("; }\n");
+        }
+        Files.writeString(root.resolve("assets/app.js"), script.toString(), StandardCharsets.UTF_8);
+
+        // static.cache.maxFileBytesを超え、FileChannelから転送されるファイル（4MB）
+        byte[] large = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(large);
+        Files.write(root.resolve("assets/video.bin"), large);
+
+        handler = new StaticFileHandler(root.toString());
+        exchange = new FakeHttpExchange();
+
+        handler.handle(exchange.reset("GET", scriptUri).header("Accept-Encoding", "gzip"));
+        scriptEtag = exchange.getResponseHeaders().getFirst("ETag");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        handler.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long indexIdentity() throws IOException {
+        handler.handle(exchange.reset("GET", indexUri));
+        return exchange.getResponseBytes();
+    }
+
+    @Benchmark
+    public long scriptIdentity() throws IOException {
+        handler.handle(exchange.reset("GET", scriptUri));
+        return exchange.getResponseBytes();
+    }
+
+    @Benchmark
+    public long scriptGzip() throws IOException {
+        handler.handle(exchange.reset("GET", scriptUri).header("Accept-Encoding", "gzip, deflate, br"));
+        return exchange.getResponseBytes();
+    }
+
+    @Benchmark
+    public int scriptNotModified() throws IOException {
+        handler.handle(exchange.reset("GET", scriptUri)
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", scriptEtag));
+        return exchange.getResponseCode();
+    }
+
+    @Benchmark
+    public long scriptRange() throws IOException {
+        handler.handle(exchange.reset("GET", scriptUri).header("Range", "bytes=1000-65535"));
+        return exchange.getResponseBytes();
+    }
+
+    @Benchmark
+    public long largeFile() throws IOException {
+        handler.handle(exchange.reset("GET", largeUri));
+        return exchange.getResponseBytes();
+    }
+
+    @Benchmark
+    public long largeFileRange() throws IOException {
+        handler.handle(exchange.reset("GET", largeUri).header("Range", "bytes=1048576-2097151"));
+        return exchange.getResponseBytes();
+    }
+}
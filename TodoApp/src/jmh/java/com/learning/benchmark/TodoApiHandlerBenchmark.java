@@ -0,0 +1,103 @@
+package com.learning.benchmark;
+
+import com.learning.server.TodoApiHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TodoApiHandlerのリクエスト処理全体（ルーティング・キャッシュ・DB・JSON・書き込み）を計測する
+ * ソケットは使わず、FakeHttpExchangeを直接handleに渡す
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TodoApiHandlerBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private TodoApiHandler handler;
+    private FakeHttpExchange exchange;
+    private URI[] byIdUris;
+    private URI pageUri;
+    private URI prefixUri;
+    private URI streamUri;
+    private URI createUri;
+    private byte[] createBody;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmbeddedDatabase.start(rows);
+        handler = new TodoApiHandler();
+        exchange = new FakeHttpExchange();
+
+        // URIの解析はリクエストごとのコストに含めないよう事前に作っておく
+        byIdUris = new URI[Math.min(rows, 256)];
+        for (int i = 0; i < byIdUris.length; i++) {
+            byIdUris[i] = URI.create("/api/todos/" + (i + 1));
+        }
+        pageUri = URI.create("/api/todos?limit=50");
+        prefixUri = URI.create("/api/todos?limit=50&completed=false&q=" + "%E3%82%BF%E3%82%B9%E3%82%AF%201");
+        streamUri = URI.create("/api/todos");
+        createUri = URI.create("/api/todos");
+        createBody = "{\"title\":\"ベンチマーク\",\"description\":\"作成\",\"completed\":false}"
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** GET /api/todos/{id}（IDごとのキャッシュに当たる） */
+    @Benchmark
+    public long getById() throws IOException {
+        URI uri = byIdUris[next++ % byIdUris.length];
+        handler.handle(exchange.reset("GET", uri));
+        return exchange.getResponseBytes();
+    }
+
+    /** GET /api/todos?limit=50（キーセットページングの1ページ目） */
+    @Benchmark
+    public long getFirstPage() throws IOException {
+        handler.handle(exchange.reset("GET", pageUri));
+        return exchange.getResponseBytes();
+    }
+
+    /** GET /api/todos?limit=50&completed=false&q=...（絞り込み付き） */
+    @Benchmark
+    public long getFilteredPage() throws IOException {
+        handler.handle(exchange.reset("GET", prefixUri));
+        return exchange.getResponseBytes();
+    }
+
+    /** GET /api/todos（全件のストリーミング） */
+    @Benchmark
+    public long streamAll() throws IOException {
+        handler.handle(exchange.reset("GET", streamUri));
+        return exchange.getResponseBytes();
+    }
+
+    /** POST /api/todos（JSONの解析・INSERT・キャッシュ無効化） */
+    @Benchmark
+    public long create() throws IOException {
+        handler.handle(exchange.reset("POST", createUri)
+                .header("Content-Type", "application/json")
+                .body(createBody));
+        return exchange.getResponseBytes();
+    }
+}
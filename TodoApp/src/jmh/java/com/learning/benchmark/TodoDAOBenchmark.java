@@ -0,0 +1,83 @@
+package com.learning.benchmark;
+
+import com.learning.database.TodoDAO;
+import com.learning.model.Todo;
+import com.learning.model.TodoCursor;
+import com.learning.model.TodoPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * キャッシュを通さないTodoDAOのクエリを組み込みDBに対して計測する
+ * 行の読み取り・Todoへの変換・プールの貸し借りのコストを見るためのもので、
+ * MySQLとの通信時間は含まれない点に注意
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TodoDAOBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private TodoDAO dao;
+    private TodoCursor deepCursor;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmbeddedDatabase.start(rows);
+        dao = new TodoDAO();
+        // 一覧の中ほどのページ（キーセット方式なので1ページ目と同程度のコストになるはず）
+        TodoPage page = dao.findTodos(rows / 2, null, null, null);
+        deepCursor = page.getNextCursor();
+    }
+
+    @Benchmark
+    public Todo getTodoById() {
+        return dao.getTodoById(next++ % rows + 1);
+    }
+
+    @Benchmark
+    public TodoPage findFirstPage() throws SQLException {
+        return dao.findTodos(50, null, null, null);
+    }
+
+    @Benchmark
+    public TodoPage findDeepPage() throws SQLException {
+        return dao.findTodos(50, deepCursor, null, null);
+    }
+
+    @Benchmark
+    public TodoPage findByTitlePrefix() throws SQLException {
+        return dao.findTodos(50, null, false, "タスク 1");
+    }
+
+    @Benchmark
+    public int forEachTodo(Blackhole blackhole) throws IOException, SQLException {
+        return dao.forEachTodo(blackhole::consume);
+    }
+
+    @Benchmark
+    public Todo createTodo() {
+        return dao.createTodo(new Todo("ベンチマーク", "作成"));
+    }
+}
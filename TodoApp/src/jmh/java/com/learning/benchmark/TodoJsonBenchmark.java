@@ -0,0 +1,95 @@
+package com.learning.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.learning.model.Todo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Todo一覧のJSONシリアライズを件数ごとに計測する
+ * TodoApiHandlerと同じObjectMapperの設定で、バイト配列を作る方式とストリーミング方式を比べる
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TodoJsonBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter streamItemWriter;
+    private List<Todo> todos;
+    /** 書き込みを捨てる出力先（nullOutputStreamと違いclose後も使える） */
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper(JsonFactory.builder()
+                .disable(JsonWriteFeature.ESCAPE_NON_ASCII)
+                .build());
+        objectMapper.registerModule(new JavaTimeModule());
+        streamItemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        todos = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            LocalDateTime createdAt = base.plusSeconds(i);
+            todos.add(new Todo(i, "タスク " + i, "ベンチマーク用のTodo " + i + " の説明文です",
+                    i % 3 == 0, createdAt, createdAt));
+        }
+    }
+
+    /** 一覧全体をbyte[]にしてから送る方式（sendJsonResponse相当） */
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(todos);
+    }
+
+    /** 1件ずつジェネレーターに書き出す方式（sendTodoStream相当） */
+    @Benchmark
+    public void streamItems() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(sink, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (Todo todo : todos) {
+                streamItemWriter.writeValue(generator, todo);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
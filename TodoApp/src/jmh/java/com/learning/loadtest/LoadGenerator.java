@@ -0,0 +1,283 @@
+package com.learning.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TodoApp / LoginApp 用の負荷試験ツール
+ *
+ * 指定したレートを順に試し（--rates=100,200,400）、レートごとに
+ * レイテンシ分布（coordinated omission 補正済み）、スループット、エラー数を表示する。
+ * 結果は --out のディレクトリに次の形式で保存する。
+ * <ul>
+ *   <li>{workload}-curve.csv: レートごとのスループットとパーセンタイル（スループット対p99の曲線用）</li>
+ *   <li>{workload}-{rate}rps.hgrm: HdrHistogramのパーセンタイル分布（HistogramLogAnalyzer等で描画できる）</li>
+ *   <li>{workload}-{rate}rps-stats.json: 計測直後のサーバー側の統計API（プール・Executorなど）</li>
+ * </ul>
+ *
+ * 実行例:
+ * <pre>
+ * java -cp target/benchmarks.jar com.learning.loadtest.LoadGenerator --workload=todo --rates=100,200,400,800 --duration=30
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        if (options.containsKey("help")) {
+            printUsage(System.out);
+            return;
+        }
+
+        String workloadName = options.getOrDefault("workload", "todo");
+        URI baseUri = URI.create(options.getOrDefault("url", "http://localhost:8080"));
+        List<Double> rates = parseRates(options.getOrDefault("rates", "50,100,200,400"));
+        Duration warmup = seconds(options.getOrDefault("warmup", "5"));
+        Duration duration = seconds(options.getOrDefault("duration", "30"));
+        Duration cooldown = seconds(options.getOrDefault("cooldown", "2"));
+        Duration timeout = seconds(options.getOrDefault("timeout", "10"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "10000"));
+        int clientThreads = Integer.parseInt(options.getOrDefault("client-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        double sloP99Millis = Double.parseDouble(options.getOrDefault("slo-p99-ms", "0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        OpenLoopRunner.Burst burst = options.containsKey("burst") ? OpenLoopRunner.Burst.parse(options.get("burst")) : null;
+        Path outDir = Paths.get(options.getOrDefault("out", "target/loadtest"));
+
+        Workload workload = createWorkload(workloadName, options, timeout);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(clientThreads, runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(clientExecutor)
+                .build();
+
+        System.out.printf(Locale.ROOT, "Workload %s against %s, rates %s req/s, warmup %ds, duration %ds%s%n",
+                workloadName, baseUri, rates, warmup.getSeconds(), duration.getSeconds(),
+                burst != null ? ", burst " + burst : "");
+        workload.prepare(client, baseUri);
+
+        Files.createDirectories(outDir);
+        Path curveFile = outDir.resolve(workloadName + "-curve.csv");
+        List<OpenLoopRunner.StepResult> results = new ArrayList<>();
+        OpenLoopRunner runner = new OpenLoopRunner(client, workload, warmup, duration, timeout, maxInFlight, burst, seed);
+
+        try (PrintWriter curve = new PrintWriter(Files.newBufferedWriter(curveFile, StandardCharsets.UTF_8))) {
+            curve.println("target_rps,throughput_rps,count,errors,dropped,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,service_p99_ms,max_schedule_lag_ms");
+            for (double rate : rates) {
+                OpenLoopRunner.StepResult result = runner.run(rate);
+                results.add(result);
+                printStep(System.out, result);
+                writeCurveLine(curve, result);
+                curve.flush();
+                writeHistogram(outDir.resolve(fileStem(result) + ".hgrm"), result.response);
+                writeServerStats(client, baseUri, workload.statsPaths(), outDir.resolve(fileStem(result) + "-stats.json"));
+
+                double p99 = millis(result.response.getValueAtPercentile(99.0));
+                if (sloP99Millis > 0 && p99 > sloP99Millis) {
+                    System.out.printf(Locale.ROOT, "p99 %.1f ms exceeded the SLO of %.1f ms at %.0f req/s; stopping the sweep%n",
+                            p99, sloP99Millis, rate);
+                    break;
+                }
+                Thread.sleep(cooldown.toMillis());
+            }
+        }
+
+        printCurve(System.out, results);
+        System.out.println("Results written to " + outDir.toAbsolutePath());
+        clientExecutor.shutdownNow();
+    }
+
+    private static Workload createWorkload(String name, Map<String, String> options, Duration timeout) {
+        switch (name) {
+            case "todo":
+                return new TodoWorkload(Workload.Mix.parse(
+                        options.getOrDefault("mix", TodoWorkload.DEFAULT_MIX), TodoWorkload.OPERATIONS), timeout);
+            case "login":
+                return new LoginWorkload(Workload.Mix.parse(
+                        options.getOrDefault("mix", LoginWorkload.DEFAULT_MIX), LoginWorkload.OPERATIONS), timeout,
+                        Integer.parseInt(options.getOrDefault("users", "20")));
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name + " (todo or login)");
+        }
+    }
+
+    private static void printStep(PrintStream out, OpenLoopRunner.StepResult result) {
+        out.printf(Locale.ROOT, "%n=== %s @ %.0f req/s ===%n", result.workload, result.targetRate);
+        out.printf(Locale.ROOT, "throughput %.1f req/s, requests %d, errors %d, dropped %d, unfinished %d, max schedule lag %.1f ms%n",
+                result.getThroughput(), result.count, result.errors, result.dropped, result.unfinished,
+                millis(result.maxScheduleLagNanos));
+        out.printf(Locale.ROOT, "%-10s %8s %7s %9s %9s %9s %9s %9s %12s  %s%n",
+                "operation", "count", "errors", "p50", "p90", "p99", "p99.9", "max", "service p99", "status");
+        for (OperationStats operation : result.operations) {
+            printRow(out, operation.getName(), operation.getCount(), operation.getErrors(),
+                    operation.getResponse(), operation.getService(), operation.getStatusCounts().toString());
+        }
+        printRow(out, "total", result.count, result.errors, result.response, result.service, "");
+        out.println("(latency in ms, measured from the intended send time; service p99 is measured from the actual send time)");
+    }
+
+    private static void printRow(PrintStream out, String name, long count, long errors,
+                                 Histogram response, Histogram service, String status) {
+        out.printf(Locale.ROOT, "%-10s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f  %s%n",
+                name, count, errors,
+                millis(response.getValueAtPercentile(50.0)),
+                millis(response.getValueAtPercentile(90.0)),
+                millis(response.getValueAtPercentile(99.0)),
+                millis(response.getValueAtPercentile(99.9)),
+                millis(response.getMaxValue()),
+                millis(service.getValueAtPercentile(99.0)),
+                status);
+    }
+
+    private static void printCurve(PrintStream out, List<OpenLoopRunner.StepResult> results) {
+        out.printf(Locale.ROOT, "%n=== throughput vs p99 ===%n");
+        out.printf(Locale.ROOT, "%10s %12s %10s %10s %8s%n", "target", "throughput", "p99 ms", "p99.9 ms", "errors");
+        for (OpenLoopRunner.StepResult result : results) {
+            out.printf(Locale.ROOT, "%10.0f %12.1f %10.2f %10.2f %8d%n",
+                    result.targetRate, result.getThroughput(),
+                    millis(result.response.getValueAtPercentile(99.0)),
+                    millis(result.response.getValueAtPercentile(99.9)),
+                    result.errors);
+        }
+    }
+
+    private static void writeCurveLine(PrintWriter curve, OpenLoopRunner.StepResult result) {
+        curve.printf(Locale.ROOT, "%.0f,%.2f,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                result.targetRate, result.getThroughput(), result.count, result.errors, result.dropped,
+                millis(result.response.getValueAtPercentile(50.0)),
+                millis(result.response.getValueAtPercentile(90.0)),
+                millis(result.response.getValueAtPercentile(99.0)),
+                millis(result.response.getValueAtPercentile(99.9)),
+                millis(result.response.getMaxValue()),
+                millis(result.service.getValueAtPercentile(99.0)),
+                millis(result.maxScheduleLagNanos));
+    }
+
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            // ナノ秒で記録しているので、ミリ秒単位で出力する
+            histogram.outputPercentileDistribution(out, 1_000_000.0);
+        }
+    }
+
+    /**
+     * サーバー側の統計APIを呼び、{"パス": 応答のJSON} の形で保存する
+     */
+    private static void writeServerStats(HttpClient client, URI baseUri, List<String> paths, Path file) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (String path : paths) {
+            String body;
+            try {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(baseUri.resolve(path)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                body = response.statusCode() == 200 ? response.body() : "null";
+            } catch (IOException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                body = "null";
+            }
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(path).append("\":").append(body);
+        }
+        json.append('}');
+        Files.writeString(file, json.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static String fileStem(OpenLoopRunner.StepResult result) {
+        return String.format(Locale.ROOT, "%s-%.0frps", result.workload, result.targetRate);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Duration seconds(String value) {
+        return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+    }
+
+    private static List<Double> parseRates(String value) {
+        List<Double> rates = new ArrayList<>();
+        for (String part : value.split(",")) {
+            double rate = Double.parseDouble(part.trim());
+            if (rate <= 0) {
+                throw new IllegalArgumentException("Rates must be positive: " + value);
+            }
+            rates.add(rate);
+        }
+        return rates;
+    }
+
+    /**
+     * --key=value / --key value / --flag 形式の引数を読む
+     */
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String key = arg.substring(2);
+            int equals = key.indexOf('=');
+            if (equals >= 0) {
+                options.put(key.substring(0, equals), key.substring(equals + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        return options;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp target/benchmarks.jar com.learning.loadtest.LoadGenerator [options]");
+        out.println("  --workload=todo|login       workload to run (default: todo)");
+        out.println("  --url=http://localhost:8080 server base URL");
+        out.println("  --rates=50,100,200,400      request rates to try in order (req/s)");
+        out.println("  --warmup=5 --duration=30    seconds per rate (warmup is not recorded)");
+        out.println("  --cooldown=2                pause between rates in seconds");
+        out.println("  --mix=list=35,get=30,...    operation weights (todo: " + TodoWorkload.DEFAULT_MIX + ")");
+        out.println("                              (login: " + LoginWorkload.DEFAULT_MIX + ")");
+        out.println("  --users=20                  accounts registered before the login workload");
+        out.println("  --burst=5,10,1              multiply the rate by 5 for 1s every 10s");
+        out.println("  --slo-p99-ms=100            stop the sweep once p99 exceeds this value");
+        out.println("  --timeout=10                request timeout in seconds");
+        out.println("  --max-in-flight=10000       client-side cap on outstanding requests (excess is recorded as a failure at the timeout latency)");
+        out.println("  --client-threads=N          HttpClient completion threads (default: CPUs)");
+        out.println("  --out=target/loadtest       output directory");
+    }
+}
@@ -0,0 +1,155 @@
+package com.learning.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * LoginApp（SimpleHttpServer）に対する負荷（登録・ログイン・セッション確認・ログアウト・静的ファイル）
+ *
+ * 準備段階で試験用のユーザーを登録しておき、ログインはそのユーザーで行う。
+ * ログインで得たトークンの一部はログアウト用に取り分け、残りはセッション確認（/api/auth/me）に使う。
+ * 登録とログインはbcryptを使うため、--burst と組み合わせるとハッシュ化プールの飽和を確認できる。
+ */
+final class LoginWorkload implements Workload {
+    static final List<String> OPERATIONS = Arrays.asList("register", "login", "me", "logout", "static");
+    static final String DEFAULT_MIX = "register=5,login=30,me=40,logout=5,static=20";
+
+    private static final String PASSWORD = "LoadTest-Password-1";
+    private static final String[] STATIC_PATHS = {"/html/index.html", "/css/styles.css", "/js/app.js"};
+
+    private final Mix mix;
+    private final Duration timeout;
+    private final int users;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 実行ごとに異なる接頭辞を付け、既存ユーザーや前回の試験と重複しないようにする
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final RecentValues<String> tokens = new RecentValues<>(4096);
+    private final Queue<String> logoutTokens = new ConcurrentLinkedQueue<>();
+
+    private URI baseUri;
+    private long registered;
+
+    LoginWorkload(Mix mix, Duration timeout, int users) {
+        this.mix = mix;
+        this.timeout = timeout;
+        this.users = users;
+    }
+
+    @Override
+    public String name() {
+        return "login";
+    }
+
+    @Override
+    public void prepare(HttpClient client, URI baseUri) throws IOException, InterruptedException {
+        this.baseUri = baseUri;
+        for (int i = 0; i < users; i++) {
+            HttpResponse<byte[]> response = client.send(register(username(i)), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 201) {
+                throw new IOException("register returned " + response.statusCode() + ": "
+                        + new String(response.body(), StandardCharsets.UTF_8));
+            }
+            registered++;
+            HttpResponse<byte[]> login = client.send(login(username(i)), HttpResponse.BodyHandlers.ofByteArray());
+            storeToken(login);
+        }
+        System.out.println("Prepared " + users + " users (" + tokens.size() + " sessions)");
+    }
+
+    @Override
+    public Request next(Random random) {
+        String operation = mix.pick(random);
+        switch (operation) {
+            case "register":
+                return new Request(operation, register(username(registered++)));
+            case "me": {
+                String token = tokens.random(random);
+                if (token == null) {
+                    return login(random);
+                }
+                return new Request(operation, request("/api/auth/me")
+                        .header("Authorization", "Bearer " + token)
+                        .GET().build());
+            }
+            case "logout": {
+                String token = logoutTokens.poll();
+                if (token == null) {
+                    return login(random);
+                }
+                return new Request(operation, request("/api/auth/logout")
+                        .header("Authorization", "Bearer " + token)
+                        .POST(HttpRequest.BodyPublishers.noBody()).build());
+            }
+            case "static":
+                return new Request(operation, request(STATIC_PATHS[random.nextInt(STATIC_PATHS.length)])
+                        .header("Accept-Encoding", "gzip")
+                        .GET().build());
+            case "login":
+            default:
+                return login(random);
+        }
+    }
+
+    @Override
+    public List<String> statsPaths() {
+        return Arrays.asList("/api/metrics");
+    }
+
+    private Request login(Random random) {
+        return new Request("login", login(username(random.nextInt(users))), this::storeToken);
+    }
+
+    private void storeToken(HttpResponse<byte[]> response) {
+        try {
+            String token = objectMapper.readTree(response.body()).path("token").asText(null);
+            if (token == null) {
+                return;
+            }
+            // 4件に1件はログアウト用に取り分ける（ログアウト済みのトークンで /me を呼ばないように分ける）
+            if (logoutTokens.size() < 1024 && (token.hashCode() & 3) == 0) {
+                logoutTokens.offer(token);
+            } else {
+                tokens.add(token);
+            }
+        } catch (IOException e) {
+            // トークンが読めない応答は使わない
+        }
+    }
+
+    private String username(long index) {
+        return "lt" + runId + "_" + index;
+    }
+
+    private HttpRequest register(String username) {
+        String json = "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.com\","
+                + "\"password\":\"" + PASSWORD + "\",\"firstName\":\"Load\",\"lastName\":\"Test\"}";
+        return request("/api/auth/register").POST(body(json)).build();
+    }
+
+    private HttpRequest login(String username) {
+        String json = "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+        return request("/api/auth/login").POST(body(json)).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+    }
+
+    private static HttpRequest.BodyPublisher body(String json) {
+        return HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8);
+    }
+}
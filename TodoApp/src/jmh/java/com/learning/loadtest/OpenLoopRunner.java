@@ -0,0 +1,201 @@
+package com.learning.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一定のレートでリクエストを送り続ける（オープンループ）負荷の実行
+ *
+ * レスポンスを待たずに予定時刻どおり送信するため、サーバーが遅くなっても送信レートは下がらない。
+ * レイテンシは「本来送るはずだった時刻」から計るので、送信側が詰まった分の待ち時間も結果に含まれる
+ * （coordinated omission の補正）。
+ */
+final class OpenLoopRunner {
+
+    private final HttpClient client;
+    private final Workload workload;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Burst burst;
+    private final long seed;
+
+    OpenLoopRunner(HttpClient client, Workload workload, Duration warmup, Duration duration, Duration timeout,
+                   int maxInFlight, Burst burst, long seed) {
+        this.client = client;
+        this.workload = workload;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.timeout = timeout;
+        this.maxInFlight = maxInFlight;
+        this.burst = burst;
+        this.seed = seed;
+    }
+
+    /**
+     * 指定したレートでウォームアップと計測を行う
+     * @param rate 1秒あたりの送信数（バースト中はその倍率）
+     * @return 計測期間の結果（ウォームアップ中に予定されたリクエストは含まない）
+     */
+    StepResult run(double rate) throws InterruptedException {
+        Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        LongAdder dropped = new LongAdder();
+        LongAccumulator lastCompletion = new LongAccumulator(Long::max, Long.MIN_VALUE);
+        Random random = new Random(seed);
+
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        long maxLag = 0;
+        // 丸め誤差が積み重ならないよう予定時刻はdoubleで進める
+        double intended = start;
+
+        while (true) {
+            long intendedNanos = (long) intended;
+            if (intendedNanos >= end) {
+                break;
+            }
+            long wait = intendedNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Workload.Request request = workload.next(random);
+            boolean measured = intendedNanos >= measureStart;
+            long sentAt = System.nanoTime();
+            if (measured) {
+                maxLag = Math.max(maxLag, sentAt - intendedNanos);
+            }
+
+            if (inFlight.get() >= maxInFlight) {
+                // 送信側の上限（メモリとソケットを守るため）。サーバーが追いついていないことを意味する
+                // 件数から外すとp99が実際より良く見えるので、タイムアウトした失敗として記録する
+                if (measured) {
+                    dropped.increment();
+                    stats.computeIfAbsent(request.operation, OperationStats::new).recordDropped(timeout.toNanos());
+                }
+            } else {
+                inFlight.incrementAndGet();
+                client.sendAsync(request.httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                        .whenComplete((response, error) -> {
+                            long done = System.nanoTime();
+                            inFlight.decrementAndGet();
+                            int status = response != null ? response.statusCode() : OperationStats.NO_RESPONSE;
+                            if (response != null && !OperationStats.isError(status) && request.onSuccess != null) {
+                                request.onSuccess.accept(response);
+                            }
+                            if (measured) {
+                                stats.computeIfAbsent(request.operation, OperationStats::new)
+                                        .record(done - intendedNanos, done - sentAt, status);
+                                lastCompletion.accumulate(done);
+                            }
+                        });
+            }
+            intended += 1_000_000_000.0 / (burst != null ? burst.rateAt(rate, intendedNanos - start) : rate);
+        }
+
+        // 送信済みのリクエストが終わるのを待つ（タイムアウトしたものはエラーとして記録される）
+        long drainDeadline = System.nanoTime() + timeout.toNanos() + 5_000_000_000L;
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        long measuredNanos = Math.max(duration.toNanos(), lastCompletion.get() - measureStart);
+        return new StepResult(workload.name(), rate, new ArrayList<>(stats.values()), dropped.sum(),
+                inFlight.get(), measuredNanos, maxLag);
+    }
+
+    /**
+     * 一定間隔でレートを上げる指定（例: 5倍を10秒ごとに1秒間）
+     */
+    static final class Burst {
+        private final double factor;
+        private final long everyNanos;
+        private final long lengthNanos;
+
+        Burst(double factor, Duration every, Duration length) {
+            this.factor = factor;
+            this.everyNanos = every.toNanos();
+            this.lengthNanos = length.toNanos();
+        }
+
+        /** "倍率,間隔秒,長さ秒" 形式 */
+        static Burst parse(String spec) {
+            String[] parts = spec.split(",");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("--burst must be factor,everySeconds,lengthSeconds: " + spec);
+            }
+            return new Burst(Double.parseDouble(parts[0]),
+                    Duration.ofMillis((long) (Double.parseDouble(parts[1]) * 1000)),
+                    Duration.ofMillis((long) (Double.parseDouble(parts[2]) * 1000)));
+        }
+
+        double rateAt(double baseRate, long elapsedNanos) {
+            return elapsedNanos % everyNanos < lengthNanos ? baseRate * factor : baseRate;
+        }
+
+        @Override
+        public String toString() {
+            return factor + "x for " + lengthNanos / 1_000_000 + "ms every " + everyNanos / 1_000_000 + "ms";
+        }
+    }
+
+    /**
+     * 1つのレートでの計測結果
+     */
+    static final class StepResult {
+        final String workload;
+        final double targetRate;
+        final List<OperationStats> operations;
+        final long dropped;
+        final int unfinished;
+        final long measuredNanos;
+        final long maxScheduleLagNanos;
+        final Histogram response = OperationStats.newHistogram();
+        final Histogram service = OperationStats.newHistogram();
+        final long count;
+        final long errors;
+
+        StepResult(String workload, double targetRate, List<OperationStats> operations, long dropped,
+                   int unfinished, long measuredNanos, long maxScheduleLagNanos) {
+            this.workload = workload;
+            this.targetRate = targetRate;
+            this.operations = operations;
+            this.operations.sort(Comparator.comparing(OperationStats::getName));
+            this.dropped = dropped;
+            this.unfinished = unfinished;
+            this.measuredNanos = measuredNanos;
+            this.maxScheduleLagNanos = maxScheduleLagNanos;
+            long totalCount = 0;
+            long totalErrors = 0;
+            for (OperationStats operation : operations) {
+                response.add(operation.getResponse());
+                service.add(operation.getService());
+                totalCount += operation.getCount();
+                totalErrors += operation.getErrors();
+            }
+            this.count = totalCount;
+            this.errors = totalErrors;
+        }
+
+        /** 計測期間に完了したリクエストのうち成功したものの1秒あたりの件数 */
+        double getThroughput() {
+            return (count - errors) / (measuredNanos / 1_000_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.learning.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 1種類の操作のレイテンシとステータスコードの集計
+ *
+ * レイテンシは2種類を記録する。
+ * <ul>
+ *   <li>response: 本来送るはずだった時刻からの時間（coordinated omission を補正した値。こちらで判断する）</li>
+ *   <li>service: 実際に送った時刻からの時間（サーバーの処理時間に近いが、詰まっている間の待ちが含まれない）</li>
+ * </ul>
+ */
+final class OperationStats {
+    // 1時間まで、有効桁数3桁で記録する
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /** 接続エラーやタイムアウトなど、レスポンスを受け取れなかった場合のステータス */
+    static final int NO_RESPONSE = 0;
+    /** 送信側の上限（--max-in-flight）に達していて送らなかった場合のステータス */
+    static final int DROPPED = -1;
+
+    private final String name;
+    private final Histogram response = newHistogram();
+    private final Histogram service = newHistogram();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    static Histogram newHistogram() {
+        return new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+
+    void record(long responseNanos, long serviceNanos, int status) {
+        response.recordValue(Math.min(responseNanos, HIGHEST_TRACKABLE_NANOS));
+        service.recordValue(Math.min(serviceNanos, HIGHEST_TRACKABLE_NANOS));
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        if (isError(status)) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 送らなかったリクエストを失敗として記録する
+     * 送っていればタイムアウトしていたはずなので、レスポンスのレイテンシにはタイムアウトの時間を入れる
+     * （実際には送っていないため、serviceには記録しない）
+     */
+    void recordDropped(long timeoutNanos) {
+        response.recordValue(Math.min(timeoutNanos, HIGHEST_TRACKABLE_NANOS));
+        statusCounts.computeIfAbsent(DROPPED, key -> new LongAdder()).increment();
+        errors.increment();
+    }
+
+    /** 2xx / 3xx 以外はエラーとして数える */
+    static boolean isError(int status) {
+        return status < 200 || status >= 400;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Histogram getResponse() {
+        return response;
+    }
+
+    Histogram getService() {
+        return service;
+    }
+
+    long getCount() {
+        return response.getTotalCount();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    /** ステータスコードごとの件数（0は応答なし、-1は送信側の上限で送らなかったもの） */
+    Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
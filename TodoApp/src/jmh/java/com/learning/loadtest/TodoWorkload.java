@@ -0,0 +1,139 @@
+package com.learning.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TodoAppに対する負荷（一覧・取得・作成・更新・削除・静的ファイル）
+ *
+ * 既存のTodoは読み取りにだけ使い、更新・削除は負荷試験中に自分で作成したTodoだけを対象にする。
+ * 作成済みのTodoがない時の更新・削除は作成に置き換える。
+ */
+final class TodoWorkload implements Workload {
+    static final List<String> OPERATIONS = Arrays.asList("list", "get", "create", "update", "delete", "static");
+    static final String DEFAULT_MIX = "list=35,get=30,create=12,update=10,delete=8,static=5";
+
+    private static final int SEED_TODOS = 20;
+
+    private final Mix mix;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RecentValues<Integer> existingIds = new RecentValues<>(4096);
+    // 負荷試験で作成したTodo（更新中は取り出され、完了後に戻される）
+    private final Queue<Integer> createdIds = new ConcurrentLinkedQueue<>();
+
+    private URI baseUri;
+    private long sequence;
+
+    TodoWorkload(Mix mix, Duration timeout) {
+        this.mix = mix;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String name() {
+        return "todo";
+    }
+
+    @Override
+    public void prepare(HttpClient client, URI baseUri) throws IOException, InterruptedException {
+        this.baseUri = baseUri;
+        HttpResponse<byte[]> response = client.send(get("/api/todos?limit=500"), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET /api/todos returned " + response.statusCode());
+        }
+        for (JsonNode todo : objectMapper.readTree(response.body())) {
+            existingIds.add(todo.path("id").asInt());
+        }
+        // 空のDBの場合は読み取り用のTodoを作っておく
+        for (int i = existingIds.size(); i < SEED_TODOS; i++) {
+            HttpResponse<byte[]> created = client.send(post("/api/todos", todoJson("loadtest seed " + i, false)),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            existingIds.add(objectMapper.readTree(created.body()).path("id").asInt());
+        }
+        System.out.println("Prepared " + existingIds.size() + " existing todos");
+    }
+
+    @Override
+    public Request next(Random random) {
+        String operation = mix.pick(random);
+        switch (operation) {
+            case "list":
+                return new Request(operation, get("/api/todos?limit=50"));
+            case "get":
+                return new Request(operation, get("/api/todos/" + existingIds.random(random)));
+            case "update": {
+                Integer id = createdIds.poll();
+                if (id == null) {
+                    return create();
+                }
+                // 更新が終わったら戻し、次の更新・削除の対象に残す
+                return new Request(operation,
+                        request("/api/todos/" + id).PUT(body(todoJson("loadtest " + id, random.nextBoolean()))).build(),
+                        response -> createdIds.offer(id));
+            }
+            case "delete": {
+                Integer id = createdIds.poll();
+                if (id == null) {
+                    return create();
+                }
+                return new Request(operation, request("/api/todos/" + id).DELETE().build());
+            }
+            case "static":
+                return new Request(operation, request("/").header("Accept-Encoding", "gzip").GET().build());
+            case "create":
+            default:
+                return create();
+        }
+    }
+
+    @Override
+    public List<String> statsPaths() {
+        return Arrays.asList("/api/stats/pool", "/api/stats/executor", "/api/stats/cache");
+    }
+
+    private Request create() {
+        return new Request("create", post("/api/todos", todoJson("loadtest " + (++sequence), false)), response -> {
+            try {
+                createdIds.offer(objectMapper.readTree(response.body()).path("id").asInt());
+            } catch (IOException e) {
+                // IDが読めない場合は更新・削除の対象にしない
+            }
+        });
+    }
+
+    private String todoJson(String title, boolean completed) {
+        return "{\"title\":\"" + title + "\",\"description\":\"load test\",\"completed\":" + completed + "}";
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return request(path).POST(body(json)).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+    }
+
+    private static HttpRequest.BodyPublisher body(String json) {
+        return HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8);
+    }
+}
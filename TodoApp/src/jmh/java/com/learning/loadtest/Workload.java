@@ -0,0 +1,138 @@
+package com.learning.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 負荷試験で送るリクエストの組み合わせ
+ *
+ * {@link #next} はスケジューラーの1スレッドからだけ呼ばれる。
+ * レスポンスのコールバックはHttpClientのスレッドから呼ばれるため、共有する値はスレッドセーフに扱うこと。
+ */
+interface Workload {
+
+    /** 結果の表示やファイル名に使う名前 */
+    String name();
+
+    /**
+     * 計測前の準備（既存データの読み込み、ユーザー登録など）
+     */
+    void prepare(HttpClient client, URI baseUri) throws IOException, InterruptedException;
+
+    /**
+     * 次に送るリクエストを選ぶ
+     */
+    Request next(Random random);
+
+    /**
+     * 各ステップの後に保存するサーバー側の統計API（プールやExecutorの状態）
+     */
+    List<String> statsPaths();
+
+    /**
+     * 送信するリクエストと、成功時に呼ぶコールバック
+     */
+    final class Request {
+        final String operation;
+        final HttpRequest httpRequest;
+        final Consumer<HttpResponse<byte[]>> onSuccess;
+
+        Request(String operation, HttpRequest httpRequest, Consumer<HttpResponse<byte[]>> onSuccess) {
+            this.operation = operation;
+            this.httpRequest = httpRequest;
+            this.onSuccess = onSuccess;
+        }
+
+        Request(String operation, HttpRequest httpRequest) {
+            this(operation, httpRequest, null);
+        }
+    }
+
+    /**
+     * 操作ごとの重み（例: "list=40,get=25,create=15"）
+     */
+    final class Mix {
+        private final List<String> operations = new ArrayList<>();
+        private final List<Integer> cumulative = new ArrayList<>();
+        private int total;
+
+        static Mix parse(String spec, List<String> allowed) {
+            Mix mix = new Mix();
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split("=");
+                if (pair.length != 2 || !allowed.contains(pair[0].trim())) {
+                    throw new IllegalArgumentException("Invalid mix entry: " + part + " (allowed: " + allowed + ")");
+                }
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight > 0) {
+                    mix.total += weight;
+                    mix.operations.add(pair[0].trim());
+                    mix.cumulative.add(mix.total);
+                }
+            }
+            if (mix.total == 0) {
+                throw new IllegalArgumentException("Mix has no operations: " + spec);
+            }
+            return mix;
+        }
+
+        String pick(Random random) {
+            int value = random.nextInt(total);
+            for (int i = 0; i < cumulative.size(); i++) {
+                if (value < cumulative.get(i)) {
+                    return operations.get(i);
+                }
+            }
+            return operations.get(operations.size() - 1);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            int previous = 0;
+            for (int i = 0; i < operations.size(); i++) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(operations.get(i)).append('=').append(cumulative.get(i) - previous);
+                previous = cumulative.get(i);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 直近に追加された値を固定長で保持し、ランダムに1つ取り出せるリング（ロックなし）
+     */
+    final class RecentValues<T> {
+        private final AtomicReferenceArray<T> values;
+        private final AtomicLong added = new AtomicLong();
+
+        RecentValues(int capacity) {
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        void add(T value) {
+            values.set((int) (added.getAndIncrement() % values.length()), value);
+        }
+
+        /** 空の場合はnull */
+        T random(Random random) {
+            long count = Math.min(added.get(), values.length());
+            return count == 0 ? null : values.get(random.nextInt((int) count));
+        }
+
+        int size() {
+            return (int) Math.min(added.get(), values.length());
+        }
+    }
+}
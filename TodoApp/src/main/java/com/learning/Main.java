@@ -1,8 +1,15 @@
 package com.learning;
 
 import com.learning.database.DatabaseConnection;
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.MetricsRegistry;
+import com.learning.server.InstrumentedHandler;
+import com.learning.server.MetricsHandler;
 import com.learning.server.StaticFileHandler;
 import com.learning.server.TodoApiHandler;
+import com.learning.server.TodoEventBus;
+import com.learning.server.TodoStreamHandler;
+import com.learning.server.WorkerExecutor;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
@@ -13,44 +20,91 @@ import java.net.InetSocketAddress;
  * HTTPサーバーを起動し、APIエンドポイントと静的ファイルの提供を開始する
  */
 public class Main {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(Main.class);
+
     private static final int PORT = 8080;
     private static final String STATIC_FILES_DIR = "src/main/resources/static";
 
     public static void main(String[] args) {
         try {
             // データベース接続の初期化
-            System.out.println("=== Todo Application Starting ===");
+            LOG.info("=== Todo Application Starting ===");
             DatabaseConnection.getInstance();
 
             // HTTPサーバーの作成
             HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
 
-            // APIハンドラーの設定
-            server.createContext("/api", new TodoApiHandler());
+            // リクエスト処理用のExecutor（-Dserver.executor=virtual|bounded|inline で切り替え）
+            WorkerExecutor executor = WorkerExecutor.fromSystemProperties();
+
+            // 変更の配信（GET /api/todos/stream）。購読中の接続はexchangeを閉じずに保持するため別のコンテキストにする
+            TodoEventBus eventBus = TodoEventBus.fromSystemProperties();
+            server.createContext("/api/todos/stream",
+                    new InstrumentedHandler(executor.guard(new TodoStreamHandler(eventBus)), "/api/todos/stream"));
+
+            // APIハンドラーの設定（IDを {id} にまとめたパスをルートとして計測する）
+            // キューが溢れたリクエストには各ハンドラーの代わりに503を返す（guard）
+            server.createContext("/api",
+                    new InstrumentedHandler(executor.guard(new TodoApiHandler(executor, eventBus)),
+                            InstrumentedHandler::templatePath));
 
-            // 静的ファイルハンドラーの設定
-            server.createContext("/", new StaticFileHandler(STATIC_FILES_DIR));
+            // 静的ファイルハンドラーの設定（ファイルごとには分けず、まとめて計測する）
+            StaticFileHandler staticFileHandler = new StaticFileHandler(STATIC_FILES_DIR);
+            server.createContext("/", new InstrumentedHandler(executor.guard(staticFileHandler), "static"));
+
+            // Prometheus形式のメトリクス
+            registerGauges(executor, eventBus);
+            server.createContext("/metrics", executor.guard(new MetricsHandler()));
 
             // サーバー開始
-            server.setExecutor(null); // デフォルトのExecutorを使用
+            server.setExecutor(executor);
             server.start();
 
-            System.out.println("サーバーが開始されました:");
-            System.out.println("  - Webアプリケーション: http://localhost:" + PORT);
-            System.out.println("  - API エンドポイント: http://localhost:" + PORT + "/api/todos");
-            System.out.println("サーバーを停止するには Ctrl+C を押してください。");
+            LOG.info("サーバーが開始されました", "executor", executor.getMode(),
+                    "web", "http://localhost:" + PORT, "api", "http://localhost:" + PORT + "/api/todos");
+            LOG.info("サーバーを停止するには Ctrl+C を押してください。");
 
             // シャットダウンフックの追加
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("\n=== サーバーを停止中 ===");
+                LOG.info("=== サーバーを停止中 ===");
+                eventBus.shutdown();
                 server.stop(0);
+                executor.shutdown();
+                staticFileHandler.close();
                 DatabaseConnection.getInstance().closeConnection();
-                System.out.println("サーバーが停止されました。");
+                LOG.info("サーバーが停止されました。");
+                // 停止処理のログを書き出してからロガーを止める
+                AsyncLogger.shutdown();
             }));
 
         } catch (IOException e) {
-            System.err.println("サーバー起動エラー: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("サーバー起動エラー", e);
         }
     }
+
+    /**
+     * コネクションプール・ワーカーExecutor・イベント配信の状態をゲージとして登録する
+     */
+    private static void registerGauges(WorkerExecutor executor, TodoEventBus eventBus) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        DatabaseConnection db = DatabaseConnection.getInstance();
+        registry.registerGauge("db_pool_connections_active", "貸し出し中の接続数",
+                () -> db.getPoolStats().getActive());
+        registry.registerGauge("db_pool_connections_idle", "アイドル状態の接続数",
+                () -> db.getPoolStats().getIdle());
+        registry.registerGauge("db_pool_waiters", "接続の取得を待っているスレッド数",
+                () -> db.getPoolStats().getWaiters());
+        registry.registerGauge("db_pool_connections_max", "最大接続数",
+                () -> db.getPoolStats().getMaxSize());
+        registry.registerHistogram("db_pool_borrow_duration_seconds", "プールからの接続の取得時間",
+                db.getPoolStats().getBorrowLatency());
+        registry.registerGauge("worker_executor_queue_depth", "ワーカーExecutorのキュー待ち数",
+                executor::getQueueDepth);
+        registry.registerGauge("worker_executor_in_flight", "ワーカーExecutorで処理中のタスク数",
+                executor::getInFlight);
+        registry.registerGauge("todo_events_subscribers", "変更を購読中の接続数",
+                eventBus::getSubscriberCount);
+        registry.registerGauge("todo_events_slow_disconnects", "受信が追いつかず切断した購読者の数",
+                eventBus::getSlowDisconnects);
+    }
 }
@@ -0,0 +1,183 @@
+package com.learning.database;
+
+import com.learning.cache.LruCache;
+import com.learning.model.Todo;
+import com.learning.model.TodoBatchOperation;
+import com.learning.model.TodoBatchResult;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 読み込みをキャッシュするTodoDAO
+ *
+ * - IDごとのTodoをLRU+TTLでキャッシュする
+ * - getAllTodosの結果は別エントリとしてキャッシュし、書き込みのたびに無効化する
+ * - create/update/deleteは対象のIDを同期的に無効化する（次の読み込みでDBから取り直す）
+ * - updateはキャッシュにある作成日時を使い、更新後の作成日時を取り直すSELECTを省く
+ *
+ * 書き込み結果をそのままキャッシュに入れないのは、DBへの書き込みとキャッシュへの登録の間に
+ * 別の更新や削除が割り込むと、古い行や削除済みの行をキャッシュに残してしまうため。
+ * 読み込み側は世代番号を確認してから登録するので、書き込みと競合した結果は登録されない。
+ *
+ * キャッシュしたTodoは複数スレッドで共有されるため、呼び出し側で変更しないこと。
+ */
+public class CachedTodoDAO extends TodoDAO {
+    private static final int MAX_ENTRIES = Integer.getInteger("todo.cache.maxEntries", 10_000);
+    private static final long TTL_MILLIS = Long.getLong("todo.cache.ttlMillis", 60_000L);
+    private static final long LIST_TTL_MILLIS = Long.getLong("todo.cache.listTtlMillis", 10_000L);
+    // ストリーミング時にこの件数以下なら一覧をキャッシュする（大きな表でヒープを使い切らないため）
+    private static final int MAX_CACHED_LIST_SIZE = Integer.getInteger("todo.cache.maxListSize", 1_000);
+
+    private final LruCache<Integer, Todo> todosById = new LruCache<>(MAX_ENTRIES, TTL_MILLIS);
+    private final LruCache<String, List<Todo>> todoLists = new LruCache<>(1, LIST_TTL_MILLIS);
+    // 書き込みのたびに増える世代番号。読み込み中に書き込みがあった場合、古い結果をキャッシュしない
+    private final AtomicLong writeGeneration = new AtomicLong();
+    // 世代番号の確認とキャッシュへの登録・無効化を不可分に行うためのロック
+    private final Object lock = new Object();
+
+    private static final String ALL_TODOS_KEY = "all";
+
+    @Override
+    public List<Todo> getAllTodos() {
+        List<Todo> cached = todoLists.get(ALL_TODOS_KEY);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = writeGeneration.get();
+        List<Todo> todos = Collections.unmodifiableList(super.getAllTodos());
+        synchronized (lock) {
+            if (generation == writeGeneration.get()) {
+                todoLists.put(ALL_TODOS_KEY, todos);
+                for (Todo todo : todos) {
+                    todosById.put(todo.getId(), todo);
+                }
+            }
+        }
+        return todos;
+    }
+
+    @Override
+    public int forEachTodo(TodoConsumer consumer) throws IOException, SQLException {
+        List<Todo> cached = todoLists.get(ALL_TODOS_KEY);
+        if (cached != null) {
+            for (Todo todo : cached) {
+                consumer.accept(todo);
+            }
+            return cached.size();
+        }
+
+        long generation = writeGeneration.get();
+        List<Todo> collected = new ArrayList<>();
+        boolean[] overflow = {false};
+        int count = super.forEachTodo(todo -> {
+            if (!overflow[0]) {
+                if (collected.size() < MAX_CACHED_LIST_SIZE) {
+                    collected.add(todo);
+                } else {
+                    overflow[0] = true;
+                    collected.clear();
+                }
+            }
+            consumer.accept(todo);
+        });
+
+        if (!overflow[0]) {
+            synchronized (lock) {
+                if (generation == writeGeneration.get()) {
+                    todoLists.put(ALL_TODOS_KEY, Collections.unmodifiableList(collected));
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Todo getTodoById(int id) {
+        Todo cached = todosById.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = writeGeneration.get();
+        Todo todo = super.getTodoById(id);
+        if (todo != null) {
+            synchronized (lock) {
+                if (generation == writeGeneration.get()) {
+                    todosById.put(id, todo);
+                }
+            }
+        }
+        return todo;
+    }
+
+    @Override
+    public Todo createTodo(Todo todo) {
+        Todo created = super.createTodo(todo);
+        if (created != null) {
+            invalidate(created.getId());
+        }
+        return created;
+    }
+
+    @Override
+    public Todo updateTodo(Todo todo) {
+        // 作成日時は変わらないため、キャッシュにあればそれを使ってUPDATEの1往復で済ませる
+        Todo cached = todosById.get(todo.getId());
+        Todo updated = super.updateTodo(todo, cached != null ? cached.getCreatedAt() : null);
+        invalidate(todo.getId());
+        return updated;
+    }
+
+    @Override
+    public boolean deleteTodo(int id) {
+        boolean deleted = super.deleteTodo(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public boolean executeBatch(List<TodoBatchOperation> operations, List<TodoBatchResult> results) {
+        boolean committed = super.executeBatch(operations, results);
+        synchronized (lock) {
+            writeGeneration.incrementAndGet();
+            for (TodoBatchOperation operation : operations) {
+                if (operation.getId() != null) {
+                    todosById.invalidate(operation.getId());
+                }
+            }
+            todoLists.invalidateAll();
+        }
+        return committed;
+    }
+
+    private void invalidate(int id) {
+        synchronized (lock) {
+            writeGeneration.incrementAndGet();
+            todosById.invalidate(id);
+            todoLists.invalidateAll();
+        }
+    }
+
+    /**
+     * キャッシュの統計情報を取得する
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", todosById.size());
+        stats.put("maxEntries", MAX_ENTRIES);
+        stats.put("byIdHits", todosById.getHits());
+        stats.put("byIdMisses", todosById.getMisses());
+        stats.put("byIdEvictions", todosById.getEvictions());
+        stats.put("listHits", todoLists.getHits());
+        stats.put("listMisses", todoLists.getMisses());
+        return stats;
+    }
+}
@@ -0,0 +1,354 @@
+package com.learning.database;
+
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.LatencyHistogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * スレッドセーフな上限付きJDBCコネクションプール
+ *
+ * - 貸し出し時の接続検証（validation-on-borrow）
+ * - アイドル接続の定期的な破棄
+ * - 最大待機時間のタイムアウト
+ * - 返却されない接続（リーク）の検出
+ *
+ * 利用側は通常どおり {@link Connection#close()} を呼ぶだけで、接続はプールへ返却される。
+ */
+public class ConnectionPool {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(ConnectionPool.class);
+
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 30_000;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Boolean> activeConnections = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password,
+                          int maxSize, int minIdle, long maxWaitMillis,
+                          long idleTimeoutMillis, long leakDetectionThresholdMillis) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.validationTimeoutSeconds = 2;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 最小アイドル数まで接続を事前に作成する
+     */
+    public void warmUp() {
+        for (int i = idleConnections.size(); i < minIdle; i++) {
+            try {
+                idleConnections.offerLast(createPhysicalConnection());
+            } catch (SQLException e) {
+                LOG.error("接続プールの初期化エラー", "error", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * プールから接続を借りる
+     * @return プールされた接続（closeで返却される）
+     * @throws SQLException 待機タイムアウト、またはプールが閉じられている場合
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("接続プールは既に閉じられています");
+        }
+
+        long start = System.nanoTime();
+        // 空きがあれば待たずに借りる（待機者数には実際に待っている呼び出しだけを数える）
+        // 待ち時間0のtryAcquireは公平性を守り、既に待っている呼び出しを追い越さない
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                waiters.incrementAndGet();
+                try {
+                    acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    waiters.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("接続待機中に割り込まれました", e);
+        }
+        if (!acquired) {
+            throw new SQLException("接続プールの待機がタイムアウトしました (" + maxWaitMillis + "ms)");
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            pooled.markBorrowed();
+            activeConnections.put(pooled, Boolean.TRUE);
+            borrowLatency.record(System.nanoTime() - start);
+            return pooled.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * アイドル接続を検証しながら取り出す。無ければ新規作成する
+     */
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return createPhysicalConnection();
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.getPhysical().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createPhysicalConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    /**
+     * 接続をプールへ返却する（プロキシのcloseから呼ばれる）
+     */
+    private void release(PooledConnection pooled) {
+        activeConnections.remove(pooled);
+        try {
+            Connection physical = pooled.getPhysical();
+            if (closed || physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            pooled.markReturned();
+            // 直近に使った接続を優先的に再利用する（LIFO）
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.getPhysical().close();
+        } catch (SQLException e) {
+            LOG.error("接続クローズエラー", "error", e.getMessage());
+        }
+    }
+
+    /**
+     * アイドル接続の破棄とリーク検出を行う
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        for (PooledConnection pooled : idleConnections) {
+            if (idleConnections.size() <= minIdle) {
+                break;
+            }
+            if (now - pooled.getLastUsedAt() > idleTimeoutMillis && idleConnections.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+
+        if (leakDetectionThresholdMillis > 0) {
+            for (PooledConnection pooled : activeConnections.keySet()) {
+                if (!pooled.isLeakReported() && now - pooled.getBorrowedAt() > leakDetectionThresholdMillis) {
+                    pooled.setLeakReported(true);
+                    LOG.error("接続リークの可能性: 返却されていない接続があります", pooled.getBorrowStack(),
+                            "heldMillis", now - pooled.getBorrowedAt());
+                }
+            }
+        }
+    }
+
+    /**
+     * プールを閉じ、全ての物理接続を切断する
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * 現在のプール統計を取得する
+     */
+    public PoolStats getStats() {
+        int idle = idleConnections.size();
+        return new PoolStats(maxSize, totalConnections.get(), activeConnections.size(), idle,
+                waiters.get(), borrowLatency);
+    }
+
+    /**
+     * 物理接続と貸し出し状態を保持するラッパー
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private volatile long borrowedAt;
+        private volatile long lastUsedAt;
+        private volatile boolean leakReported;
+        private volatile Throwable borrowStack;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastUsedAt = System.currentTimeMillis();
+        }
+
+        void markBorrowed() {
+            borrowedAt = System.currentTimeMillis();
+            leakReported = false;
+            borrowStack = leakDetectionThresholdMillis > 0 ? new Throwable("接続の貸し出し元") : null;
+        }
+
+        void markReturned() {
+            lastUsedAt = System.currentTimeMillis();
+            borrowStack = null;
+        }
+
+        /**
+         * 貸し出しごとに新しいプロキシを作成する
+         * 返却済みのプロキシを使い回しても、次の利用者の接続には触れられない
+         */
+        Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Lease(this));
+        }
+
+        Connection getPhysical() {
+            return physical;
+        }
+
+        long getBorrowedAt() {
+            return borrowedAt;
+        }
+
+        long getLastUsedAt() {
+            return lastUsedAt;
+        }
+
+        boolean isLeakReported() {
+            return leakReported;
+        }
+
+        void setLeakReported(boolean leakReported) {
+            this.leakReported = leakReported;
+        }
+
+        Throwable getBorrowStack() {
+            Throwable stack = borrowStack;
+            return stack != null ? stack : new Throwable("接続の貸し出し元（不明）");
+        }
+    }
+
+    /**
+     * 1回の貸し出しを表すプロキシハンドラー
+     * closeの呼び出しを物理切断ではなくプールへの返却に置き換える
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean returned;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.getPhysical().isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.getPhysical() + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("接続は既にプールへ返却されています");
+            }
+            try {
+                return method.invoke(pooled.getPhysical(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,32 +1,50 @@
 package com.learning.database;
 
+import com.learning.logging.AsyncLogger;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * データベース接続を管理するクラス
+ * 内部でコネクションプールを保持し、呼び出し元ごとにプールされた接続を貸し出す
  */
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3307/todoapp?useUnicode=true&characterEncoding=UTF-8&serverTimezone=Asia/Tokyo";
-    private static final String USERNAME = "todouser";
-    private static final String PASSWORD = "todopassword";
-    
-    private static DatabaseConnection instance;
-    private Connection connection;
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(DatabaseConnection.class);
+
+    // 接続先（ベンチマークで組み込みDBを使う場合などはシステムプロパティで上書きする）
+    private static final String URL = System.getProperty("db.url",
+            "jdbc:mysql://localhost:3307/todoapp?useUnicode=true&characterEncoding=UTF-8&serverTimezone=Asia/Tokyo&rewriteBatchedStatements=true");
+    private static final String USERNAME = System.getProperty("db.user", "todouser");
+    private static final String PASSWORD = System.getProperty("db.password", "todopassword");
+
+    // プール設定（システムプロパティで上書き可能）
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.maxSize", 20);
+    private static final int POOL_MIN_IDLE = Integer.getInteger("db.pool.minIdle", 2);
+    private static final long POOL_MAX_WAIT_MILLIS = Long.getLong("db.pool.maxWaitMillis", 5_000L);
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("db.pool.idleTimeoutMillis", 300_000L);
+    private static final long POOL_LEAK_THRESHOLD_MILLIS = Long.getLong("db.pool.leakThresholdMillis", 60_000L);
+
+    private final ConnectionPool pool;
 
     // プライベートコンストラクタ（Singletonパターン）
     private DatabaseConnection() {
         try {
             // MySQL JDBCドライバの読み込み
             Class.forName("com.mysql.cj.jdbc.Driver");
-            this.connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            System.out.println("データベースに正常に接続されました。");
         } catch (ClassNotFoundException e) {
-            System.err.println("JDBCドライバが見つかりません: " + e.getMessage());
-        } catch (SQLException e) {
-            System.err.println("データベース接続エラー: " + e.getMessage());
+            LOG.error("JDBCドライバが見つかりません", "error", e.getMessage());
         }
+        this.pool = new ConnectionPool(URL, USERNAME, PASSWORD,
+                POOL_MAX_SIZE, POOL_MIN_IDLE, POOL_MAX_WAIT_MILLIS,
+                POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_THRESHOLD_MILLIS);
+        this.pool.warmUp();
+        LOG.info("コネクションプールを初期化しました", "maxSize", POOL_MAX_SIZE);
+    }
+
+    // 初回アクセス時にのみ生成されるスレッドセーフな遅延初期化
+    private static class Holder {
+        private static final DatabaseConnection INSTANCE = new DatabaseConnection();
     }
 
     /**
@@ -34,39 +52,40 @@ public class DatabaseConnection {
      * @return DatabaseConnectionのインスタンス
      */
     public static DatabaseConnection getInstance() {
-        if (instance == null) {
-            instance = new DatabaseConnection();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     /**
-     * データベース接続を取得する
+     * プールから接続を取得する
+     * 取得した接続はcloseするとプールへ返却される
      * @return データベース接続
+     * @throws SQLException 接続の取得に失敗した場合
      */
-    public Connection getConnection() {
-        try {
-            // 接続が閉じられている場合は再接続
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            }
-        } catch (SQLException e) {
-            System.err.println("データベース再接続エラー: " + e.getMessage());
-        }
-        return connection;
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
     }
 
     /**
-     * データベース接続を閉じる
+     * 接続先がMySQLかどうか（MySQL固有の指定を使うかどうかの判定用）
+     * @return MySQLの場合はtrue
+     */
+    public boolean isMySql() {
+        return URL.startsWith("jdbc:mysql:");
+    }
+
+    /**
+     * コネクションプールの統計情報を取得する
+     * @return プール統計
+     */
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * コネクションプールを閉じ、全ての接続を切断する
      */
     public void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("データベース接続が閉じられました。");
-            }
-        } catch (SQLException e) {
-            System.err.println("データベース接続クローズエラー: " + e.getMessage());
-        }
+        pool.close();
+        LOG.info("データベース接続が閉じられました。");
     }
 }
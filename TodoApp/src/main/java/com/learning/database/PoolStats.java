@@ -0,0 +1,67 @@
+package com.learning.database;
+
+import com.learning.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * コネクションプールの統計情報のスナップショット
+ */
+public class PoolStats {
+    private final int maxSize;
+    private final int total;
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final LatencyHistogram borrowLatency;
+
+    public PoolStats(int maxSize, int total, int active, int idle, int waiters, LatencyHistogram borrowLatency) {
+        this.maxSize = maxSize;
+        this.total = total;
+        this.active = active;
+        this.idle = idle;
+        this.waiters = waiters;
+        this.borrowLatency = borrowLatency;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public LatencyHistogram getBorrowLatency() {
+        return borrowLatency;
+    }
+
+    /**
+     * JSONレスポンス用のMapに変換する
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("maxSize", maxSize);
+        map.put("total", total);
+        map.put("active", active);
+        map.put("idle", idle);
+        map.put("waiters", waiters);
+        map.put("borrowCount", borrowLatency.getCount());
+        map.put("borrowP50Millis", borrowLatency.getPercentileMillis(50));
+        map.put("borrowP99Millis", borrowLatency.getPercentileMillis(99));
+        return map;
+    }
+}
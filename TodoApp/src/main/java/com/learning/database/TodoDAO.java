@@ -1,8 +1,18 @@
 package com.learning.database;
 
+import com.learning.logging.AsyncLogger;
+import com.learning.metrics.MetricsRegistry;
+import com.learning.metrics.QueryMetrics;
 import com.learning.model.Todo;
+import com.learning.model.TodoBatchOperation;
+import com.learning.model.TodoBatchResult;
+import com.learning.model.TodoCursor;
+import com.learning.model.TodoPage;
+
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,12 +21,36 @@ import java.util.List;
  * データベースでのTodoのCRUD操作を担当
  */
 public class TodoDAO {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(TodoDAO.class);
+
+    // メソッドごとのクエリ統計（/metrics で出力する。記録のたびにマップを引かないよう先に取得しておく）
+    private static final QueryMetrics GET_ALL_QUERY = query("getAllTodos");
+    private static final QueryMetrics FOR_EACH_QUERY = query("forEachTodo");
+    private static final QueryMetrics FIND_QUERY = query("findTodos");
+    private static final QueryMetrics GET_BY_ID_QUERY = query("getTodoById");
+    private static final QueryMetrics CREATE_QUERY = query("createTodo");
+    private static final QueryMetrics UPDATE_QUERY = query("updateTodo");
+    private static final QueryMetrics BATCH_QUERY = query("executeBatch");
+    private static final QueryMetrics DELETE_QUERY = query("deleteTodo");
+
     private final DatabaseConnection dbConnection;
 
+    /**
+     * 1行ずつTodoを受け取るコールバック
+     */
+    @FunctionalInterface
+    public interface TodoConsumer {
+        void accept(Todo todo) throws IOException;
+    }
+
     public TodoDAO() {
         this.dbConnection = DatabaseConnection.getInstance();
     }
 
+    private static QueryMetrics query(String method) {
+        return MetricsRegistry.getInstance().query("TodoDAO", method);
+    }
+
     /**
      * 全てのTodoを取得する
      * @return Todoリスト
@@ -24,6 +58,7 @@ public class TodoDAO {
     public List<Todo> getAllTodos() {
         List<Todo> todos = new ArrayList<>();
         String sql = "SELECT * FROM todos ORDER BY created_at DESC";
+        long start = System.nanoTime();
 
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
@@ -35,12 +70,129 @@ public class TodoDAO {
             }
 
         } catch (SQLException e) {
-            System.err.println("Todo取得エラー: " + e.getMessage());
+            GET_ALL_QUERY.recordError();
+            LOG.error("Todo取得エラー", "error", e.getMessage());
+        } finally {
+            GET_ALL_QUERY.record(System.nanoTime() - start);
         }
 
         return todos;
     }
 
+    /**
+     * 全てのTodoを1行ずつコールバックに渡す（作成日時の降順）
+     * ResultSetをストリーミングで読むため、件数に関係なくメモリ使用量は一定
+     * 読み終わるまで接続を占有する点に注意
+     * @param consumer 各行を受け取るコールバック
+     * @return 渡した件数
+     * @throws IOException コールバックでの書き込みエラー
+     * @throws SQLException 読み込みエラー
+     */
+    public int forEachTodo(TodoConsumer consumer) throws IOException, SQLException {
+        String sql = "SELECT * FROM todos ORDER BY created_at DESC";
+        int count = 0;
+        long start = System.nanoTime();
+
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // MySQL Connector/Jで行単位のストリーミングを有効にする（他のドライバーでは負の値はエラーになる）
+            if (dbConnection.isMySql()) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(createTodoFromResultSet(rs));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            FOR_EACH_QUERY.recordError();
+            throw e;
+        } finally {
+            // クライアントへの書き込み時間も含む（読み終わるまで接続を占有している時間）
+            FOR_EACH_QUERY.record(System.nanoTime() - start);
+        }
+
+        return count;
+    }
+
+    /**
+     * 条件に一致するTodoを1ページ分取得する（created_at, id の降順）
+     * キーセット方式のため、ページが深くなっても取得コストは一定
+     * （絞り込みなし・完了状態での絞り込みは (completed,) created_at, id のインデックスで並び替えずに読める）
+     *
+     * タイトルの前方一致（titlePrefix）は範囲検索のため、同じインデックスで created_at の順序を保てない。
+     * 一致する行を全て読んでから並び替えるか、created_at の順に読みながら絞り込むかになり、
+     * 取得コストは一致件数（または一致しない行の数）に比例する。
+     * @param limit 最大件数
+     * @param cursor 前のページの最後の位置、最初のページの場合はnull
+     * @param completed 完了状態での絞り込み、絞り込まない場合はnull
+     * @param titlePrefix タイトルの前方一致、絞り込まない場合はnull
+     * @return Todoのページ
+     * @throws SQLException 読み込みエラー（空のページとして返すと、クライアントが「該当なし」と区別できないため）
+     */
+    public TodoPage findTodos(int limit, TodoCursor cursor, Boolean completed, String titlePrefix) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM todos WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+
+        if (completed != null) {
+            sql.append(" AND completed = ?");
+            params.add(completed);
+        }
+        if (titlePrefix != null && !titlePrefix.isEmpty()) {
+            sql.append(" AND title LIKE ? ESCAPE '!'");
+            params.add(escapeLike(titlePrefix) + "%");
+        }
+        if (cursor != null) {
+            sql.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+            Timestamp createdAt = Timestamp.valueOf(cursor.getCreatedAt());
+            params.add(createdAt);
+            params.add(createdAt);
+            params.add(cursor.getId());
+        }
+        // 次のページの有無を判定するため1件多く取得する
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        params.add(limit + 1);
+
+        List<Todo> todos = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    todos.add(createTodoFromResultSet(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            FIND_QUERY.recordError();
+            throw e;
+        } finally {
+            FIND_QUERY.record(System.nanoTime() - start);
+        }
+
+        TodoCursor nextCursor = null;
+        if (todos.size() > limit) {
+            todos.remove(limit);
+            nextCursor = TodoCursor.after(todos.get(limit - 1));
+        }
+        return new TodoPage(todos, nextCursor);
+    }
+
+    /**
+     * LIKE句のワイルドカード文字をエスケープする
+     */
+    private String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     /**
      * IDでTodoを取得する
      * @param id TodoのID
@@ -48,6 +200,7 @@ public class TodoDAO {
      */
     public Todo getTodoById(int id) {
         String sql = "SELECT * FROM todos WHERE id = ?";
+        long start = System.nanoTime();
 
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -60,7 +213,10 @@ public class TodoDAO {
             }
 
         } catch (SQLException e) {
-            System.err.println("Todo取得エラー: " + e.getMessage());
+            GET_BY_ID_QUERY.recordError();
+            LOG.error("Todo取得エラー", "error", e.getMessage());
+        } finally {
+            GET_BY_ID_QUERY.record(System.nanoTime() - start);
         }
 
         return null;
@@ -68,11 +224,15 @@ public class TodoDAO {
 
     /**
      * 新しいTodoを作成する
+     * 作成日時・更新日時はアプリ側で決めて挿入するため、作成後に再取得する必要はない
      * @param todo 作成するTodo
-     * @return 作成されたTodoのID、失敗時は-1
+     * @return 作成されたTodo（ID・日時を含む）、失敗時はnull
      */
-    public int createTodo(Todo todo) {
-        String sql = "INSERT INTO todos (title, description, completed) VALUES (?, ?, ?)";
+    public Todo createTodo(Todo todo) {
+        String sql = "INSERT INTO todos (title, description, completed, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+        // TIMESTAMP列は秒精度のため、DBに保存される値と一致するよう秒未満を切り捨てる
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        long start = System.nanoTime();
 
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -80,49 +240,229 @@ public class TodoDAO {
             stmt.setString(1, todo.getTitle());
             stmt.setString(2, todo.getDescription());
             stmt.setBoolean(3, todo.isCompleted());
+            stmt.setTimestamp(4, Timestamp.valueOf(now));
+            stmt.setTimestamp(5, Timestamp.valueOf(now));
 
             int affectedRows = stmt.executeUpdate();
 
             if (affectedRows > 0) {
-                ResultSet generatedKeys = stmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        return new Todo(generatedKeys.getInt(1), todo.getTitle(), todo.getDescription(),
+                                todo.isCompleted(), now, now);
+                    }
                 }
             }
 
         } catch (SQLException e) {
-            System.err.println("Todo作成エラー: " + e.getMessage());
+            CREATE_QUERY.recordError();
+            LOG.error("Todo作成エラー", "error", e.getMessage());
+        } finally {
+            CREATE_QUERY.record(System.nanoTime() - start);
         }
 
-        return -1;
+        return null;
     }
 
     /**
      * Todoを更新する
+     * 作成日時が分からないため、UPDATEと作成日時のSELECTを1つのトランザクションで実行する
+     * （MySQLにはRETURNING句がないため往復は2回。間に削除が割り込んで更新済みのTodoが404になることはない）
      * @param todo 更新するTodo
-     * @return 更新成功時はtrue、失敗時はfalse
+     * @return 更新後のTodo、対象が存在しないか失敗した場合はnull
      */
-    public boolean updateTodo(Todo todo) {
-        String sql = "UPDATE todos SET title = ?, description = ?, completed = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    public Todo updateTodo(Todo todo) {
+        return updateTodo(todo, null);
+    }
 
-        try (Connection conn = dbConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Todoを更新する
+     * 作成日時は変わらないため、呼び出し側が知っていれば渡してもらい、UPDATEの1往復だけで更新後のTodoを返す
+     * @param todo 更新するTodo
+     * @param createdAt 対象の作成日時（分からない場合はnullを渡すと、同じトランザクションでSELECTする）
+     * @return 更新後のTodo、対象が存在しないか失敗した場合はnull
+     */
+    protected Todo updateTodo(Todo todo, LocalDateTime createdAt) {
+        String updateSql = "UPDATE todos SET title = ?, description = ?, completed = ?, updated_at = ? WHERE id = ?";
+        String selectSql = "SELECT created_at FROM todos WHERE id = ?";
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        long start = System.nanoTime();
+
+        try (Connection conn = dbConnection.getConnection()) {
+            if (createdAt != null) {
+                return executeUpdate(conn, updateSql, todo, now) ? copyOf(todo, createdAt, now) : null;
+            }
 
+            conn.setAutoCommit(false);
+            try {
+                Todo updated = null;
+                if (executeUpdate(conn, updateSql, todo, now)) {
+                    try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                        stmt.setInt(1, todo.getId());
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            if (rs.next()) {
+                                Timestamp created = rs.getTimestamp("created_at");
+                                updated = copyOf(todo, created != null ? created.toLocalDateTime() : null, now);
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+                return updated;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            UPDATE_QUERY.recordError();
+            LOG.error("Todo更新エラー", "error", e.getMessage());
+        } finally {
+            UPDATE_QUERY.record(System.nanoTime() - start);
+        }
+
+        return null;
+    }
+
+    /**
+     * 1件分のUPDATEを実行する
+     * @return 対象の行が存在した場合はtrue
+     */
+    private boolean executeUpdate(Connection conn, String sql, Todo todo, LocalDateTime now) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, todo.getTitle());
             stmt.setString(2, todo.getDescription());
             stmt.setBoolean(3, todo.isCompleted());
-            stmt.setInt(4, todo.getId());
+            stmt.setTimestamp(4, Timestamp.valueOf(now));
+            stmt.setInt(5, todo.getId());
+            return stmt.executeUpdate() > 0;
+        }
+    }
 
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
+    private static Todo copyOf(Todo todo, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        return new Todo(todo.getId(), todo.getTitle(), todo.getDescription(), todo.isCompleted(), createdAt, updatedAt);
+    }
+
+    /**
+     * 作成・更新・削除をまとめて1つのトランザクションで実行する
+     * 種類ごとにaddBatch/executeBatchで送信するため、件数が多くても往復回数は最大3回
+     * @param operations 検証済みの操作（op が create / update / delete のいずれか）
+     * @param results 各操作の結果（operationsと同じ順序・件数）。成功時はステータスとIDが設定される
+     * @return コミットできた場合はtrue、SQLエラーでロールバックした場合はfalse
+     */
+    public boolean executeBatch(List<TodoBatchOperation> operations, List<TodoBatchResult> results) {
+        List<Integer> creates = new ArrayList<>();
+        List<Integer> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            switch (operations.get(i).getOp()) {
+                case TodoBatchOperation.CREATE:
+                    creates.add(i);
+                    break;
+                case TodoBatchOperation.UPDATE:
+                    updates.add(i);
+                    break;
+                case TodoBatchOperation.DELETE:
+                    deletes.add(i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operations.get(i).getOp());
+            }
+        }
+
+        String insertSql = "INSERT INTO todos (title, description, completed, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+        String updateSql = "UPDATE todos SET title = ?, description = ?, completed = ?, updated_at = ? WHERE id = ?";
+        // createTodo/updateTodoと同じくアプリ側の時計で日時を決める（DBの時計と混ざると並び順がずれるため）
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        String deleteSql = "DELETE FROM todos WHERE id = ?";
+
+        long start = System.nanoTime();
+        try (Connection conn = dbConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!creates.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                        for (int index : creates) {
+                            Todo todo = operations.get(index).getTodo();
+                            stmt.setString(1, todo.getTitle());
+                            stmt.setString(2, todo.getDescription());
+                            stmt.setBoolean(3, todo.isCompleted());
+                            stmt.setTimestamp(4, now);
+                            stmt.setTimestamp(5, now);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                        // 生成されたIDは挿入順に返される
+                        try (ResultSet keys = stmt.getGeneratedKeys()) {
+                            for (int index : creates) {
+                                Integer newId = keys.next() ? keys.getInt(1) : null;
+                                results.get(index).success(201, newId);
+                            }
+                        }
+                    }
+                }
 
+                if (!updates.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                        for (int index : updates) {
+                            TodoBatchOperation operation = operations.get(index);
+                            Todo todo = operation.getTodo();
+                            stmt.setString(1, todo.getTitle());
+                            stmt.setString(2, todo.getDescription());
+                            stmt.setBoolean(3, todo.isCompleted());
+                            stmt.setTimestamp(4, now);
+                            stmt.setInt(5, operation.getId());
+                            stmt.addBatch();
+                        }
+                        applyUpdateCounts(stmt.executeBatch(), updates, operations, results);
+                    }
+                }
+
+                if (!deletes.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                        for (int index : deletes) {
+                            stmt.setInt(1, operations.get(index).getId());
+                            stmt.addBatch();
+                        }
+                        applyUpdateCounts(stmt.executeBatch(), deletes, operations, results);
+                    }
+                }
+
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            System.err.println("Todo更新エラー: " + e.getMessage());
+            BATCH_QUERY.recordError();
+            LOG.error("Todo一括処理エラー", "error", e.getMessage());
+        } finally {
+            BATCH_QUERY.record(System.nanoTime() - start);
         }
 
         return false;
     }
 
+    /**
+     * executeBatchの更新件数を各操作の結果に反映する
+     */
+    private void applyUpdateCounts(int[] counts, List<Integer> indexes,
+                                   List<TodoBatchOperation> operations, List<TodoBatchResult> results) {
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                results.get(index).success(200, operations.get(index).getId());
+            } else {
+                results.get(index).failure(404, "Todo not found");
+            }
+        }
+    }
+
     /**
      * Todoを削除する
      * @param id 削除するTodoのID
@@ -130,6 +470,7 @@ public class TodoDAO {
      */
     public boolean deleteTodo(int id) {
         String sql = "DELETE FROM todos WHERE id = ?";
+        long start = System.nanoTime();
 
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -139,7 +480,10 @@ public class TodoDAO {
             return affectedRows > 0;
 
         } catch (SQLException e) {
-            System.err.println("Todo削除エラー: " + e.getMessage());
+            DELETE_QUERY.recordError();
+            LOG.error("Todo削除エラー", "error", e.getMessage());
+        } finally {
+            DELETE_QUERY.record(System.nanoTime() - start);
         }
 
         return false;
@@ -0,0 +1,260 @@
+package com.learning.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 非同期・レベルフィルタ付きのロガー
+ *
+ * リクエスト処理スレッドはリングバッファ（上限付きキュー）にイベントを積むだけで、
+ * コンソールへの書き込みはバックグラウンドのスレッドがまとめて行う。
+ * バッファが混んできたらINFO以下を間引き、満杯なら破棄して件数を数える（呼び出し側は決して待たない）。
+ *
+ * 出力は key=value 形式の1行（logfmt）:
+ * <pre>ts=2024-01-01T10:00:00.123 level=INFO logger=TodoApiHandler thread=main msg="..." key=value</pre>
+ *
+ * 設定（システムプロパティ）:
+ * <ul>
+ *   <li>log.level: DEBUG / INFO / WARN / ERROR（既定値: INFO）</li>
+ *   <li>log.payloads: リクエスト・レスポンス本文を出力する場合はtrue（既定値: false）</li>
+ *   <li>log.bufferSize: リングバッファの大きさ（既定値: 8192）</li>
+ * </ul>
+ */
+public final class AsyncLogger {
+
+    /**
+     * ログレベル
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final Level THRESHOLD = parseLevel(System.getProperty("log.level", "INFO"));
+    private static final boolean PAYLOADS_ENABLED = Boolean.getBoolean("log.payloads");
+    private static final int BUFFER_SIZE = Integer.getInteger("log.bufferSize", 8192);
+    // バッファがこの割合を超えたらINFO以下を間引く
+    private static final double SAMPLING_WATERMARK = 0.75;
+    private static final int SAMPLING_RATE = 10;
+
+    private static final BlockingQueue<Event> BUFFER = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final AtomicLong SAMPLE_COUNTER = new AtomicLong();
+
+    private static final Thread WRITER = startWriter();
+
+    private final String name;
+
+    private AsyncLogger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * クラスごとのロガーを取得する
+     */
+    public static AsyncLogger getLogger(Class<?> type) {
+        return new AsyncLogger(type.getSimpleName());
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= THRESHOLD.ordinal();
+    }
+
+    /**
+     * リクエスト・レスポンス本文を出力するかどうか（既定では出力しない）
+     */
+    public boolean isPayloadEnabled() {
+        return PAYLOADS_ENABLED && isDebugEnabled();
+    }
+
+    public void debug(String message, Object... keyValues) {
+        log(Level.DEBUG, message, null, keyValues);
+    }
+
+    public void info(String message, Object... keyValues) {
+        log(Level.INFO, message, null, keyValues);
+    }
+
+    public void warn(String message, Object... keyValues) {
+        log(Level.WARN, message, null, keyValues);
+    }
+
+    public void error(String message, Object... keyValues) {
+        log(Level.ERROR, message, null, keyValues);
+    }
+
+    public void error(String message, Throwable error, Object... keyValues) {
+        log(Level.ERROR, message, error, keyValues);
+    }
+
+    private void log(Level level, String message, Throwable error, Object[] keyValues) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (level.ordinal() <= Level.INFO.ordinal()
+                && BUFFER.size() > BUFFER_SIZE * SAMPLING_WATERMARK
+                && SAMPLE_COUNTER.incrementAndGet() % SAMPLING_RATE != 0) {
+            DROPPED.increment();
+            return;
+        }
+        Event event = new Event(LocalDateTime.now(), level, name, Thread.currentThread().getName(),
+                message, error, keyValues);
+        if (!BUFFER.offer(event)) {
+            DROPPED.increment();
+        }
+    }
+
+    /**
+     * バッファ溢れ・間引きで破棄したイベント数
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    private static Level parseLevel(String value) {
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static Thread startWriter() {
+        Thread thread = new Thread(AsyncLogger::drainLoop, "async-logger");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * バッファに残ったイベントを書き出して書き込みスレッドを止める
+     * 停止処理のログも残るよう、アプリのシャットダウンフックの最後に呼ぶ（以降のイベントは出力されない）
+     */
+    public static void shutdown() {
+        WRITER.interrupt();
+        try {
+            WRITER.join(2_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drainLoop() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 16 * 1024);
+        long reportedDrops = 0;
+        boolean running = true;
+        while (running) {
+            try {
+                Event event = BUFFER.poll(200, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    write(out, event);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            // 溜まっている分をまとめて書き出す
+            Event event;
+            while ((event = BUFFER.poll()) != null) {
+                write(out, event);
+            }
+
+            long drops = DROPPED.sum();
+            if (drops != reportedDrops) {
+                write(out, new Event(LocalDateTime.now(), Level.WARN, "AsyncLogger", "async-logger",
+                        "ログを破棄しました", null, new Object[]{"dropped", drops - reportedDrops}));
+                reportedDrops = drops;
+            }
+
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // コンソールに書けない場合は何もできない
+            }
+        }
+    }
+
+    private static void write(Writer out, Event event) {
+        try {
+            out.write(event.format());
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            // コンソールに書けない場合は何もできない
+        }
+    }
+
+    /**
+     * 1件のログイベント（整形は書き込みスレッドで行う）
+     */
+    private static final class Event {
+        private final LocalDateTime timestamp;
+        private final Level level;
+        private final String logger;
+        private final String thread;
+        private final String message;
+        private final Throwable error;
+        private final Object[] keyValues;
+
+        Event(LocalDateTime timestamp, Level level, String logger, String thread,
+              String message, Throwable error, Object[] keyValues) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message;
+            this.error = error;
+            this.keyValues = keyValues;
+        }
+
+        String format() {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append("ts=").append(timestamp)
+                    .append(" level=").append(level)
+                    .append(" logger=").append(logger)
+                    .append(" thread=").append(quote(thread))
+                    .append(" msg=").append(quote(message));
+            if (keyValues != null) {
+                for (int i = 0; i + 1 < keyValues.length; i += 2) {
+                    sb.append(' ').append(keyValues[i]).append('=').append(quote(String.valueOf(keyValues[i + 1])));
+                }
+            }
+            if (error != null) {
+                sb.append(" error=").append(quote(String.valueOf(error.getMessage())));
+                StringWriter stackTrace = new StringWriter();
+                error.printStackTrace(new PrintWriter(stackTrace));
+                sb.append(System.lineSeparator()).append(stackTrace.toString().trim());
+            }
+            return sb.toString();
+        }
+
+        private static String quote(String value) {
+            if (value == null) {
+                return "null";
+            }
+            boolean needsQuote = value.isEmpty();
+            for (int i = 0; i < value.length() && !needsQuote; i++) {
+                char c = value.charAt(i);
+                needsQuote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+            }
+            if (!needsQuote) {
+                return value;
+            }
+            return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.learning.model;
+
+/**
+ * 一括処理APIの1件分の操作
+ * 例: {"op": "create", "todo": {...}}, {"op": "update", "id": 1, "todo": {...}}, {"op": "delete", "id": 2}
+ */
+public class TodoBatchOperation {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private Integer id;
+    private Todo todo;
+
+    // デフォルトコンストラクタ
+    public TodoBatchOperation() {
+    }
+
+    public TodoBatchOperation(String op, Integer id, Todo todo) {
+        this.op = op;
+        this.id = id;
+        this.todo = todo;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Todo getTodo() {
+        return todo;
+    }
+
+    public void setTodo(Todo todo) {
+        this.todo = todo;
+    }
+}
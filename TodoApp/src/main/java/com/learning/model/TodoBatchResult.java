@@ -0,0 +1,71 @@
+package com.learning.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 一括処理APIの1件分の結果
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TodoBatchResult {
+    private final int index;
+    private final String op;
+    private int status;
+    private Integer id;
+    private String error;
+
+    public TodoBatchResult(int index, String op) {
+        this.index = index;
+        this.op = op;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * 成功として記録する
+     */
+    public TodoBatchResult success(int status, Integer id) {
+        this.status = status;
+        this.id = id;
+        this.error = null;
+        return this;
+    }
+
+    /**
+     * 失敗として記録する
+     */
+    public TodoBatchResult failure(int status, String error) {
+        this.status = status;
+        this.error = error;
+        return this;
+    }
+}
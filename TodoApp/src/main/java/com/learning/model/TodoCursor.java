@@ -0,0 +1,64 @@
+package com.learning.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 一覧取得のキーセットカーソル（created_at, id）
+ * クライアントには中身を意識させないよう、Base64URL文字列として受け渡す
+ */
+public class TodoCursor {
+    private final LocalDateTime createdAt;
+    private final int id;
+
+    public TodoCursor(LocalDateTime createdAt, int id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * 指定したTodoの直後から始まるカーソルを作成する
+     */
+    public static TodoCursor after(Todo todo) {
+        return new TodoCursor(todo.getCreatedAt(), todo.getId());
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * カーソルを文字列に変換する
+     */
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 文字列からカーソルを復元する
+     * @param encoded encode()で作成した文字列
+     * @return カーソル
+     * @throws IllegalArgumentException 形式が不正な場合
+     */
+    public static TodoCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime createdAt = LocalDateTime.parse(raw.substring(0, separator));
+            int id = Integer.parseInt(raw.substring(separator + 1));
+            return new TodoCursor(createdAt, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
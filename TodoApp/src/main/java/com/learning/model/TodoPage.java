@@ -0,0 +1,28 @@
+package com.learning.model;
+
+import java.util.List;
+
+/**
+ * ページ単位で取得したTodoの一覧
+ */
+public class TodoPage {
+    private final List<Todo> items;
+    private final TodoCursor nextCursor;
+
+    public TodoPage(List<Todo> items, TodoCursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Todo> getItems() {
+        return items;
+    }
+
+    /**
+     * 次のページのカーソルを取得する
+     * @return カーソル、最後のページの場合はnull
+     */
+    public TodoCursor getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,82 @@
+package com.learning.server;
+
+/**
+ * Rangeヘッダーで指定されたバイト範囲（1つの範囲のみ対応）
+ *
+ * 対応する形式: bytes=0-499 / bytes=500- / bytes=-500
+ * 複数範囲（bytes=0-1,5-6）や解釈できない指定はRangeなしとして扱い、全体を200で返す
+ */
+public final class ByteRange {
+
+    /** 範囲がファイルの外を指している（416 Range Not Satisfiable） */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private final long start;
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Rangeヘッダーを解釈する
+     * @param header Rangeヘッダーの値
+     * @param length 表現全体のバイト数
+     * @return バイト範囲、範囲外の場合は {@link #UNSATISFIABLE}、無視すべき指定の場合はnull
+     */
+    public static ByteRange parse(String header, long length) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (spec.indexOf(',') >= 0 || dash < 0) {
+            return null;
+        }
+
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // bytes=-500 は末尾500バイト
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, Math.min(end, length - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /** 範囲のバイト数 */
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Content-Rangeヘッダーの値
+     */
+    public String toContentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+}
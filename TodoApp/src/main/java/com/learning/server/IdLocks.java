@@ -0,0 +1,65 @@
+package com.learning.server;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * TodoのIDごとのロック
+ *
+ * 同じIDへの操作だけを直列にし、別のTodoへの操作は互いに待たない（DBの行ロックと同じ範囲）。
+ * エントリは使っている間だけ保持し、誰も使っていないIDのロックは残さない。
+ * 複数のIDをロックする場合は昇順に取るため、複数のIDを取る呼び出し同士でもデッドロックしない。
+ */
+final class IdLocks {
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 指定したIDを全てロックしてから処理を実行する
+     * @param ids ロックするID（重複していてもよい。空の場合はロックせずに実行する）
+     */
+    <T> T withLocks(Collection<Integer> ids, Supplier<T> action) {
+        int[] sorted = ids.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int id : sorted) {
+                lock(id);
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                unlock(sorted[i]);
+            }
+        }
+    }
+
+    /**
+     * 使用中のIDの数
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void lock(int id) {
+        // 利用者数の増減はcomputeの中で行い、使用中のエントリが削除されないようにする
+        Entry entry = entries.compute(id, (key, current) -> {
+            Entry next = current != null ? current : new Entry();
+            next.users++;
+            return next;
+        });
+        entry.lock.lock();
+    }
+
+    private void unlock(int id) {
+        entries.get(id).lock.unlock();
+        entries.computeIfPresent(id, (key, current) -> --current.users == 0 ? null : current);
+    }
+
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        /** ロック中または待機中の呼び出しの数（computeの中でだけ変更する） */
+        private int users;
+    }
+}
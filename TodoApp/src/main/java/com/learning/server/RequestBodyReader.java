@@ -0,0 +1,148 @@
+package com.learning.server;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * リクエストボディをJSONとして読み取るクラス
+ *
+ * ボディを文字列やバイト配列にまとめず、InputStreamからJacksonで直接パースする（読み取り用のバッファはJacksonのプールから借りる）。
+ * Content-Lengthが上限を超える場合は1バイトも読まずに拒否し、Content-Lengthがない（チャンク転送の）場合は読み取った量が上限を超えた時点で打ち切る。
+ */
+public class RequestBodyReader {
+    /** ボディサイズの上限（バイト） */
+    public static final long DEFAULT_MAX_BYTES = Long.getLong("http.maxBodyBytes", 1024 * 1024);
+
+    private final long maxBytes;
+
+    public RequestBodyReader() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public RequestBodyReader(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * リクエストボディを読み取り、指定した型に変換する
+     * @param exchange HTTPリクエスト
+     * @param reader 変換先の型に対応したObjectReader
+     * @return 変換した値（ボディが空の場合はJacksonの例外）
+     * @throws TooLargeException ボディが上限を超える場合
+     * @throws IOException JSONが不正な場合、読み取りに失敗した場合
+     */
+    public <T> T read(HttpExchange exchange, ObjectReader reader) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && parseLength(contentLength) > maxBytes) {
+            // 読まずに拒否する（残りのボディはHttpServerが接続ごと破棄する）
+            throw new TooLargeException(maxBytes);
+        }
+        try (InputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBytes)) {
+            return reader.readValue(body);
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Content-Lengthを数値にする（不正な値はHttpServer側で弾かれるため、ここでは上限チェックの対象外とする）
+     */
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * ボディが上限を超えた場合の例外（413 Payload Too Large として返す）
+     */
+    public static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long maxBytes;
+
+        public TooLargeException(long maxBytes) {
+            super("Request body too large (max " + maxBytes + " bytes)");
+            this.maxBytes = maxBytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * 上限までしか読ませないInputStream
+     * 上限ちょうどで終わるボディは通し、上限を超えて続く場合は TooLargeException を投げる
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return checkEnd();
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return checkEnd();
+            }
+            int n = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * 上限まで読んだ後、まだデータが続くかを確認する
+         */
+        private int checkEnd() throws IOException {
+            if (super.read() < 0) {
+                return -1;
+            }
+            throw new TooLargeException(maxBytes);
+        }
+    }
+}
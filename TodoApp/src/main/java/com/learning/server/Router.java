@@ -0,0 +1,359 @@
+package com.learning.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * パスのテンプレートからハンドラーを選ぶルーター
+ *
+ * 登録時にテンプレートを "/" 区切りの木（トライ）に変換しておき、リクエストのたびにパスを先頭から1回たどるだけで
+ * ハンドラーを決める。パス要素ごとの部分文字列は作らず、regionMatches で比較する。
+ * <ul>
+ *   <li>テンプレートの例: {@code /api/todos}, {@code /api/todos/{id:int}}, {@code /api/users/{name}}</li>
+ *   <li>パラメータの型は {@code int} / {@code long} / {@code string}（省略時）。型に合わない値は400を返す</li>
+ *   <li>同じ位置に固定のパス要素とパラメータの両方がある場合は固定のパス要素を優先する</li>
+ *   <li>パスは一致するがメソッドが違う場合は405（Allowヘッダー付き）、OPTIONSには204を自動で返す</li>
+ * </ul>
+ * ルートの登録は起動時（サーバー開始前）に行うこと。登録はスレッドセーフではない。
+ */
+public class Router {
+
+    /**
+     * ルートに一致したリクエストを処理するハンドラー
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpExchange exchange, PathParams params) throws IOException;
+    }
+
+    /**
+     * 404 / 405 / 400 のエラーレスポンスを送る処理（アプリごとのエラー形式に合わせる）
+     */
+    @FunctionalInterface
+    public interface ErrorResponder {
+        void send(HttpExchange exchange, int statusCode, String message) throws IOException;
+    }
+
+    private enum ParamType {
+        INT, LONG, STRING
+    }
+
+    private final Node root = new Node();
+    private final ErrorResponder errorResponder;
+    private int maxParams;
+
+    public Router(ErrorResponder errorResponder) {
+        this.errorResponder = errorResponder;
+    }
+
+    public Router get(String template, Handler handler) {
+        return add("GET", template, handler);
+    }
+
+    public Router post(String template, Handler handler) {
+        return add("POST", template, handler);
+    }
+
+    public Router put(String template, Handler handler) {
+        return add("PUT", template, handler);
+    }
+
+    public Router delete(String template, Handler handler) {
+        return add("DELETE", template, handler);
+    }
+
+    /**
+     * ルートを登録する
+     * @param method HTTPメソッド
+     * @param template パスのテンプレート（"/" で始まる）
+     * @param handler 処理するハンドラー
+     * @return このルーター
+     * @throws IllegalArgumentException テンプレートが不正な場合、同じルートが登録済みの場合
+     */
+    public Router add(String method, String template, Handler handler) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Route must start with '/': " + template);
+        }
+        Node node = root;
+        String[] names = new String[0];
+        if (template.length() > 1) {
+            for (String segment : template.substring(1).split("/", -1)) {
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Empty path segment: " + template);
+                }
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    String[] parts = segment.substring(1, segment.length() - 1).split(":", 2);
+                    ParamType type = parts.length > 1 ? ParamType.valueOf(parts[1].toUpperCase(Locale.ROOT)) : ParamType.STRING;
+                    node = node.paramChild(parts[0], type, template);
+                    names = Arrays.copyOf(names, names.length + 1);
+                    names[names.length - 1] = parts[0];
+                } else {
+                    node = node.literalChild(segment);
+                }
+            }
+        }
+        if (node.routes.putIfAbsent(method, new Route(handler, names)) != null) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + template);
+        }
+        TreeSet<String> allowed = new TreeSet<>(node.routes.keySet());
+        allowed.add("OPTIONS");
+        node.allow = String.join(", ", allowed);
+        maxParams = Math.max(maxParams, names.length);
+        return this;
+    }
+
+    /**
+     * リクエストを一致するルートのハンドラーへ渡す
+     * 一致するルートがない場合は404、メソッドが違う場合は405、パラメータの型が合わない場合は400を送る
+     */
+    public void dispatch(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+
+        Match match = new Match(maxParams);
+        Node node = null;
+        if (path.equals("/")) {
+            node = root.routes.isEmpty() ? null : root;
+        } else if (path.startsWith("/")) {
+            node = find(root, path, 1, match);
+        }
+
+        if (node == null) {
+            if (match.invalidParam != null) {
+                errorResponder.send(exchange, 400, "Invalid " + match.invalidParam + " format");
+            } else {
+                errorResponder.send(exchange, 404, "Not Found");
+            }
+            return;
+        }
+
+        Route route = node.routes.get(method);
+        if (route == null) {
+            exchange.getResponseHeaders().set("Allow", node.allow);
+            if ("OPTIONS".equals(method)) {
+                // CORSのプリフライト（CORSヘッダーは呼び出し側で設定済み）
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                errorResponder.send(exchange, 405, "Method Not Allowed");
+            }
+            return;
+        }
+        route.handler.handle(exchange, match.toParams(path, route.names));
+    }
+
+    /**
+     * pos から始まるパス要素を node の子と照合し、末尾まで一致したノードを返す
+     * 固定のパス要素で一致しても先が続かない場合は、パラメータの子で再度試す
+     */
+    private Node find(Node node, String path, int pos, Match match) {
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - pos;
+        if (length == 0) {
+            // 空のパス要素（"//" や末尾の "/"）には一致させない
+            return null;
+        }
+        boolean last = end == path.length();
+
+        for (int i = 0; i < node.literals.length; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(pos, literal, 0, length)) {
+                Node child = node.literalNodes[i];
+                Node found = last ? (child.routes.isEmpty() ? null : child) : find(child, path, end + 1, match);
+                if (found != null) {
+                    return found;
+                }
+                break;
+            }
+        }
+
+        Node param = node.paramNode;
+        if (param == null) {
+            return null;
+        }
+        if (!match.push(path, pos, end, param.paramType)) {
+            match.invalidParam = param.paramName;
+            return null;
+        }
+        Node found = last ? (param.routes.isEmpty() ? null : param) : find(param, path, end + 1, match);
+        if (found == null) {
+            match.pop();
+        }
+        return found;
+    }
+
+    /**
+     * トライの1ノード（パス要素1つ分）
+     */
+    private static final class Node {
+        private String[] literals = new String[0];
+        private Node[] literalNodes = new Node[0];
+        private Node paramNode;
+        private String paramName;
+        private ParamType paramType;
+        private final Map<String, Route> routes = new HashMap<>();
+        private String allow;
+
+        private Node literalChild(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) {
+                    return literalNodes[i];
+                }
+            }
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalNodes = Arrays.copyOf(literalNodes, literalNodes.length + 1);
+            literals[literals.length - 1] = segment;
+            literalNodes[literalNodes.length - 1] = new Node();
+            return literalNodes[literalNodes.length - 1];
+        }
+
+        private Node paramChild(String name, ParamType type, String template) {
+            if (paramNode == null) {
+                paramNode = new Node();
+                paramNode.paramName = name;
+                paramNode.paramType = type;
+            } else if (!paramNode.paramName.equals(name) || paramNode.paramType != type) {
+                throw new IllegalArgumentException("Conflicting parameter {" + name + "} in " + template
+                        + " (already registered as {" + paramNode.paramName + "})");
+            }
+            return paramNode;
+        }
+    }
+
+    private static final class Route {
+        private final Handler handler;
+        private final String[] names;
+
+        private Route(Handler handler, String[] names) {
+            this.handler = handler;
+            this.names = names;
+        }
+    }
+
+    /**
+     * 照合中のパラメータの位置と数値（一致しなかった枝に戻る時は pop する）
+     */
+    private static final class Match {
+        private final int maxParams;
+        private int[] starts;
+        private int[] ends;
+        private long[] numbers;
+        private int count;
+        private String invalidParam;
+
+        private Match(int maxParams) {
+            this.maxParams = maxParams;
+        }
+
+        private boolean push(String path, int start, int end, ParamType type) {
+            if (starts == null) {
+                // パラメータのないルートでは配列を作らない
+                starts = new int[maxParams];
+                ends = new int[maxParams];
+                numbers = new long[maxParams];
+            }
+            if (type != ParamType.STRING) {
+                long limit = type == ParamType.INT ? Integer.MAX_VALUE : Long.MAX_VALUE;
+                long value = parseNumber(path, start, end, limit);
+                if (value < 0) {
+                    return false;
+                }
+                numbers[count] = value;
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+            return true;
+        }
+
+        private void pop() {
+            count--;
+        }
+
+        private PathParams toParams(String path, String[] names) {
+            return count == 0 ? PathParams.EMPTY : new PathParams(path, names, starts, ends, numbers);
+        }
+
+        /**
+         * 0以上の10進数を読み取る。数字以外を含む場合や上限を超える場合は-1
+         */
+        private static long parseNumber(String path, int start, int end, long limit) {
+            if (end - start > 19) {
+                return -1;
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                char c = path.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+                if (value < 0 || value > limit) {
+                    return -1;
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * ルートのテンプレートから取り出したパスパラメータ
+     * 文字列の値は読み出す時に初めて部分文字列を作る
+     */
+    public static final class PathParams {
+        static final PathParams EMPTY = new PathParams("", new String[0], new int[0], new int[0], new long[0]);
+
+        private final String path;
+        private final String[] names;
+        private final int[] starts;
+        private final int[] ends;
+        private final long[] numbers;
+
+        private PathParams(String path, String[] names, int[] starts, int[] ends, long[] numbers) {
+            this.path = path;
+            this.names = names;
+            this.starts = starts;
+            this.ends = ends;
+            this.numbers = numbers;
+        }
+
+        /**
+         * {name:int} のパラメータを取得する
+         */
+        public int getInt(String name) {
+            return (int) numbers[indexOf(name)];
+        }
+
+        /**
+         * {name:long} のパラメータを取得する（{name:int} も可）
+         */
+        public long getLong(String name) {
+            return numbers[indexOf(name)];
+        }
+
+        /**
+         * パラメータを文字列で取得する（URLデコード済みのパス上の値）
+         */
+        public String get(String name) {
+            int index = indexOf(name);
+            return path.substring(starts[index], ends[index]);
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unknown path parameter: " + name);
+        }
+    }
+}
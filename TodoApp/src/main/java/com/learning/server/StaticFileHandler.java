@@ -1,21 +1,23 @@
 package com.learning.server;
 
+import com.learning.logging.AsyncLogger;
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
  * 静的ファイル（HTML、CSS、JS）を提供するハンドラー
  */
 public class StaticFileHandler implements HttpHandler {
-    private final String staticDirectory;
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(StaticFileHandler.class);
+
+    private final StaticAssetCache cache;
 
     public StaticFileHandler(String staticDirectory) {
-        this.staticDirectory = staticDirectory;
+        this.cache = StaticAssetCache.fromSystemProperties(Paths.get(staticDirectory));
     }
 
     @Override
@@ -27,20 +29,61 @@ public class StaticFileHandler implements HttpHandler {
             path = "/index.html";
         }
 
-        // ファイルパスを構築
-        Path filePath = Paths.get(staticDirectory + path);
-        
         try {
-            if (Files.exists(filePath) && Files.isRegularFile(filePath)) {
-                // ファイルが存在する場合
-                byte[] fileContent = Files.readAllBytes(filePath);
-                String contentType = getContentType(path);
-                
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.sendResponseHeaders(200, fileContent.length);
-                
+            // メモリ上のキャッシュから取得（初回のみディスクから読み込む）
+            StaticAssetCache.Asset asset = cache.get(path, getContentType(path));
+            if (asset != null) {
+                Headers requestHeaders = exchange.getRequestHeaders();
+                String rangeHeader = requestHeaders.getFirst("Range");
+                // Accept-Encodingに応じて、読み込み時に用意しておいた圧縮版を選ぶ
+                // Range指定がある場合は無圧縮の内容に対する範囲として扱う
+                String encoding = rangeHeader == null
+                        ? asset.selectEncoding(requestHeaders.getFirst("Accept-Encoding"))
+                        : null;
+                if (asset.hasEncodings()) {
+                    exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                }
+                exchange.getResponseHeaders().set("ETag", asset.getEtag(encoding));
+                exchange.getResponseHeaders().set("Last-Modified", asset.getLastModified());
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                // 毎回再検証させ、変更がなければ304で本文の転送を省く
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+                String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+                String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+                if (asset.isNotModified(encoding, ifNoneMatch, ifModifiedSince)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                long length = asset.getLength(encoding);
+                ByteRange range = asset.matchesIfRange(requestHeaders.getFirst("If-Range"))
+                        ? ByteRange.parse(rangeHeader, length)
+                        : null;
+                if (range == ByteRange.UNSATISFIABLE) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", asset.getContentType());
+                if (encoding != null) {
+                    exchange.getResponseHeaders().set("Content-Encoding", encoding);
+                }
+                long offset = 0;
+                long count = length;
+                if (range != null) {
+                    offset = range.getStart();
+                    count = range.getLength();
+                    exchange.getResponseHeaders().set("Content-Range", range.toContentRange(length));
+                    exchange.sendResponseHeaders(206, count);
+                } else {
+                    // 長さ0を渡すとchunked転送になるため、空のファイルは-1（本文なし）で返す
+                    exchange.sendResponseHeaders(200, count == 0 ? -1 : count);
+                }
+
                 try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(fileContent);
+                    asset.writeTo(os, encoding, offset, count);
                 }
             } else {
                 // ファイルが存在しない場合は404
@@ -55,7 +98,11 @@ public class StaticFileHandler implements HttpHandler {
                 }
             }
         } catch (Exception e) {
-            System.err.println("静的ファイル提供エラー: " + e.getMessage());
+            LOG.error("静的ファイル提供エラー", "error", e.getMessage());
+            if (exchange.getResponseCode() != -1) {
+                // 本文の送信中に失敗した場合（クライアントの切断など）はエラー応答を返せない
+                return;
+            }
             
             String errorResponse = "<html><body><h1>500 Internal Server Error</h1></body></html>";
             byte[] responseBytes = errorResponse.getBytes();
@@ -71,6 +118,13 @@ public class StaticFileHandler implements HttpHandler {
         }
     }
 
+    /**
+     * ファイル監視を停止する
+     */
+    public void close() {
+        cache.close();
+    }
+
     /**
      * ファイル拡張子に基づいてContent-Typeを決定する
      */
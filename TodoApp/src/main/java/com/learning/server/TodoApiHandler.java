@@ -1,33 +1,115 @@
 package com.learning.server;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.learning.database.TodoDAO;
+import com.learning.database.CachedTodoDAO;
+import com.learning.database.DatabaseConnection;
+import com.learning.logging.AsyncLogger;
 import com.learning.model.Todo;
+import com.learning.model.TodoBatchOperation;
+import com.learning.model.TodoBatchResult;
+import com.learning.model.TodoCursor;
+import com.learning.model.TodoPage;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.*;
 import java.net.URI;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Todo API のHTTPリクエストを処理するハンドラー
  */
 public class TodoApiHandler implements HttpHandler {
-    private final TodoDAO todoDAO;
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(TodoApiHandler.class);
+
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 500;
+    private static final int MAX_BATCH_SIZE = 5_000;
+    private static final TypeReference<List<TodoBatchOperation>> BATCH_REQUEST_TYPE = new TypeReference<>() {};
+
+    private final CachedTodoDAO todoDAO;
     private final ObjectMapper objectMapper;
+    private final ObjectWriter streamItemWriter;
+    private final ObjectReader todoReader;
+    private final ObjectReader batchReader;
+    private final RequestBodyReader bodyReader;
+    private final WorkerExecutor executor;
+    private final TodoEventBus eventBus;
+    /** 同じTodoへの書き込みと変更イベントの配信を直列にするロック（DBへの反映順と配信順を揃える） */
+    private final IdLocks todoLocks = new IdLocks();
+    private final Router router;
 
     public TodoApiHandler() {
-        this.todoDAO = new TodoDAO();
-        this.objectMapper = new ObjectMapper();
+        this(null);
+    }
+
+    public TodoApiHandler(WorkerExecutor executor) {
+        this(executor, null);
+    }
+
+    /**
+     * @param executor ワーカーExecutor（統計APIを公開しない場合はnull）
+     * @param eventBus 変更を配信するイベントバス（配信しない場合はnull）
+     */
+    public TodoApiHandler(WorkerExecutor executor, TodoEventBus eventBus) {
+        this.executor = executor;
+        this.eventBus = eventBus;
+        this.todoDAO = new CachedTodoDAO();
+        // 読み書きのバッファはスレッドに依存しないプールから借りる（仮想スレッドではThreadLocalのプールが再利用されないため）
+        // 日本語文字化け対策（ASCII以外の文字をエスケープせず、UTF-8のまま出力する）
+        this.objectMapper = new ObjectMapper(JsonFactory.builder()
+                .recyclerPool(JsonRecyclerPools.sharedLockFreePool())
+                .disable(JsonWriteFeature.ESCAPE_NON_ASCII)
+                .build());
         // Java 8 日時APIサポートを追加
         this.objectMapper.registerModule(new JavaTimeModule());
-        // 日本語文字化け対策
-        this.objectMapper.configure(com.fasterxml.jackson.core.JsonGenerator.Feature.ESCAPE_NON_ASCII, false);
+        // ストリーミング時は要素ごとにflushせず、バッファが溜まった分だけチャンクとして送る
+        this.streamItemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.todoReader = objectMapper.readerFor(Todo.class);
+        this.batchReader = objectMapper.readerFor(BATCH_REQUEST_TYPE);
+        this.bodyReader = new RequestBodyReader();
+        this.router = createRouter();
+    }
+
+    /**
+     * APIのルート表を作成する
+     */
+    private Router createRouter() {
+        Router router = new Router(this::sendErrorResponse)
+                .get("/api/todos", this::handleList)
+                .post("/api/todos", this::handleCreate)
+                .post("/api/todos/batch", this::handleBatch)
+                .get("/api/todos/{id:int}", this::handleGetTodo)
+                .put("/api/todos/{id:int}", this::handleUpdate)
+                .delete("/api/todos/{id:int}", this::handleDelete)
+                .get("/api/stats/pool", this::handlePoolStats)
+                .get("/api/stats/cache", this::handleCacheStats);
+        if (executor != null) {
+            router.get("/api/stats/executor", this::handleExecutorStats);
+        }
+        if (eventBus != null) {
+            router.get("/api/stats/events", this::handleEventStats);
+        }
+        return router;
     }
 
     @Override
@@ -38,156 +120,387 @@ public class TodoApiHandler implements HttpHandler {
         String method = exchange.getRequestMethod();
         String path = exchange.getRequestURI().getPath();
 
-        System.out.println("API Request: " + method + " " + path);
+        LOG.debug("API Request", "method", method, "path", path);
 
+        boolean aborted = false;
         try {
-            switch (method) {
-                case "GET":
-                    handleGet(exchange, path);
-                    break;
-                case "POST":
-                    handlePost(exchange, path);
-                    break;
-                case "PUT":
-                    handlePut(exchange, path);
-                    break;
-                case "DELETE":
-                    handleDelete(exchange, path);
-                    break;
-                case "OPTIONS":
-                    // CORS プリフライトリクエスト
-                    exchange.sendResponseHeaders(200, 0);
-                    break;
-                default:
-                    sendErrorResponse(exchange, 405, "Method Not Allowed");
-            }
+            // ルート表で処理を選ぶ（404 / 405 / OPTIONS はルーターが返す）
+            router.dispatch(exchange);
+        } catch (ResponseAbortedException e) {
+            // 途中まで送ったレスポンスは閉じずに、HttpServerに接続ごと切断させる
+            LOG.error("API送信エラー", e, "method", method, "path", path);
+            aborted = true;
+            throw e;
         } catch (Exception e) {
-            System.err.println("API処理エラー: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("API処理エラー", e, "method", method, "path", path);
+            if (exchange.getResponseCode() != -1) {
+                // 本文の送信中に失敗した場合（クライアントの切断など）はエラー応答を返せない
+                aborted = true;
+                throw new ResponseAbortedException("Response failed after headers were sent", e);
+            }
             sendErrorResponse(exchange, 500, "Internal Server Error");
         } finally {
-            exchange.close();
+            if (!aborted) {
+                exchange.close();
+            }
         }
     }
 
     /**
-     * GETリクエストを処理
+     * 一覧取得を処理（GET /api/todos）
+     * limit か cursor があればページ単位で返し、なければ全件をストリーミングで返す
+     * （キャッシュ回避用の ?_=123 のような無関係なパラメータでは切り替えない）
      */
-    private void handleGet(HttpExchange exchange, String path) throws IOException {
-        if (path.equals("/api/todos")) {
-            // 全てのTodoを取得
-            List<Todo> todos = todoDAO.getAllTodos();
-            sendJsonResponse(exchange, 200, todos);
-        } else if (path.startsWith("/api/todos/")) {
-            // 特定のTodoを取得
-            String idStr = path.substring("/api/todos/".length());
-            try {
-                int id = Integer.parseInt(idStr);
-                Todo todo = todoDAO.getTodoById(id);
-                if (todo != null) {
-                    sendJsonResponse(exchange, 200, todo);
-                } else {
-                    sendErrorResponse(exchange, 404, "Todo not found");
-                }
-            } catch (NumberFormatException e) {
-                sendErrorResponse(exchange, 400, "Invalid ID format");
-            }
+    private void handleList(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (query.containsKey("limit") || query.containsKey("cursor")) {
+            handleListPage(exchange, query);
+        } else if (query.containsKey("completed") || query.containsKey("q")) {
+            // 絞り込みを無視して全件を返さないよう、ページ指定なしの絞り込みはエラーにする
+            sendErrorResponse(exchange, 400, "completed and q require limit or cursor");
         } else {
-            sendErrorResponse(exchange, 404, "Not Found");
+            sendTodoStream(exchange);
         }
     }
 
     /**
-     * POSTリクエストを処理（新規Todo作成）
+     * 特定のTodoを取得（GET /api/todos/{id}）
      */
-    private void handlePost(HttpExchange exchange, String path) throws IOException {
-        if (path.equals("/api/todos")) {
-            String requestBody = getRequestBody(exchange);
-            try {
-                Todo todo = objectMapper.readValue(requestBody, Todo.class);
-                int newId = todoDAO.createTodo(todo);
-                if (newId > 0) {
-                    todo.setId(newId);
-                    Todo createdTodo = todoDAO.getTodoById(newId);
-                    sendJsonResponse(exchange, 201, createdTodo);
-                } else {
-                    sendErrorResponse(exchange, 500, "Failed to create todo");
-                }
-            } catch (Exception e) {
-                System.err.println("JSON解析エラー: " + e.getMessage());
-                sendErrorResponse(exchange, 400, "Invalid JSON format");
-            }
+    private void handleGetTodo(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Todo todo = todoDAO.getTodoById(params.getInt("id"));
+        if (todo != null) {
+            sendJsonResponse(exchange, 200, todo);
         } else {
-            sendErrorResponse(exchange, 404, "Not Found");
+            sendErrorResponse(exchange, 404, "Todo not found");
         }
     }
 
     /**
-     * PUTリクエストを処理（Todo更新）
+     * コネクションプールの統計情報（GET /api/stats/pool）
+     */
+    private void handlePoolStats(HttpExchange exchange, Router.PathParams params) throws IOException {
+        sendJsonResponse(exchange, 200, DatabaseConnection.getInstance().getPoolStats().toMap());
+    }
+
+    /**
+     * Todoキャッシュの統計情報（GET /api/stats/cache）
+     */
+    private void handleCacheStats(HttpExchange exchange, Router.PathParams params) throws IOException {
+        sendJsonResponse(exchange, 200, todoDAO.getStats());
+    }
+
+    /**
+     * ワーカーExecutorの統計情報（GET /api/stats/executor）
+     */
+    private void handleExecutorStats(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", executor.getMode().name().toLowerCase());
+        stats.put("queueDepth", executor.getQueueDepth());
+        stats.put("inFlight", executor.getInFlight());
+        stats.put("completed", executor.getCompleted());
+        stats.put("rejected", executor.getRejected());
+        sendJsonResponse(exchange, 200, stats);
+    }
+
+    /**
+     * イベント配信の統計情報（GET /api/stats/events）
+     */
+    private void handleEventStats(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", eventBus.getSubscriberCount());
+        stats.put("maxSubscribers", eventBus.getMaxSubscribers());
+        stats.put("queueCapacity", eventBus.getQueueCapacity());
+        stats.put("published", eventBus.getPublished());
+        stats.put("delivered", eventBus.getDelivered());
+        stats.put("rejected", eventBus.getRejected());
+        stats.put("slowDisconnects", eventBus.getSlowDisconnects());
+        sendJsonResponse(exchange, 200, stats);
+    }
+
+    /**
+     * ページ単位の一覧取得を処理
+     * クエリパラメータ: limit, cursor, completed, q（タイトル前方一致）
+     * 次のページがある場合は X-Next-Cursor ヘッダーにカーソルを返す
      */
-    private void handlePut(HttpExchange exchange, String path) throws IOException {
-        if (path.startsWith("/api/todos/")) {
-            String idStr = path.substring("/api/todos/".length());
-            try {
-                int id = Integer.parseInt(idStr);
-                String requestBody = getRequestBody(exchange);
-                Todo todo = objectMapper.readValue(requestBody, Todo.class);
-                todo.setId(id);
-                
-                boolean updated = todoDAO.updateTodo(todo);
-                if (updated) {
-                    Todo updatedTodo = todoDAO.getTodoById(id);
-                    sendJsonResponse(exchange, 200, updatedTodo);
-                } else {
-                    sendErrorResponse(exchange, 404, "Todo not found");
+    private void handleListPage(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int limit = DEFAULT_PAGE_LIMIT;
+        TodoCursor cursor = null;
+        Boolean completed = null;
+
+        try {
+            if (query.containsKey("limit")) {
+                limit = Integer.parseInt(query.get("limit"));
+                if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+                    sendErrorResponse(exchange, 400, "limit must be between 1 and " + MAX_PAGE_LIMIT);
+                    return;
                 }
-            } catch (NumberFormatException e) {
-                sendErrorResponse(exchange, 400, "Invalid ID format");
-            } catch (Exception e) {
-                System.err.println("JSON解析エラー: " + e.getMessage());
-                sendErrorResponse(exchange, 400, "Invalid JSON format");
             }
+            if (query.containsKey("cursor")) {
+                cursor = TodoCursor.decode(query.get("cursor"));
+            }
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(exchange, 400, "Invalid limit or cursor");
+            return;
+        }
+        if (query.containsKey("completed")) {
+            String value = query.get("completed");
+            if (!"true".equals(value) && !"false".equals(value)) {
+                sendErrorResponse(exchange, 400, "completed must be true or false");
+                return;
+            }
+            completed = Boolean.valueOf(value);
+        }
+
+        TodoPage page;
+        try {
+            page = todoDAO.findTodos(limit, cursor, completed, query.get("q"));
+        } catch (SQLException e) {
+            LOG.error("Todo取得エラー", "error", e.getMessage());
+            sendErrorResponse(exchange, 500, "Failed to fetch todos");
+            return;
+        }
+        if (page.getNextCursor() != null) {
+            exchange.getResponseHeaders().set("X-Next-Cursor", page.getNextCursor().encode());
+        }
+        sendJsonResponse(exchange, 200, page.getItems());
+    }
+
+    /**
+     * クエリ文字列をMapに変換する
+     */
+    private Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * 新規Todo作成を処理（POST /api/todos）
+     */
+    private void handleCreate(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Todo todo;
+        try {
+            todo = readRequestBody(exchange, todoReader);
+        } catch (RequestBodyReader.TooLargeException e) {
+            sendErrorResponse(exchange, 413, e.getMessage());
+            return;
+        } catch (Exception e) {
+            LOG.error("JSON解析エラー", "error", e.getMessage());
+            sendErrorResponse(exchange, 400, "Invalid JSON format");
+            return;
+        }
+
+        Todo createdTodo = writeAndPublish(List.of(), () -> todoDAO.createTodo(todo), "created", created -> created);
+        if (createdTodo != null) {
+            sendJsonResponse(exchange, 201, createdTodo);
         } else {
-            sendErrorResponse(exchange, 404, "Not Found");
+            sendErrorResponse(exchange, 500, "Failed to create todo");
         }
     }
 
     /**
-     * DELETEリクエストを処理（Todo削除）
+     * 一括処理リクエストを処理（POST /api/todos/batch）
+     * 作成・更新・削除の配列を受け取り、1つのトランザクションでまとめて実行する
      */
-    private void handleDelete(HttpExchange exchange, String path) throws IOException {
-        if (path.startsWith("/api/todos/")) {
-            String idStr = path.substring("/api/todos/".length());
-            try {
-                int id = Integer.parseInt(idStr);
-                boolean deleted = todoDAO.deleteTodo(id);
-                if (deleted) {
-                    sendJsonResponse(exchange, 200, Map.of("message", "Todo deleted successfully"));
-                } else {
-                    sendErrorResponse(exchange, 404, "Todo not found");
-                }
-            } catch (NumberFormatException e) {
-                sendErrorResponse(exchange, 400, "Invalid ID format");
+    private void handleBatch(HttpExchange exchange, Router.PathParams params) throws IOException {
+        List<TodoBatchOperation> operations;
+        try {
+            operations = readRequestBody(exchange, batchReader);
+        } catch (RequestBodyReader.TooLargeException e) {
+            sendErrorResponse(exchange, 413, e.getMessage());
+            return;
+        } catch (Exception e) {
+            LOG.error("JSON解析エラー", "error", e.getMessage());
+            sendErrorResponse(exchange, 400, "Invalid JSON format");
+            return;
+        }
+        if (operations == null || operations.isEmpty()) {
+            sendErrorResponse(exchange, 400, "At least one operation is required");
+            return;
+        }
+        if (operations.size() > MAX_BATCH_SIZE) {
+            sendErrorResponse(exchange, 413, "Too many operations (max " + MAX_BATCH_SIZE + ")");
+            return;
+        }
+
+        // 不正な操作は個別に400とし、正しい操作だけを実行する
+        List<TodoBatchResult> results = new ArrayList<>();
+        List<TodoBatchOperation> validOperations = new ArrayList<>();
+        List<TodoBatchResult> validResults = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            TodoBatchOperation operation = operations.get(i);
+            TodoBatchResult result = new TodoBatchResult(i, operation != null ? operation.getOp() : null);
+            results.add(result);
+
+            String error = validateBatchOperation(operation);
+            if (error != null) {
+                result.failure(400, error);
+            } else {
+                validOperations.add(operation);
+                validResults.add(result);
+            }
+        }
+
+        // 一括処理の結果には作成日時などが含まれないため、差分ではなく一覧の取り直しを通知する
+        List<Integer> touchedIds = new ArrayList<>();
+        for (TodoBatchOperation operation : validOperations) {
+            if (operation.getId() != null) {
+                touchedIds.add(operation.getId());
+            }
+        }
+        if (!validOperations.isEmpty() && !writeAndPublish(touchedIds,
+                () -> todoDAO.executeBatch(validOperations, validResults),
+                "resync", committed -> committed ? Map.of() : null)) {
+            // ロールバックされたため、実行対象の操作は全て失敗扱いにする
+            for (TodoBatchResult result : validResults) {
+                result.failure(500, "Transaction rolled back");
             }
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("error", "Failed to execute batch");
+            response.put("results", results);
+            sendJsonResponse(exchange, 500, response);
+            return;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        sendJsonResponse(exchange, 200, response);
+    }
+
+    /**
+     * 一括処理の1件分を検証する
+     * @return エラーメッセージ、問題がなければnull
+     */
+    private String validateBatchOperation(TodoBatchOperation operation) {
+        if (operation == null || operation.getOp() == null) {
+            return "op is required";
+        }
+        switch (operation.getOp()) {
+            case TodoBatchOperation.CREATE:
+                if (operation.getTodo() == null || operation.getTodo().getTitle() == null) {
+                    return "todo.title is required";
+                }
+                return null;
+            case TodoBatchOperation.UPDATE:
+                if (operation.getId() == null) {
+                    return "id is required";
+                }
+                if (operation.getTodo() == null || operation.getTodo().getTitle() == null) {
+                    return "todo.title is required";
+                }
+                return null;
+            case TodoBatchOperation.DELETE:
+                return operation.getId() == null ? "id is required" : null;
+            default:
+                return "Unknown op: " + operation.getOp();
+        }
+    }
+
+    /**
+     * Todo更新を処理（PUT /api/todos/{id}）
+     */
+    private void handleUpdate(HttpExchange exchange, Router.PathParams params) throws IOException {
+        Todo todo;
+        try {
+            todo = readRequestBody(exchange, todoReader);
+        } catch (RequestBodyReader.TooLargeException e) {
+            sendErrorResponse(exchange, 413, e.getMessage());
+            return;
+        } catch (Exception e) {
+            LOG.error("JSON解析エラー", "error", e.getMessage());
+            sendErrorResponse(exchange, 400, "Invalid JSON format");
+            return;
+        }
+        todo.setId(params.getInt("id"));
+
+        Todo updatedTodo = writeAndPublish(List.of(todo.getId()), () -> todoDAO.updateTodo(todo), "updated",
+                updated -> updated);
+        if (updatedTodo != null) {
+            sendJsonResponse(exchange, 200, updatedTodo);
         } else {
-            sendErrorResponse(exchange, 404, "Not Found");
+            sendErrorResponse(exchange, 404, "Todo not found");
+        }
+    }
+
+    /**
+     * Todo削除を処理（DELETE /api/todos/{id}）
+     */
+    private void handleDelete(HttpExchange exchange, Router.PathParams params) throws IOException {
+        int id = params.getInt("id");
+        boolean deleted = writeAndPublish(List.of(id), () -> todoDAO.deleteTodo(id), "deleted",
+                done -> done ? Map.of("id", id) : null);
+        if (deleted) {
+            sendJsonResponse(exchange, 200, Map.of("message", "Todo deleted successfully"));
+        } else {
+            sendErrorResponse(exchange, 404, "Todo not found");
+        }
+    }
+
+    /**
+     * リクエストボディを文字列にせず、ストリームから直接パースする
+     * @throws RequestBodyReader.TooLargeException ボディが上限（http.maxBodyBytes）を超える場合
+     */
+    private <T> T readRequestBody(HttpExchange exchange, ObjectReader reader) throws IOException {
+        T value = bodyReader.read(exchange, reader);
+        if (LOG.isPayloadEnabled()) {
+            LOG.debug("Request body received", "body", value);
         }
+        return value;
     }
 
     /**
-     * リクエストボディを読み取る
+     * 書き込みを行い、成功した場合は変更をイベントバスに流す
+     *
+     * 別々に配信すると、同じTodoへの2つの書き込みのイベントがDBへの反映と逆の順序で届き、
+     * クライアントが古い内容で上書きしてしまう（更新同士や、更新と削除の競合など）。
+     * そのため購読者がいる間は、対象のIDごとに書き込みから配信までを直列にする。
+     * 別のTodoへの書き込みは待たず、同じ行への書き込みはどのみちDBの行ロックで待つため、ロックで増える待ちはほとんどない。
+     * 作成は書き込むまでIDが決まらないためロックしない。一覧の取得で作成直後のIDを知った別の利用者の更新が
+     * 作成イベントより先に届くことがあるため、クライアントは一覧に既にあるTodoを作成イベントで置き換えない。
+     * 購読者がいない場合はロックしない。
+     * @param ids 書き込むTodoのID（作成だけの場合は空）
+     * @param write DBへの書き込み
+     * @param event イベント名
+     * @param eventData 書き込みの結果からイベントのデータを作る（nullを返した場合は配信しない）
+     * @return 書き込みの結果
      */
-    private String getRequestBody(HttpExchange exchange) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+    private <T> T writeAndPublish(List<Integer> ids, Supplier<T> write, String event, Function<T, Object> eventData) {
+        if (eventBus == null || !eventBus.hasSubscribers()) {
+            return write.get();
+        }
+        return todoLocks.withLocks(ids, () -> {
+            T result = write.get();
+            Object data = eventData.apply(result);
+            if (data != null) {
+                publishEvent(event, data);
             }
-            String result = sb.toString();
-            System.out.println("Request body received: " + result); // デバッグ用
             return result;
+        });
+    }
+
+    /**
+     * 変更をイベントバスに流す（購読者がいない場合はJSONも作らない）
+     * 配信の失敗は書き込みの結果に影響させない
+     */
+    private void publishEvent(String event, Object data) {
+        if (!eventBus.hasSubscribers()) {
+            return;
+        }
+        try {
+            eventBus.publish(event, objectMapper.writeValueAsBytes(data));
+        } catch (IOException e) {
+            LOG.error("イベント配信エラー", "event", event, "error", e.getMessage());
         }
     }
 
@@ -195,9 +508,11 @@ public class TodoApiHandler implements HttpHandler {
      * JSON レスポンスを送信
      */
     private void sendJsonResponse(HttpExchange exchange, int statusCode, Object data) throws IOException {
-        String jsonResponse = objectMapper.writeValueAsString(data);
-        System.out.println("JSON response being sent: " + jsonResponse); // デバッグ用
-        byte[] responseBytes = jsonResponse.getBytes(StandardCharsets.UTF_8);
+        byte[] responseBytes = objectMapper.writeValueAsBytes(data);
+        if (LOG.isPayloadEnabled()) {
+            LOG.debug("JSON response being sent", "status", statusCode,
+                    "body", new String(responseBytes, StandardCharsets.UTF_8));
+        }
         
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
         exchange.sendResponseHeaders(statusCode, responseBytes.length);
@@ -207,6 +522,31 @@ public class TodoApiHandler implements HttpHandler {
         }
     }
 
+    /**
+     * 全てのTodoをJSON配列としてストリーミング送信する
+     * 一覧・文字列・バイト配列を作らず、読み込んだ行をそのままチャンク転送で書き出す
+     */
+    private void sendTodoStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        // 長さ0を指定するとチャンク転送エンコーディングになる
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream os = exchange.getResponseBody();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(os, JsonEncoding.UTF8)) {
+            // 途中で失敗した場合に閉じ括弧を補ったり、出力先を閉じて終端チャンクを送ったりしない
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            todoDAO.forEachTodo(todo -> streamItemWriter.writeValue(generator, todo));
+            generator.writeEndArray();
+        } catch (SQLException e) {
+            // ヘッダー送信後のためステータスは変更できない。接続を切って不完全なレスポンスとして扱わせる
+            throw new ResponseAbortedException("Todo streaming failed", e);
+        }
+        // 最後まで書けた場合だけ終端チャンクを送る
+        os.close();
+    }
+
     /**
      * エラーレスポンスを送信
      */
@@ -223,5 +563,6 @@ public class TodoApiHandler implements HttpHandler {
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
         exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "X-Next-Cursor");
     }
 }
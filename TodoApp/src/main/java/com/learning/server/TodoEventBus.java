@@ -0,0 +1,333 @@
+package com.learning.server;
+
+import com.learning.logging.AsyncLogger;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Todoの変更をServer-Sent Eventsの購読者に配信するイベントバス
+ *
+ * 変更1件ごとにSSEのフレームを1回だけバイト列にし、購読者ごとの上限付きキューに入れる（購読者の数だけJSONを作らない）。
+ * 購読者ごとに専用の送信スレッド（Java 21以降は仮想スレッド）がキューを送り出すため、
+ * 受信しないクライアントで書き込みが止まっても、止まるのはその購読者のスレッドだけでリクエスト処理や他の購読者には影響しない。
+ * キューが溢れた購読者や、書き込みが止まったままの購読者は送信スレッドを割り込みで止めて接続を切る
+ * （ブロッキングのSocketChannelへの書き込みは割り込まれるとチャネルを閉じて例外になる）。
+ * 切断されたクライアントは再接続時に一覧を取り直す。
+ */
+public class TodoEventBus {
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(TodoEventBus.class);
+
+    /** 接続直後に送るフレーム（再接続までの待ち時間をクライアントに伝える） */
+    private static final byte[] HELLO = "retry: 3000\n: connected\n\n".getBytes(StandardCharsets.UTF_8);
+    /** 無通信でプロキシに切断されないよう定期的に送るコメント行 */
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    /** 送信スレッドに終了を伝える目印（送信はしない） */
+    private static final byte[] END = new byte[0];
+
+    private final int queueCapacity;
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService heartbeat;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+
+    /**
+     * @param queueCapacity 購読者ごとに溜められるフレーム数
+     * @param maxSubscribers 同時に購読できる接続数（送信スレッドの数でもある）
+     * @param heartbeatSeconds PINGを送る間隔（秒）
+     * @param writeTimeoutMillis 1回の送信がこれより長く止まった購読者を切断する（ミリ秒）
+     */
+    public TodoEventBus(int queueCapacity, int maxSubscribers, long heartbeatSeconds, long writeTimeoutMillis) {
+        if (queueCapacity <= 0 || maxSubscribers <= 0 || heartbeatSeconds <= 0) {
+            throw new IllegalArgumentException("queueCapacity, maxSubscribers and heartbeatSeconds must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.maxSubscribers = maxSubscribers;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        this.writers = WorkerExecutor.newVirtualThreadExecutor("todo-events-writer-");
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "todo-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * システムプロパティからイベントバスを作成する
+     * <ul>
+     *   <li>todo.events.queueCapacity: 購読者ごとのキュー長（既定値: 256）</li>
+     *   <li>todo.events.maxSubscribers: 同時購読数の上限（既定値: 10000）</li>
+     *   <li>todo.events.heartbeatSeconds: PINGの間隔（既定値: 15）</li>
+     *   <li>todo.events.writeTimeoutMillis: 送信が止まった購読者を切断するまでの時間（既定値: 10000）</li>
+     * </ul>
+     */
+    public static TodoEventBus fromSystemProperties() {
+        return new TodoEventBus(
+                Integer.getInteger("todo.events.queueCapacity", 256),
+                Integer.getInteger("todo.events.maxSubscribers", 10_000),
+                Long.getLong("todo.events.heartbeatSeconds", 15L),
+                Long.getLong("todo.events.writeTimeoutMillis", 10_000L));
+    }
+
+    /**
+     * 購読者がいるかどうか（いなければイベントのJSONを作らずに済ませる）
+     */
+    public boolean hasSubscribers() {
+        return subscriberCount.get() > 0;
+    }
+
+    /**
+     * イベントを全ての購読者に配信する（キューに入れるだけで、送信は待たない）
+     * 1つのスレッドから呼び出した順に配信する。同時に呼び出された別のTodoのイベントは購読者ごとに前後することがあるため、
+     * 同じTodoの変更はDBへの反映と同じ順序になるよう呼び出し側で直列にする
+     * @param event イベント名（created / updated / deleted / resync）
+     * @param json イベントのデータ（改行を含まないJSON）
+     */
+    public void publish(String event, byte[] json) {
+        if (!hasSubscribers()) {
+            return;
+        }
+        byte[] frame = frame(sequence.incrementAndGet(), event, json);
+        published.increment();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    /**
+     * SSEのレスポンスを開始し、購読者として登録する
+     * ハンドラーはこの後exchangeを閉じずに戻る（閉じるのは購読者の送信スレッドで行う）
+     * @return 登録できた場合はtrue、購読数の上限に達している場合はfalse（レスポンスは未送信）
+     */
+    public boolean subscribe(HttpExchange exchange) throws IOException {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        Subscriber subscriber = new Subscriber(exchange);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            // リバースプロキシにバッファリングさせない
+            exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+            // 長さ0を指定するとチャンク転送エンコーディングになる
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+        subscribers.add(subscriber);
+        subscriber.offer(HELLO);
+        try {
+            writers.execute(subscriber::run);
+        } catch (RejectedExecutionException e) {
+            // 停止中
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            exchange.close();
+            return true;
+        }
+        LOG.debug("イベント購読開始", "subscribers", subscriberCount.get());
+        return true;
+    }
+
+    /**
+     * PINGを送り、送信が止まったままの購読者を切断する
+     */
+    private void sendHeartbeat() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.writeStartedNanos;
+            if (started != 0 && now - started > writeTimeoutNanos) {
+                slowDisconnects.increment();
+                subscriber.abort("write timeout");
+            } else {
+                subscriber.offer(PING);
+            }
+        }
+    }
+
+    /**
+     * 全ての購読者を切断して停止する
+     */
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close("shutdown");
+        }
+        // 送信スレッドが接続を閉じ終わるのを待ち、書き込みが止まっているものは割り込んで切る
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(1, TimeUnit.SECONDS)) {
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writers.shutdownNow();
+        }
+    }
+
+    /**
+     * SSEのフレームを作る（idは配信ごとに一意。同時に配信されたイベントは番号の順に届くとは限らない）
+     */
+    private static byte[] frame(long id, String event, byte[] json) {
+        byte[] header = ("id: " + id + "\nevent: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[header.length + json.length + 2];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(json, 0, frame, header.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    /**
+     * 1つのSSE接続と、その接続だけを受け持つ送信スレッド
+     */
+    private final class Subscriber {
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        // 終了の目印を必ず入れられるよう1つ多く確保する
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /** abortで終わった場合はtrue（終端を送らずに接続を切る） */
+        private volatile boolean aborted;
+        /** 送信スレッド（開始前はnull） */
+        private volatile Thread writer;
+        /** 書き込み中の場合はその開始時刻、書き込んでいない場合は0 */
+        private volatile long writeStartedNanos;
+
+        private Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        private void offer(byte[] frame) {
+            if (closed.get()) {
+                return;
+            }
+            if (queue.remainingCapacity() <= 1 || !queue.offer(frame)) {
+                // 受信が追いついていない。溜め続けずに切断し、再接続後に一覧を取り直させる
+                slowDisconnects.increment();
+                abort("queue full");
+            }
+        }
+
+        /**
+         * キューのフレームを順に送る（切断されるまで戻らない）
+         */
+        private void run() {
+            writer = Thread.currentThread();
+            try {
+                while (!closed.get()) {
+                    byte[] frame = queue.take();
+                    if (frame == END) {
+                        break;
+                    }
+                    writeStartedNanos = System.nanoTime();
+                    out.write(frame);
+                    // 溜まっている分を書き終えてから送り出す
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                    writeStartedNanos = 0;
+                    delivered.increment();
+                }
+            } catch (InterruptedException e) {
+                // abortで割り込まれた。接続はfinallyで切る
+            } catch (IOException e) {
+                // クライアントが切断した、または書き込み中に割り込まれてチャネルが閉じられた
+                close("disconnected");
+            } finally {
+                writeStartedNanos = 0;
+                if (aborted) {
+                    // 割り込み前に送信ループを抜けていた場合も、終端の書き込みを失敗させて接続を切る
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+                // プールのスレッドを使い回す場合に備えて割り込み状態を残さない
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * 送信済みの分で終わりにして切断する（同じ購読者に対して何度呼ばれても1回だけ処理する）
+         */
+        private void close(String reason) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (subscribers.remove(this)) {
+                subscriberCount.decrementAndGet();
+            }
+            queue.clear();
+            queue.offer(END);
+            LOG.debug("イベント購読終了", "reason", reason, "subscribers", subscriberCount.get());
+        }
+
+        /**
+         * 送信スレッドに割り込んで、書き込みの途中でも接続を切る
+         */
+        private void abort(String reason) {
+            aborted = true;
+            close(reason);
+            Thread thread = writer;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
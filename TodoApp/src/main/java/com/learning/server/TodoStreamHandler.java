@@ -0,0 +1,59 @@
+package com.learning.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Todoの変更をServer-Sent Eventsで配信するハンドラー（GET /api/todos/stream）
+ *
+ * 接続を購読者として {@link TodoEventBus} に渡し、exchangeを閉じずに戻る（リクエスト処理のスレッドはすぐに解放される）。
+ * TodoApiHandlerはレスポンスの送信後に必ずexchangeを閉じるため、このパスは別のコンテキストとして登録する。
+ */
+public class TodoStreamHandler implements HttpHandler {
+    private final TodoEventBus eventBus;
+
+    public TodoStreamHandler(TodoEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        String method = exchange.getRequestMethod();
+        if (!"/api/todos/stream".equals(exchange.getRequestURI().getPath())) {
+            sendError(exchange, 404, "Not Found");
+            return;
+        }
+        if ("OPTIONS".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, OPTIONS");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        if (!"GET".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, OPTIONS");
+            sendError(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        if (!eventBus.subscribe(exchange)) {
+            // 購読数の上限。クライアントはRetry-After後に再接続する
+            exchange.getResponseHeaders().set("Retry-After", "10");
+            sendError(exchange, 503, "Too many subscribers");
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        byte[] body = ("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try {
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.learning.server;
+
+import com.learning.logging.AsyncLogger;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTPリクエストを処理するワーカーExecutor
+ * 起動時にモードを選択でき、キュー待ち数と処理中リクエスト数を計測する
+ *
+ * - virtual: リクエストごとに仮想スレッドを作成（Java 21以降、それ以前はキャッシュ型プールで代替）
+ * - bounded: 上限付きスレッドプール＋上限付きキュー
+ * - inline: HttpServerのディスパッチャースレッド上で直接処理（従来の動作、比較用）
+ *
+ * キューが溢れたリクエストは処理せず、ディスパッチャースレッド上で即座に 503 + Retry-After を返す
+ * （ディスパッチャースレッドで処理すると、遅いリクエスト1件で全ての接続の受け付けが止まるため）。
+ * 503を返すには、ハンドラーを {@link #guard(HttpHandler)} で包んでおく。
+ */
+public class WorkerExecutor implements Executor {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(WorkerExecutor.class);
+
+    /**
+     * Executorのモード
+     */
+    public enum Mode {
+        VIRTUAL, BOUNDED, INLINE;
+
+        public static Mode fromString(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("不明なExecutorモードです。virtualを使用します", "mode", value);
+                return VIRTUAL;
+            }
+        }
+    }
+
+    /** 503を返すべきリクエストかどうか（ディスパッチャースレッドで拒否したリクエストの実行中だけtrue） */
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Mode mode;
+    private final ExecutorService delegate;
+    private final int retryAfterSeconds;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private WorkerExecutor(Mode mode, ExecutorService delegate, int retryAfterSeconds) {
+        this.mode = mode;
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * システムプロパティからExecutorを作成する
+     * <ul>
+     *   <li>server.executor: virtual / bounded / inline（既定値: virtual）</li>
+     *   <li>server.executor.threads: boundedモードのスレッド数（既定値: CPU数×4）</li>
+     *   <li>server.executor.queue: boundedモードのキュー長（既定値: 1000）</li>
+     *   <li>server.executor.retryAfter: キューが溢れた時に返す503のRetry-After秒数（既定値: 1）</li>
+     * </ul>
+     */
+    public static WorkerExecutor fromSystemProperties() {
+        Mode mode = Mode.fromString(System.getProperty("server.executor", "virtual"));
+        int threads = Integer.getInteger("server.executor.threads", Runtime.getRuntime().availableProcessors() * 4);
+        int queueCapacity = Integer.getInteger("server.executor.queue", 1000);
+        int retryAfterSeconds = Integer.getInteger("server.executor.retryAfter", 1);
+        return create(mode, threads, queueCapacity, retryAfterSeconds);
+    }
+
+    /**
+     * 指定したモードでExecutorを作成する
+     * @param mode モード
+     * @param threads boundedモードのスレッド数
+     * @param queueCapacity boundedモードのキュー長
+     * @param retryAfterSeconds キューが満杯の時に返す503のRetry-After秒数
+     */
+    public static WorkerExecutor create(Mode mode, int threads, int queueCapacity, int retryAfterSeconds) {
+        switch (mode) {
+            case BOUNDED:
+                return new WorkerExecutor(mode, newBoundedPool(threads, queueCapacity), retryAfterSeconds);
+            case INLINE:
+                return new WorkerExecutor(mode, null, retryAfterSeconds);
+            case VIRTUAL:
+            default:
+                return new WorkerExecutor(Mode.VIRTUAL, newVirtualThreadExecutor("http-worker-"), retryAfterSeconds);
+        }
+    }
+
+    private static ExecutorService newBoundedPool(int threads, int queueCapacity) {
+        // 溢れた場合は RejectedExecutionException にし、execute で503として扱う
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreadFactory("http-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 仮想スレッドのExecutorを作成する
+     * ビルドはJava 17互換のため、Java 21以降のAPIはリフレクションで呼び出す
+     * @param fallbackPrefix 仮想スレッドが使えない場合に作るスレッドの名前の接頭辞
+     */
+    static ExecutorService newVirtualThreadExecutor(String fallbackPrefix) {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("仮想スレッドが利用できないため、キャッシュ型スレッドプールを使用します", "threads", fallbackPrefix);
+            return Executors.newCachedThreadPool(namedThreadFactory(fallbackPrefix));
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queued.incrementAndGet();
+        Runnable task = () -> {
+            queued.decrementAndGet();
+            inFlight.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                inFlight.decrementAndGet();
+                completed.increment();
+            }
+        };
+
+        if (delegate == null) {
+            task.run();
+            return;
+        }
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            // キューが溢れた（または停止中）。この場（ディスパッチャースレッド）で503だけを返させる
+            SHEDDING.set(Boolean.TRUE);
+            try {
+                command.run();
+            } finally {
+                SHEDDING.remove();
+            }
+        }
+    }
+
+    /**
+     * キューが溢れたリクエストには 503 + Retry-After を返し、それ以外は元のハンドラーを呼ぶ
+     */
+    public HttpHandler guard(HttpHandler handler) {
+        return exchange -> {
+            if (!SHEDDING.get()) {
+                handler.handle(exchange);
+                return;
+            }
+            try {
+                byte[] body = "{\"error\":\"Service Unavailable\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                exchange.sendResponseHeaders(503, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * Executorを停止する
+     */
+    public void shutdown() {
+        if (delegate != null) {
+            delegate.shutdown();
+            try {
+                if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                    delegate.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                delegate.shutdownNow();
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** 実行待ちのリクエスト数 */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /** 処理中のリクエスト数 */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /** キューが溢れて503を返したリクエスト数 */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
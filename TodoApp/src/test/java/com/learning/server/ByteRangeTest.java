@@ -0,0 +1,78 @@
+package com.learning.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * ByteRange（Rangeヘッダーの解釈）のテスト
+ */
+class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    void closedRange() {
+        ByteRange range = ByteRange.parse("bytes=0-499", LENGTH);
+        assertEquals(0, range.getStart());
+        assertEquals(500, range.getLength());
+        assertEquals("bytes 0-499/1000", range.toContentRange(LENGTH));
+    }
+
+    @Test
+    void closedRangePastEndIsClamped() {
+        ByteRange range = ByteRange.parse("bytes=900-5000", LENGTH);
+        assertEquals("bytes 900-999/1000", range.toContentRange(LENGTH));
+    }
+
+    @Test
+    void openEndedRange() {
+        ByteRange range = ByteRange.parse("bytes=500-", LENGTH);
+        assertEquals(500, range.getStart());
+        assertEquals(500, range.getLength());
+        assertEquals("bytes 500-999/1000", range.toContentRange(LENGTH));
+    }
+
+    @Test
+    void suffixRange() {
+        ByteRange range = ByteRange.parse("bytes=-200", LENGTH);
+        assertEquals(800, range.getStart());
+        assertEquals(200, range.getLength());
+        assertEquals("bytes 800-999/1000", range.toContentRange(LENGTH));
+    }
+
+    @Test
+    void suffixLongerThanContentReturnsWholeContent() {
+        ByteRange range = ByteRange.parse("bytes=-5000", LENGTH);
+        assertEquals("bytes 0-999/1000", range.toContentRange(LENGTH));
+    }
+
+    @Test
+    void multipleRangesAreIgnored() {
+        assertNull(ByteRange.parse("bytes=0-1,5-6", LENGTH));
+    }
+
+    @Test
+    void malformedHeadersAreIgnored() {
+        assertNull(ByteRange.parse(null, LENGTH));
+        assertNull(ByteRange.parse("items=0-1", LENGTH));
+        assertNull(ByteRange.parse("bytes=abc-", LENGTH));
+        assertNull(ByteRange.parse("bytes=10", LENGTH));
+        assertNull(ByteRange.parse("bytes=-", LENGTH));
+        assertNull(ByteRange.parse("bytes=500-100", LENGTH));
+    }
+
+    @Test
+    void startBeyondContentIsUnsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", LENGTH));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=2000-3000", LENGTH));
+    }
+
+    @Test
+    void emptySuffixIsUnsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", LENGTH));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+    }
+}
@@ -0,0 +1,105 @@
+package com.learning.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * IdLocks（TodoのIDごとのロック）のテスト
+ */
+class IdLocksTest {
+    private final IdLocks locks = new IdLocks();
+
+    @Test
+    void releasesEntriesAfterUse() {
+        assertEquals("done", locks.withLocks(List.of(3, 1, 3), () -> {
+            assertEquals(2, locks.size());
+            return "done";
+        }));
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void releasesEntriesWhenTheActionThrows() {
+        try {
+            locks.withLocks(List.of(1), () -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException expected) {
+            // 期待どおり
+        }
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void differentIdsDoNotWaitForEachOther() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch holding = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> holder = executor.submit(() -> locks.withLocks(List.of(1), () -> {
+                holding.countDown();
+                await(release);
+                return null;
+            }));
+            assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+            // ID 1 がロックされていても ID 2 はすぐに実行できる
+            assertEquals(2, locks.withLocks(List.of(2), () -> 2));
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sameIdIsSerialized() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            AtomicInteger inside = new AtomicInteger();
+            AtomicInteger overlaps = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                // 単独のロックと、複数IDのロックを混ぜてもデッドロックせず直列になる
+                List<Integer> ids = i % 2 == 0 ? List.of(7) : List.of(9, 7, 8);
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 200; n++) {
+                        locks.withLocks(ids, () -> {
+                            if (inside.incrementAndGet() > 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            inside.decrementAndGet();
+                            return null;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(0, overlaps.get());
+            assertEquals(0, locks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.learning.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Router（パスのテンプレートによる振り分け）のテスト
+ */
+class RouterTest {
+
+    private Router router;
+    /** 呼ばれたハンドラーの名前と取り出したパラメータ */
+    private String called;
+    /** エラーレスポンスとして送られたメッセージ */
+    private String errorMessage;
+
+    @BeforeEach
+    void setUp() {
+        called = null;
+        errorMessage = null;
+        router = new Router((exchange, statusCode, message) -> {
+            errorMessage = message;
+            exchange.sendResponseHeaders(statusCode, -1);
+        });
+    }
+
+    private TestExchange dispatch(String method, String path) throws IOException {
+        TestExchange exchange = new TestExchange(method, path);
+        router.dispatch(exchange);
+        return exchange;
+    }
+
+    @Test
+    void literalSegmentTakesPrecedenceOverParameter() throws IOException {
+        router.get("/api/users/{name}", (exchange, params) -> called = "byName:" + params.get("name"))
+                .get("/api/users/me", (exchange, params) -> called = "me");
+
+        dispatch("GET", "/api/users/me");
+        assertEquals("me", called);
+
+        dispatch("GET", "/api/users/alice");
+        assertEquals("byName:alice", called);
+    }
+
+    @Test
+    void fallsBackToParameterWhenLiteralBranchDoesNotMatch() throws IOException {
+        router.get("/api/todos/batch/status", (exchange, params) -> called = "batchStatus")
+                .get("/api/todos/{id}/comments", (exchange, params) -> called = "comments:" + params.get("id"));
+
+        dispatch("GET", "/api/todos/batch/comments");
+        assertEquals("comments:batch", called);
+    }
+
+    @Test
+    void parameterTypesDoNotDependOnDefaultLocale() throws IOException {
+        Locale original = Locale.getDefault();
+        // トルコ語ロケールでは "int".toUpperCase() が "İNT" になる
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            router.get("/api/todos/{id:int}", (exchange, params) -> called = "todo:" + params.getInt("id"));
+        } finally {
+            Locale.setDefault(original);
+        }
+
+        dispatch("GET", "/api/todos/42");
+        assertEquals("todo:42", called);
+    }
+
+    @Test
+    void numericParameters() throws IOException {
+        router.get("/api/todos/{id:int}", (exchange, params) -> called = "todo:" + params.getInt("id"))
+                .get("/api/todos/{id:int}/comments/{commentId:long}",
+                        (exchange, params) -> called = "comment:" + params.getInt("id") + ":" + params.getLong("commentId"));
+
+        dispatch("GET", "/api/todos/42");
+        assertEquals("todo:42", called);
+
+        dispatch("GET", "/api/todos/7/comments/9000000000");
+        assertEquals("comment:7:9000000000", called);
+    }
+
+    @Test
+    void invalidIntParameterReturns400() throws IOException {
+        router.get("/api/todos/{id:int}", (exchange, params) -> called = "todo");
+
+        for (String id : new String[] {"abc", "-1", "2147483648", "12a"}) {
+            TestExchange exchange = dispatch("GET", "/api/todos/" + id);
+            assertEquals(400, exchange.getResponseCode(), id);
+            assertEquals("Invalid id format", errorMessage);
+        }
+        assertNull(called);
+    }
+
+    @Test
+    void unknownPathReturns404() throws IOException {
+        router.get("/api/todos", (exchange, params) -> called = "list");
+
+        assertEquals(404, dispatch("GET", "/api/unknown").getResponseCode());
+        assertEquals(404, dispatch("GET", "/api/todos/").getResponseCode());
+        assertEquals(404, dispatch("GET", "/api").getResponseCode());
+        assertNull(called);
+    }
+
+    @Test
+    void wrongMethodReturns405WithAllowHeader() throws IOException {
+        router.get("/api/todos/{id:int}", (exchange, params) -> called = "get")
+                .put("/api/todos/{id:int}", (exchange, params) -> called = "put")
+                .delete("/api/todos/{id:int}", (exchange, params) -> called = "delete");
+
+        TestExchange exchange = dispatch("POST", "/api/todos/1");
+        assertEquals(405, exchange.getResponseCode());
+        assertEquals("DELETE, GET, OPTIONS, PUT", exchange.getResponseHeaders().getFirst("Allow"));
+        assertNull(called);
+    }
+
+    @Test
+    void optionsReturns204WithAllowHeader() throws IOException {
+        router.get("/api/todos", (exchange, params) -> called = "list")
+                .post("/api/todos", (exchange, params) -> called = "create");
+
+        TestExchange exchange = dispatch("OPTIONS", "/api/todos");
+        assertEquals(204, exchange.getResponseCode());
+        assertEquals("GET, OPTIONS, POST", exchange.getResponseHeaders().getFirst("Allow"));
+        assertNull(called);
+        assertNull(errorMessage);
+    }
+
+    @Test
+    void rejectsDuplicateAndConflictingRoutes() {
+        router.get("/api/todos/{id:int}", (exchange, params) -> called = "get");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("/api/todos/{id:int}", (exchange, params) -> called = "again"));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.put("/api/todos/{todoId:int}", (exchange, params) -> called = "put"));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.get("api/todos", (exchange, params) -> called = "relative"));
+    }
+
+    /**
+     * ソケットを使わずにルーターを呼び出すためのHttpExchange
+     */
+    private static final class TestExchange extends HttpExchange {
+        private final String method;
+        private final URI uri;
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        private int responseCode = -1;
+
+        private TestExchange(String method, String path) {
+            this.method = method;
+            this.uri = URI.create(path);
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return responseBody;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) {
+            if (responseCode != -1) {
+                throw new IllegalStateException("headers already sent");
+            }
+            responseCode = rCode;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.learning.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * TodoEventBusのテスト（受信しないクライアントが他の購読者を止めず、実際に切断されること）
+ */
+class TodoEventBusTest {
+    /** 送信側・受信側のソケットバッファに収まらない大きさのイベント */
+    private static final byte[] LARGE_EVENT = ("{\"pad\":\"" + "x".repeat(64 * 1024) + "\"}").getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private TodoEventBus eventBus;
+
+    @AfterEach
+    void tearDown() {
+        if (eventBus != null) {
+            eventBus.shutdown();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (serverExecutor != null) {
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    private URI start(int queueCapacity, long writeTimeoutMillis) throws IOException {
+        eventBus = new TodoEventBus(queueCapacity, 10, 1, writeTimeoutMillis);
+        return startWith(eventBus);
+    }
+
+    private URI startWith(TodoEventBus bus) throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/todos/stream", new TodoStreamHandler(bus));
+        server.setExecutor(serverExecutor);
+        server.start();
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/todos/stream");
+    }
+    /**
+     * 購読を開始して、その後は一切読まないクライアント
+     */
+    private static Socket openStalledSubscriber(URI uri) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + uri.getPath() + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * 受信したイベント行を数える購読者を開始する
+     */
+    private static AtomicInteger openReadingSubscriber(URI uri, String event) {
+        AtomicInteger received = new AtomicInteger();
+        HttpClient.newHttpClient()
+                .sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> {
+                    try (Stream<String> lines = response.body()) {
+                        lines.filter(("event: " + event)::equals).forEach(line -> received.incrementAndGet());
+                    }
+                });
+        return received;
+    }
+
+    private static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + description);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * サーバーが接続を閉じたことを確かめる（届いていた分を読み捨てた後にEOFかリセットになる）
+     */
+    private static void assertClosedByServer(Socket socket) throws IOException {
+        socket.setSoTimeout(10_000);
+        InputStream in = socket.getInputStream();
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            while (in.read(buffer) >= 0) {
+                // 読み捨てる
+            }
+        } catch (java.net.SocketTimeoutException e) {
+            fail("Connection was not closed by the server");
+        } catch (java.net.SocketException e) {
+            // 未送信のデータを残したまま閉じられた場合はリセットになる
+        }
+    }
+
+    @Test
+    void stalledWriteIsAbortedWithoutBlockingOtherSubscribers() throws Exception {
+        URI uri = start(10_000, 300);
+        try (Socket stalled = openStalledSubscriber(uri)) {
+            AtomicInteger received = openReadingSubscriber(uri, "updated");
+            await("two subscribers", () -> eventBus.getSubscriberCount() == 2);
+
+            int events = 300;
+            long started = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                eventBus.publish("updated", LARGE_EVENT);
+            }
+            // 配信はキューに入れるだけで、止まっている購読者を待たない
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2), "publish blocked");
+
+            await("the reading subscriber to receive every event", () -> received.get() == events);
+            await("the stalled subscriber to be disconnected", () -> eventBus.getSubscriberCount() == 1);
+            assertEquals(1, eventBus.getSlowDisconnects());
+            assertClosedByServer(stalled);
+
+            // 切断後も残りの購読者には配信が続く
+            eventBus.publish("updated", "{}".getBytes(StandardCharsets.UTF_8));
+            await("the event after the disconnect", () -> received.get() == events + 1);
+        }
+    }
+
+    @Test
+    void overflowingQueueDisconnectsTheSubscriber() throws Exception {
+        URI uri = start(4, 60_000);
+        try (Socket stalled = openStalledSubscriber(uri)) {
+            await("the subscriber", () -> eventBus.getSubscriberCount() == 1);
+
+            for (int i = 0; i < 200 && eventBus.getSubscriberCount() > 0; i++) {
+                eventBus.publish("updated", LARGE_EVENT);
+            }
+            await("the subscriber to be disconnected", () -> eventBus.getSubscriberCount() == 0);
+            assertEquals(1, eventBus.getSlowDisconnects());
+            assertClosedByServer(stalled);
+        }
+    }
+
+    @Test
+    void rejectsSubscribersOverTheLimit() throws Exception {
+        eventBus = new TodoEventBus(4, 1, 1, 1_000);
+        URI uri = startWith(eventBus);
+        try (Socket first = openStalledSubscriber(uri)) {
+            await("the first subscriber", () -> eventBus.getSubscriberCount() == 1);
+            HttpResponse<String> response = HttpClient.newHttpClient()
+                    .send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, response.statusCode());
+            assertEquals("10", response.headers().firstValue("Retry-After").orElse(null));
+            assertEquals(1, eventBus.getRejected());
+        }
+    }
+
+}